@@ -36,17 +36,33 @@ public class DataProperties {
     String uniqueConstraintViolationPattern;
     boolean useUserLocaleForRelativeDateTimeMoments;
 
+    /**
+     * Maximum number of parsed JPQL queries kept in memory by {@link QueryTransformerFactory}.
+     * Zero disables the cache.
+     */
+    int parsedQueryCacheSize;
+
+    /**
+     * Maximum number of JPQL queries built by {@link io.jmix.data.impl.JpqlQueryBuilder} from conditions and sorting
+     * kept in memory. Zero disables the cache.
+     */
+    int queryTemplateCacheSize;
+
     public DataProperties(
             @DefaultValue("true") boolean useReadOnlyTransactionForLoad,
             @DefaultValue("100") int numberIdCacheSize,
             boolean useEntityDataStoreForIdSequence,
             @Nullable String uniqueConstraintViolationPattern,
-            @DefaultValue("true") boolean useUserLocaleForRelativeDateTimeMoments) {
+            @DefaultValue("true") boolean useUserLocaleForRelativeDateTimeMoments,
+            @DefaultValue("1000") int parsedQueryCacheSize,
+            @DefaultValue("1000") int queryTemplateCacheSize) {
         this.useReadOnlyTransactionForLoad = useReadOnlyTransactionForLoad;
         this.numberIdCacheSize = numberIdCacheSize;
         this.useEntityDataStoreForIdSequence = useEntityDataStoreForIdSequence;
         this.uniqueConstraintViolationPattern = uniqueConstraintViolationPattern;
         this.useUserLocaleForRelativeDateTimeMoments = useUserLocaleForRelativeDateTimeMoments;
+        this.parsedQueryCacheSize = parsedQueryCacheSize;
+        this.queryTemplateCacheSize = queryTemplateCacheSize;
     }
 
     public boolean isUseReadOnlyTransactionForLoad() {
@@ -72,4 +88,18 @@ public class DataProperties {
     public boolean isUseUserLocaleForRelativeDateTimeMoments() {
         return useUserLocaleForRelativeDateTimeMoments;
     }
+
+    /**
+     * @see #parsedQueryCacheSize
+     */
+    public int getParsedQueryCacheSize() {
+        return parsedQueryCacheSize;
+    }
+
+    /**
+     * @see #queryTemplateCacheSize
+     */
+    public int getQueryTemplateCacheSize() {
+        return queryTemplateCacheSize;
+    }
 }
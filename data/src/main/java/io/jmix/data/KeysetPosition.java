@@ -0,0 +1,74 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jmix.data;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Position of the last loaded row for keyset (seek) pagination. Passed to a load context in the
+ * {@link PersistenceHints#KEYSET_POSITION} hint, so the next page is selected by a condition on the sort keys
+ * instead of skipping rows with {@code firstResult}.
+ * <p>
+ * Values are the values of the sort properties of the last loaded row in the order of the query sort, followed by
+ * the primary key value if the sort does not contain the primary key. If the query has no sort, the only value is
+ * the primary key. Usage example:
+ * <pre>
+ *     dataManager.load(Customer.class)
+ *             .all()
+ *             .sort(Sort.by("name"))
+ *             .hint(PersistenceHints.KEYSET_POSITION, KeysetPosition.after(last.getName(), last.getId()))
+ *             .maxResults(50)
+ *             .list();
+ * </pre>
+ */
+public class KeysetPosition implements Serializable {
+
+    private static final long serialVersionUID = 3592871245130618411L;
+
+    private final List<Object> values;
+
+    protected KeysetPosition(List<?> values) {
+        this.values = Collections.unmodifiableList(new ArrayList<>(values));
+    }
+
+    /**
+     * Creates a position following the row with the given values of sort keys.
+     */
+    public static KeysetPosition after(Object... values) {
+        return new KeysetPosition(Arrays.asList(values));
+    }
+
+    /**
+     * Creates a position following the row with the given values of sort keys.
+     */
+    public static KeysetPosition after(List<?> values) {
+        return new KeysetPosition(values);
+    }
+
+    public List<Object> getValues() {
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return "KeysetPosition{" + values + '}';
+    }
+}
@@ -53,6 +53,34 @@ public class PersistenceHints {
      */
     public static final String MSSQL_RECOMPILE_HINT = "jmix.mssql.recompile";
 
+    /**
+     * Defines a Jmix load hint which switches an entity query to keyset (seek) pagination.
+     * The value is a {@link KeysetPosition} with the sort key values of the last row of the previous page.
+     * The query then returns only rows following this row in the sort order, so {@code firstResult}
+     * should not be set.
+     * <p>Sorting is allowed only by mandatory persistent datatype properties of the entity in the same direction,
+     * which are sorted by their plain values.
+     * <p>Usage examples:
+     * <pre>
+     *    loadContext.setHint(PersistenceHints.KEYSET_POSITION, KeysetPosition.after(lastName, lastId));
+     * </pre>
+     */
+    public static final String KEYSET_POSITION = "jmix.keysetPosition";
+
+    /**
+     * Defines a Jmix load hint which allows counting entities approximately using the DBMS statistics
+     * instead of executing the count query. The hint value is a boolean.
+     * If the DBMS cannot provide an estimate, the exact count is returned. Use
+     * {@code JpaDataStore.getCountEstimate()} to find out whether the returned number is an estimate.
+     * <p>Usage examples:
+     * <pre>
+     *    loadContext.setHint(PersistenceHints.APPROXIMATE_COUNT, true);
+     * </pre>
+     *
+     * @see io.jmix.data.persistence.DbmsFeatures#estimateRowCount
+     */
+    public static final String APPROXIMATE_COUNT = "jmix.approximateCount";
+
     public static boolean isSoftDeletion(EntityManager entityManager) {
         Boolean softDeletion = (Boolean) entityManager.getProperties().get(SOFT_DELETION);
         return softDeletion == null || softDeletion;
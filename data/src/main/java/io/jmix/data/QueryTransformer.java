@@ -15,6 +15,7 @@
  */
 package io.jmix.data;
 
+import javax.annotation.Nullable;
 import java.util.Set;
 
 /**
@@ -82,6 +83,21 @@ public interface QueryTransformer {
     /** Get parameter names found during transformation */
     Set<String> getAddedParams();
 
+    /**
+     * Returns a parser for the current state of the query, taking into account all modifications made by this
+     * transformer so far. Allows analyzing the query between transformations without building and parsing
+     * intermediate query strings.
+     * <p>
+     * The returned parser must not be used after further modifications of the query.
+     *
+     * @return parser or null if the transformer cannot provide it, in this case
+     * {@link QueryTransformerFactory#parser(QueryTransformer)} parses the result of the transformer
+     */
+    @Nullable
+    default QueryParser getParser() {
+        return null;
+    }
+
     void handleCaseInsensitiveParam(String paramName);
 
     void replaceInCondition(String paramName);
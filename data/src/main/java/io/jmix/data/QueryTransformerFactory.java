@@ -15,14 +15,19 @@
  */
 package io.jmix.data;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import io.jmix.data.impl.jpql.DomainModel;
 import io.jmix.data.impl.jpql.DomainModelBuilder;
+import io.jmix.data.impl.jpql.QueryParserAstBased;
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+
 /**
  * Factory to get {@link QueryParser} and {@link QueryTransformer} instances.
  */
@@ -41,17 +46,82 @@ public class QueryTransformerFactory {
     @Autowired
     protected ObjectProvider<QueryParser> queryParserProvider;
 
+    @Autowired
+    protected DataProperties properties;
+
+    protected Cache<String, QueryParser> parsers;
+
+    @PostConstruct
+    protected void init() {
+        parsers = CacheBuilder.newBuilder()
+                .maximumSize(Math.max(properties.getParsedQueryCacheSize(), 0))
+                .build();
+    }
+
+    /**
+     * Creates a transformer for the given query. The transformer works on its own copy of the cached parsed tree,
+     * so the query is not parsed again and the cached tree is never modified.
+     */
     public QueryTransformer transformer(String query) {
         if (domainModel == null) {
             domainModel = domainModelBuilder.produce();
         }
+        if (isParserCacheEnabled()) {
+            QueryParser parser = parser(query);
+            if (parser instanceof QueryParserAstBased) {
+                return beanFactory.getBean(QueryTransformer.class, domainModel, query, parser);
+            }
+        }
         return beanFactory.getBean(QueryTransformer.class, domainModel, query);
     }
 
+    /**
+     * Returns a parser for the given query. Parsers are cached by query string and shared between callers,
+     * so the query is parsed and analyzed only once.
+     */
     public QueryParser parser(String query) {
         if (domainModel == null) {
             domainModel = domainModelBuilder.produce();
         }
-        return queryParserProvider.getObject(domainModel, query);
+        if (!isParserCacheEnabled()) {
+            return queryParserProvider.getObject(domainModel, query);
+        }
+        QueryParser parser = parsers.getIfPresent(query);
+        if (parser == null) {
+            parser = queryParserProvider.getObject(domainModel, query);
+            if (isParsed(parser)) {
+                parsers.put(query, parser);
+            }
+        }
+        return parser;
+    }
+
+    /**
+     * Returns a parser for the current state of the query being transformed. If the transformer does not provide
+     * a parser of its state, the intermediate result of the transformer is parsed.
+     */
+    public QueryParser parser(QueryTransformer transformer) {
+        QueryParser parser = transformer.getParser();
+        return parser != null ? parser : parser(transformer.getResult());
+    }
+
+    /**
+     * Returns true if the parser has built the tree of its query. A parser of an invalid query is not cached,
+     * it throws the syntax error when used like a parser which is not cached.
+     */
+    protected boolean isParsed(QueryParser parser) {
+        if (!(parser instanceof QueryParserAstBased)) {
+            return true;
+        }
+        try {
+            ((QueryParserAstBased) parser).parse();
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    protected boolean isParserCacheEnabled() {
+        return properties.getParsedQueryCacheSize() > 0;
     }
-}
\ No newline at end of file
+}
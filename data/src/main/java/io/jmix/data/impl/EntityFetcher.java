@@ -21,7 +21,9 @@ import io.jmix.core.entity.EntitySystemAccess;
 import io.jmix.core.entity.EntityValues;
 import io.jmix.core.metamodel.model.MetaClass;
 import io.jmix.core.metamodel.model.MetaProperty;
+import io.jmix.data.PersistenceHints;
 import io.jmix.data.StoreAwareLocator;
+import io.jmix.data.persistence.DbmsSpecifics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -31,6 +33,8 @@ import javax.annotation.Nullable;
 import javax.persistence.Basic;
 import javax.persistence.EntityManager;
 import javax.persistence.FetchType;
+import javax.persistence.FlushModeType;
+import javax.persistence.Query;
 import java.lang.reflect.AnnotatedElement;
 import java.util.*;
 import java.util.function.Consumer;
@@ -58,6 +62,12 @@ public class EntityFetcher {
     @Autowired
     protected StoreAwareLocator storeAwareLocator;
 
+    @Autowired
+    protected ExtendedEntities extendedEntities;
+
+    @Autowired
+    protected DbmsSpecifics dbmsSpecifics;
+
     /**
      * Fetch instance by fetch plan.
      *
@@ -66,7 +76,28 @@ public class EntityFetcher {
     public void fetch(Object instance, @Nullable FetchPlan fetchPlan) {
         if (fetchPlan == null)
             return;
-        fetch(instance, fetchPlan, new HashMap<>(), false);
+        fetchAndReload(instance, fetchPlan, false);
+    }
+
+    /**
+     * Fetch instances by fetch plans. Detached references of all instances are reloaded together.
+     *
+     * @param instances  instances to fetch, items which are not entities are skipped
+     * @param fetchPlans fetch plans to apply to each instance
+     */
+    public void fetchAll(Collection<?> instances, Collection<FetchPlan> fetchPlans) {
+        if (instances.isEmpty() || fetchPlans.isEmpty())
+            return;
+        Map<Object, Set<FetchPlan>> visited = new HashMap<>();
+        List<ReloadRequest> reloadRequests = new ArrayList<>();
+        for (Object instance : instances) {
+            if (instance instanceof Entity) {
+                for (FetchPlan fetchPlan : fetchPlans) {
+                    fetch(instance, fetchPlan, visited, false, reloadRequests);
+                }
+            }
+        }
+        reload(reloadRequests, visited, false);
     }
 
     /**
@@ -78,7 +109,7 @@ public class EntityFetcher {
         if (fetchPlanName == null)
             return;
         FetchPlan fetchPlan = fetchPlanRepository.getFetchPlan(instance.getClass(), fetchPlanName);
-        fetch(instance, fetchPlan, new HashMap<>(), false);
+        fetchAndReload(instance, fetchPlan, false);
     }
 
     /**
@@ -92,7 +123,7 @@ public class EntityFetcher {
     public void fetch(Object instance, @Nullable FetchPlan fetchPlan, boolean optimizeForDetached) {
         if (fetchPlan == null)
             return;
-        fetch(instance, fetchPlan, new HashMap<>(), optimizeForDetached);
+        fetchAndReload(instance, fetchPlan, optimizeForDetached);
     }
 
     /**
@@ -107,11 +138,23 @@ public class EntityFetcher {
         if (fetchPlanName == null)
             return;
         FetchPlan fetchPlan = fetchPlanRepository.getFetchPlan(instance.getClass(), fetchPlanName);
-        fetch(instance, fetchPlan, new HashMap<>(), optimizeForDetached);
+        fetchAndReload(instance, fetchPlan, optimizeForDetached);
     }
 
+    protected void fetchAndReload(Object instance, FetchPlan fetchPlan, boolean optimizeForDetached) {
+        Map<Object, Set<FetchPlan>> visited = new HashMap<>();
+        List<ReloadRequest> reloadRequests = new ArrayList<>();
+        fetch(instance, fetchPlan, visited, optimizeForDetached, reloadRequests);
+        reload(reloadRequests, visited, optimizeForDetached);
+    }
+
+    /**
+     * Fetches the graph of the entity. Detached entities which should be reloaded are not reloaded immediately
+     * but added to {@code reloadRequests}.
+     */
     @SuppressWarnings("unchecked")
-    protected void fetch(Object entity, FetchPlan fetchPlan, Map<Object, Set<FetchPlan>> visited, boolean optimizeForDetached) {
+    protected void fetch(Object entity, FetchPlan fetchPlan, Map<Object, Set<FetchPlan>> visited, boolean optimizeForDetached,
+                         List<ReloadRequest> reloadRequests) {
         Set<FetchPlan> fetchPlans = visited.get(entity);
         if (fetchPlans == null) {
             fetchPlans = new HashSet<>();
@@ -139,7 +182,7 @@ public class EntityFetcher {
                     for (Object item : new ArrayList(((Collection) value))) {
                         if (item instanceof Entity) {
                             if (entityStates.isDetached(item)) {
-                                fetchReloaded(item, propertyFetchPlan, visited, optimizeForDetached, managed -> {
+                                requestReload(item, propertyFetchPlan, optimizeForDetached, reloadRequests, managed -> {
                                     if (value instanceof List) {
                                         List list = (List) value;
                                         list.set(list.indexOf(item), managed);
@@ -150,42 +193,127 @@ public class EntityFetcher {
                                     }
                                 });
                             } else {
-                                fetch(item, propertyFetchPlan, visited, optimizeForDetached);
+                                fetch(item, propertyFetchPlan, visited, optimizeForDetached, reloadRequests);
                             }
                         }
                     }
                 } else if (value instanceof Entity) {
                     boolean isEmbeddable = EntitySystemAccess.isEmbeddable(value);
                     if (!metaProperty.isReadOnly() && entityStates.isDetached(value) && !isEmbeddable) {
-                        fetchReloaded(value, propertyFetchPlan, visited, optimizeForDetached, managed -> {
+                        requestReload(value, propertyFetchPlan, optimizeForDetached, reloadRequests, managed -> {
                             EntityValues.setValue(entity, property.getName(), managed);
                         });
                     } else {
-                        fetch(value, propertyFetchPlan, visited, optimizeForDetached);
+                        fetch(value, propertyFetchPlan, visited, optimizeForDetached, reloadRequests);
                     }
                 }
             }
         }
     }
 
-    protected void fetchReloaded(Object entity, FetchPlan fetchPlan, Map<Object, Set<FetchPlan>> visited, boolean optimizeForDetached,
-                                 Consumer<Object> managedEntityConsumer) {
+    protected void requestReload(Object entity, FetchPlan fetchPlan, boolean optimizeForDetached,
+                                 List<ReloadRequest> reloadRequests, Consumer<Object> managedEntityConsumer) {
         if (!optimizeForDetached || needReloading(entity, fetchPlan)) {
             if (log.isTraceEnabled()) {
                 log.trace("Object " + entity + " is detached, loading it");
             }
-            String storeName = metadata.getClass(entity).getStore().getName();
+            reloadRequests.add(new ReloadRequest(entity, fetchPlan, managedEntityConsumer));
+        }
+    }
+
+    /**
+     * Reloads the requested detached entities grouped by data store and entity class, passes the managed instances
+     * to the consumers of the requests and fetches them. Detached entities found in the graphs of the managed
+     * instances are reloaded in the same transaction.
+     */
+    protected void reload(List<ReloadRequest> reloadRequests, Map<Object, Set<FetchPlan>> visited, boolean optimizeForDetached) {
+        if (reloadRequests.isEmpty())
+            return;
+
+        Map<String, Map<MetaClass, List<ReloadRequest>>> requestsByStore = new LinkedHashMap<>();
+        for (ReloadRequest request : reloadRequests) {
+            MetaClass metaClass = extendedEntities.getEffectiveMetaClass(metadata.getClass(request.entity));
+            requestsByStore.computeIfAbsent(metaClass.getStore().getName(), k -> new LinkedHashMap<>())
+                    .computeIfAbsent(metaClass, k -> new ArrayList<>())
+                    .add(request);
+        }
+
+        for (Map.Entry<String, Map<MetaClass, List<ReloadRequest>>> entry : requestsByStore.entrySet()) {
+            String storeName = entry.getKey();
             storeAwareLocator.getTransactionTemplate(storeName).executeWithoutResult(transactionStatus -> {
                 EntityManager em = storeAwareLocator.getEntityManager(storeName);
-                Object managed = em.find(entity.getClass(), EntityValues.getId(entity));
-                if (managed != null) { // the instance here can be null if it has been deleted
-                    managedEntityConsumer.accept(managed);
-                    fetch(managed, fetchPlan, visited, optimizeForDetached);
+                List<ReloadRequest> nextRequests = new ArrayList<>();
+                for (Map.Entry<MetaClass, List<ReloadRequest>> classEntry : entry.getValue().entrySet()) {
+                    List<ReloadRequest> requests = classEntry.getValue();
+                    Map<Object, Object> managedById = findByIds(em, classEntry.getKey(), requests);
+                    for (ReloadRequest request : requests) {
+                        Object managed = managedById.get(EntityValues.getId(request.entity));
+                        if (managed != null) { // the instance here can be null if it has been deleted
+                            request.managedEntityConsumer.accept(managed);
+                            fetch(managed, request.fetchPlan, visited, optimizeForDetached, nextRequests);
+                        }
+                    }
                 }
+                reload(nextRequests, visited, optimizeForDetached);
             });
         }
     }
 
+    /**
+     * Loads managed instances of the requested entities, see {@link #findByIds(EntityManager, MetaClass, Collection, Collection)}.
+     */
+    protected Map<Object, Object> findByIds(EntityManager em, MetaClass metaClass, List<ReloadRequest> requests) {
+        Set<Object> ids = new LinkedHashSet<>(requests.size());
+        for (ReloadRequest request : requests) {
+            ids.add(EntityValues.getId(request.entity));
+        }
+        return findByIds(em, metaClass, ids, Collections.emptyList());
+    }
+
+    /**
+     * Loads managed instances by "in" queries split into batches of
+     * {@link io.jmix.data.persistence.DbmsFeatures#getMaxIdsBatchSize()} IDs. A single entity and entities with
+     * composite keys are found one by one. The queries do not flush the entity manager, like
+     * {@link EntityManager#find(Class, Object)}.
+     *
+     * @param fetchPlans fetch plans to load the instances with, can be empty
+     * @return instances by IDs, instances which are not found are absent
+     */
+    @SuppressWarnings("unchecked")
+    public Map<Object, Object> findByIds(EntityManager em, MetaClass metaClass, Collection<?> ids,
+                                         Collection<FetchPlan> fetchPlans) {
+        Map<Object, Object> result = new HashMap<>(ids.size());
+        Map<String, Object> hints = fetchPlans.isEmpty() ? Collections.emptyMap() :
+                PersistenceHints.builder().withFetchPlans(fetchPlans).build();
+
+        String pkName = metadataTools.getPrimaryKeyName(metaClass);
+        if (ids.size() == 1 || pkName == null || metadataTools.hasCompositePrimaryKey(metaClass)) {
+            for (Object id : ids) {
+                Object managed = em.find(metaClass.getJavaClass(), id, hints);
+                if (managed != null) {
+                    result.put(id, managed);
+                }
+            }
+            return result;
+        }
+
+        Integer maxBatchSize = dbmsSpecifics.getDbmsFeatures(metaClass.getStore().getName()).getMaxIdsBatchSize();
+        List<Object> idList = new ArrayList<>(ids);
+        int batchSize = maxBatchSize == null ? idList.size() : maxBatchSize;
+        String queryString = String.format("select e from %s e where e.%s in :ids", metaClass.getName(), pkName);
+        for (int i = 0; i < idList.size(); i += batchSize) {
+            List<Object> batch = idList.subList(i, Math.min(i + batchSize, idList.size()));
+            Query query = em.createQuery(queryString)
+                    .setParameter("ids", batch)
+                    .setFlushMode(FlushModeType.COMMIT);
+            hints.forEach(query::setHint);
+            for (Object managed : (List<Object>) query.getResultList()) {
+                result.put(EntityValues.getId(managed), managed);
+            }
+        }
+        return result;
+    }
+
     protected boolean needReloading(Object entity, FetchPlan fetchPlan) {
         return !entityStates.isLoadedWithFetchPlan(entity, fetchPlan);
     }
@@ -195,4 +323,19 @@ public class EntityFetcher {
         Basic annotation = annotatedElement.getAnnotation(Basic.class);
         return annotation != null && annotation.fetch() == FetchType.LAZY;
     }
+
+    /**
+     * Detached entity to be replaced by its managed instance.
+     */
+    protected static class ReloadRequest {
+        protected final Object entity;
+        protected final FetchPlan fetchPlan;
+        protected final Consumer<Object> managedEntityConsumer;
+
+        public ReloadRequest(Object entity, FetchPlan fetchPlan, Consumer<Object> managedEntityConsumer) {
+            this.entity = entity;
+            this.fetchPlan = fetchPlan;
+            this.managedEntityConsumer = managedEntityConsumer;
+        }
+    }
 }
@@ -21,16 +21,20 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import io.jmix.core.*;
 import io.jmix.core.common.util.StringHelper;
+import io.jmix.core.entity.EntityValues;
 import io.jmix.core.metamodel.model.MetaClass;
 import io.jmix.core.metamodel.model.MetaProperty;
 import io.jmix.core.querycondition.*;
 import io.jmix.data.JmixQuery;
+import io.jmix.data.KeysetPosition;
 import io.jmix.data.QueryTransformer;
 import io.jmix.data.QueryTransformerFactory;
 import io.jmix.data.impl.jpql.generator.ConditionGenerationContext;
 import io.jmix.data.impl.jpql.generator.ConditionJpqlGenerator;
 import io.jmix.data.impl.jpql.generator.ParameterJpqlGenerator;
 import io.jmix.data.impl.jpql.generator.SortJpqlGenerator;
+import io.jmix.data.persistence.DbmsFeatures;
+import org.apache.commons.lang3.ClassUtils;
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Scope;
@@ -39,6 +43,7 @@ import org.springframework.stereotype.Component;
 import javax.annotation.Nullable;
 import javax.persistence.EntityManager;
 import javax.persistence.Query;
+import java.lang.reflect.Array;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -66,6 +71,10 @@ public class JpqlQueryBuilder<Q extends JmixQuery> {
 
     protected boolean countQuery;
 
+    protected KeysetPosition keysetPosition;
+
+    protected DbmsFeatures dbmsFeatures;
+
     protected String resultQuery;
     protected Map<String, Object> resultParameters;
 
@@ -93,6 +102,12 @@ public class JpqlQueryBuilder<Q extends JmixQuery> {
     @Autowired
     protected QueryParamValuesManager queryParamValuesManager;
 
+    @Autowired
+    protected JpqlQueryTemplateCache queryTemplateCache;
+
+    @Autowired
+    protected QueryMacroExpander macroExpander;
+
     public JpqlQueryBuilder setId(@Nullable Object id) {
         this.id = id;
         return this;
@@ -103,6 +118,15 @@ public class JpqlQueryBuilder<Q extends JmixQuery> {
         return this;
     }
 
+    /**
+     * Sets features of the DBMS the query is executed on. If the DBMS supports array parameters,
+     * the list of IDs is passed in a single array parameter.
+     */
+    public JpqlQueryBuilder setDbmsFeatures(@Nullable DbmsFeatures dbmsFeatures) {
+        this.dbmsFeatures = dbmsFeatures;
+        return this;
+    }
+
     public JpqlQueryBuilder setEntityName(String entityName) {
         this.entityName = entityName;
         return this;
@@ -145,6 +169,15 @@ public class JpqlQueryBuilder<Q extends JmixQuery> {
         return this;
     }
 
+    /**
+     * Switches an entity query to keyset pagination: only rows following the given position in the sort order
+     * are selected. Ignored for count queries.
+     */
+    public JpqlQueryBuilder setKeysetPosition(@Nullable KeysetPosition keysetPosition) {
+        this.keysetPosition = keysetPosition;
+        return this;
+    }
+
     public String getResultQueryString() {
         if (resultQuery == null) {
             buildResultQuery();
@@ -196,6 +229,15 @@ public class JpqlQueryBuilder<Q extends JmixQuery> {
                 if (id != null) {
                     resultQuery = String.format("select e from %s e where e.%s = :entityId", entityName, getPrimaryKeyProperty().getName());
                     resultParameters = Maps.newHashMap(ImmutableMap.of("entityId", id));
+                } else if (ids != null && !ids.isEmpty()
+                        && metadataTools.hasCompositePrimaryKey(metadata.getClass(entityName))) {
+                    buildCompositeIdsQuery();
+                } else if (ids != null && !ids.isEmpty() && dbmsFeatures != null && dbmsFeatures.supportsArrayParameters()) {
+                    MetaProperty primaryKeyProperty = getPrimaryKeyProperty();
+                    resultQuery = String.format("select e from %s e where %s", entityName,
+                            dbmsFeatures.getArrayInCondition("e." + primaryKeyProperty.getName(), "entityIds"));
+                    resultParameters = Maps.newHashMap(ImmutableMap.of("entityIds",
+                            toArray(ids, primaryKeyProperty.getJavaType())));
                 } else if (ids != null && !ids.isEmpty()) {
                     resultQuery = String.format("select e from %s e where e.%s in :entityIds", entityName, getPrimaryKeyProperty().getName());
                     resultParameters = Maps.newHashMap(ImmutableMap.of("entityIds", ids));
@@ -205,45 +247,200 @@ public class JpqlQueryBuilder<Q extends JmixQuery> {
                 }
             }
         }
-        applyFiltering();
-        applySorting();
-        applyCount();
-        restrictByPreviousResults();
-    }
 
-    protected void applySorting() {
-        if (sort != null) {
-            resultQuery = sortJpqlGenerator.processQuery(entityName, valueProperties, resultQuery, sort);
+        Condition actualizedCondition = condition != null ? applyConditionParameters() : null;
+
+        JpqlQueryTemplateCache.Key templateKey = createTemplateKey(actualizedCondition);
+        String template = templateKey != null ? queryTemplateCache.get(templateKey) : null;
+        if (template != null) {
+            resultQuery = template;
+        } else {
+            // all modifications are applied to the same parsed query, the result query string is built once
+            QueryTransformer transformer = queryTransformerFactory.transformer(resultQuery);
+            boolean transformed = applyFiltering(transformer, actualizedCondition);
+            transformed |= applyKeyset(transformer);
+            transformed |= applySorting(transformer);
+            transformed |= applyCount(transformer);
+            transformed |= restrictByPreviousResults(transformer);
+            if (transformed) {
+                resultQuery = transformer.getResult();
+            }
+            if (templateKey != null) {
+                queryTemplateCache.put(templateKey, resultQuery);
+            }
+        }
+
+        if (previousResults) {
+            resultParameters.put("_qr_sessionId", sessionId);
+        }
+        if (isKeysetPagination()) {
+            resultParameters = new HashMap<>(resultParameters);
+            resultParameters.putAll(sortJpqlGenerator.getKeysetParameters(entityName,
+                    sortJpqlGenerator.getKeysetSort(entityName, sort), keysetPosition));
         }
     }
 
-    protected void applyFiltering() {
-        if (condition != null) {
-            Set<String> nonNullParamNames = queryParameters.entrySet().stream()
-                    .filter(e -> e.getValue() != null)
-                    .map(Map.Entry::getKey)
-                    .collect(Collectors.toSet());
+    protected Object[] toArray(List<?> values, Class<?> elementType) {
+        Object[] array = (Object[]) Array.newInstance(ClassUtils.primitiveToWrapper(elementType), values.size());
+        return values.toArray(array);
+    }
 
-            // keep parameters that can be assigned by a QueryParamValueProvider
-            for (String parameter : condition.getParameters()) {
-                if (queryParamValuesManager.supports(parameter)) {
-                    nonNullParamNames.add(parameter);
+    /**
+     * Builds a query selecting entities by a list of composite keys. JPQL has no row value constructors,
+     * so each key is matched by a conjunction of conditions on key attributes.
+     */
+    protected void buildCompositeIdsQuery() {
+        MetaProperty primaryKeyProperty = getPrimaryKeyProperty();
+        List<MetaProperty> keyProperties = getCompositeKeyProperties(primaryKeyProperty);
+
+        StringBuilder where = new StringBuilder();
+        resultParameters = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            if (i > 0) {
+                where.append(" or ");
+            }
+            where.append('(');
+            for (int j = 0; j < keyProperties.size(); j++) {
+                String propertyName = keyProperties.get(j).getName();
+                String paramName = "entityId" + i + "_" + j;
+                if (j > 0) {
+                    where.append(" and ");
                 }
+                where.append("e.").append(primaryKeyProperty.getName()).append('.').append(propertyName)
+                        .append(" = :").append(paramName);
+                resultParameters.put(paramName, EntityValues.getValue(ids.get(i), propertyName));
             }
+            where.append(')');
+        }
+        resultQuery = String.format("select e from %s e where %s", entityName, where);
+    }
 
-            Condition actualized = condition.actualize(nonNullParamNames);
+    protected List<MetaProperty> getCompositeKeyProperties(MetaProperty primaryKeyProperty) {
+        return primaryKeyProperty.getRange().asClass().getProperties().stream()
+                .filter(property -> property.getRange().isDatatype() && metadataTools.isJpa(property))
+                .collect(Collectors.toList());
+    }
 
-            Set<String> excludedParameters = condition.getExcludedParameters(nonNullParamNames);
-            resultParameters.entrySet().removeIf(e -> excludedParameters.contains(e.getKey()));
+    protected boolean applySorting(QueryTransformer transformer) {
+        Sort effectiveSort = getEffectiveSort();
+        if (effectiveSort != null) {
+            return sortJpqlGenerator.processQuery(entityName, valueProperties, transformer, effectiveSort);
+        }
+        return false;
+    }
 
-            if (actualized != null) {
-                resultParameters = conditionParameterJpqlGenerator
-                        .processParameters(resultParameters, queryParameters, actualized, entityName);
+    @Nullable
+    protected Sort getEffectiveSort() {
+        return isKeysetPagination() ? sortJpqlGenerator.getKeysetSort(entityName, sort) : sort;
+    }
+
+    protected boolean isKeysetPagination() {
+        return keysetPosition != null && !countQuery && entityName != null;
+    }
+
+    protected boolean applyKeyset(QueryTransformer transformer) {
+        if (isKeysetPagination()) {
+            return sortJpqlGenerator.processKeysetQuery(entityName, transformer,
+                    sortJpqlGenerator.getKeysetSort(entityName, sort));
+        }
+        return false;
+    }
+
+    /**
+     * Removes parameters which are not used by the condition and modifies values of the used ones.
+     *
+     * @return the condition actualized by non-null parameters or null if nothing is left
+     */
+    @Nullable
+    protected Condition applyConditionParameters() {
+        Set<String> nonNullParamNames = queryParameters.entrySet().stream()
+                .filter(e -> e.getValue() != null)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+
+        // keep parameters that can be assigned by a QueryParamValueProvider
+        for (String parameter : condition.getParameters()) {
+            if (queryParamValuesManager.supports(parameter)) {
+                nonNullParamNames.add(parameter);
             }
+        }
 
-            resultQuery = conditionJpqlGenerator
-                    .processQuery(resultQuery, createConditionGenerationContext(actualized));
+        Condition actualized = condition.actualize(nonNullParamNames);
+
+        Set<String> excludedParameters = condition.getExcludedParameters(nonNullParamNames);
+        resultParameters.entrySet().removeIf(e -> excludedParameters.contains(e.getKey()));
+
+        if (actualized != null) {
+            resultParameters = conditionParameterJpqlGenerator
+                    .processParameters(resultParameters, queryParameters, actualized, entityName);
         }
+        return actualized;
+    }
+
+    protected boolean applyFiltering(QueryTransformer transformer, @Nullable Condition actualizedCondition) {
+        if (actualizedCondition != null) {
+            return conditionJpqlGenerator.processQuery(transformer, createConditionGenerationContext(actualizedCondition));
+        }
+        return false;
+    }
+
+    /**
+     * Returns the key of the result query in {@link JpqlQueryTemplateCache} or null if the query cannot be cached.
+     */
+    @Nullable
+    protected JpqlQueryTemplateCache.Key createTemplateKey(@Nullable Condition actualizedCondition) {
+        if (!queryTemplateCache.isEnabled() || resultQuery == null) {
+            return null;
+        }
+        List<Object> conditionShape = new ArrayList<>();
+        if (actualizedCondition != null && !collectConditionShape(actualizedCondition, conditionShape)) {
+            return null;
+        }
+        // the keyset sort and the sort expressions are derived from the requested sort and are resolved on a miss
+        List<String> sortOrders = new ArrayList<>();
+        if (sort != null) {
+            for (Sort.Order order : sort.getOrders()) {
+                sortOrders.add(order.getProperty() + " " + order.getDirection());
+            }
+        }
+        return new JpqlQueryTemplateCache.Key(resultQuery, entityName, valueProperties, conditionShape, sortOrders,
+                countQuery, previousResults ? queryKey : null, isKeysetPagination());
+    }
+
+    /**
+     * Adds to the list everything that affects the JPQL generated for the condition, except parameter values.
+     *
+     * @return false if the condition type is unknown and the result query must not be cached
+     */
+    protected boolean collectConditionShape(Condition condition, List<Object> shape) {
+        if (condition instanceof LogicalCondition) {
+            LogicalCondition logicalCondition = (LogicalCondition) condition;
+            shape.add(logicalCondition.getType());
+            shape.add(logicalCondition.getConditions().size());
+            for (Condition nestedCondition : logicalCondition.getConditions()) {
+                if (!collectConditionShape(nestedCondition, shape)) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (condition instanceof PropertyCondition) {
+            PropertyCondition propertyCondition = (PropertyCondition) condition;
+            shape.add(propertyCondition.getProperty());
+            shape.add(propertyCondition.getOperation());
+            shape.add(propertyCondition.getParameterName());
+            if (PropertyConditionUtils.isUnaryOperation(propertyCondition)
+                    || PropertyConditionUtils.isInIntervalOperation(propertyCondition)) {
+                // the value of such conditions is rendered into JPQL instead of being passed as a parameter
+                shape.add(propertyCondition.getParameterValue());
+            }
+            return true;
+        } else if (condition instanceof JpqlCondition) {
+            JpqlCondition jpqlCondition = (JpqlCondition) condition;
+            shape.add(jpqlCondition.getJoin());
+            shape.add(jpqlCondition.getWhere());
+            return true;
+        }
+        return false;
     }
 
     protected ConditionGenerationContext createConditionGenerationContext(@Nullable Condition condition) {
@@ -253,15 +450,15 @@ public class JpqlQueryBuilder<Q extends JmixQuery> {
         return generationContext;
     }
 
-    protected void applyCount() {
+    protected boolean applyCount(QueryTransformer transformer) {
         if (countQuery) {
-            QueryTransformer transformer = queryTransformerFactory.transformer(resultQuery);
             transformer.replaceWithCount();
-            resultQuery = transformer.getResult();
+            return true;
         }
+        return false;
     }
 
-    protected void restrictByPreviousResults() {
+    protected boolean restrictByPreviousResults(QueryTransformer transformer) {
         if (previousResults) {
             Class type = getPrimaryKeyProperty().getJavaType();
             String entityIdField;
@@ -278,26 +475,23 @@ public class JpqlQueryBuilder<Q extends JmixQuery> {
                         String.format("Unsupported primary key type: %s for %s", type.getSimpleName(), entityName));
             }
 
-            QueryTransformer transformer = queryTransformerFactory.transformer(resultQuery);
             transformer.addJoinAndWhere(
                     ", sys$QueryResult _qr",
                     String.format("_qr.%s = {E}.%s and _qr.sessionId = :_qr_sessionId and _qr.queryKey = %s",
                             entityIdField, getPrimaryKeyProperty().getName(), queryKey)
             );
 
-            this.resultQuery = transformer.getResult();
-            this.resultParameters.put("_qr_sessionId", sessionId);
+            return true;
         }
+        return false;
     }
 
     protected void replaceParamsInMacros(Q query) {
-        Collection<QueryMacroHandler> handlers = beanFactory.getBeanProvider(QueryMacroHandler.class).stream()
-                .collect(Collectors.toList());
-        String modifiedQuery = query.getQueryString();
-        for (QueryMacroHandler handler : handlers) {
-            modifiedQuery = handler.replaceQueryParams(modifiedQuery, queryParameters);
+        String queryString = query.getQueryString();
+        String modifiedQuery = macroExpander.replaceQueryParams(queryString, queryParameters);
+        if (!modifiedQuery.equals(queryString)) {
+            query.setQueryString(modifiedQuery);
         }
-        query.setQueryString(modifiedQuery);
     }
 
     protected MetaProperty getPrimaryKeyProperty() {
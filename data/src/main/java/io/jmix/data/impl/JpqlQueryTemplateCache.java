@@ -0,0 +1,167 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jmix.data.impl;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import io.jmix.data.DataProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Bounded in-memory cache of JPQL query strings built by {@link JpqlQueryBuilder}.
+ * <p>
+ * The result query depends only on the source query and on the structure of the actualized condition,
+ * sorting and other options, but not on the parameter values, so the same query is reused when a condition
+ * is applied with different values.
+ * <p>
+ * Sorting is identified by the sort orders, so the cache must be invalidated if a
+ * {@link io.jmix.data.persistence.JpqlSortExpressionProvider} starts returning different expressions for them.
+ */
+@Component("data_JpqlQueryTemplateCache")
+public class JpqlQueryTemplateCache {
+
+    @Autowired
+    protected DataProperties properties;
+
+    protected Cache<Key, String> cache;
+
+    @PostConstruct
+    protected void init() {
+        cache = CacheBuilder.newBuilder()
+                .maximumSize(Math.max(properties.getQueryTemplateCacheSize(), 0))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns true if the cache is enabled by {@link DataProperties#getQueryTemplateCacheSize()}.
+     */
+    public boolean isEnabled() {
+        return properties.getQueryTemplateCacheSize() > 0;
+    }
+
+    /**
+     * Returns the result query for the given key or null if it is not cached.
+     */
+    @Nullable
+    public String get(Key key) {
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * Associates the result query with the key.
+     */
+    public void put(Key key, String queryString) {
+        cache.put(key, queryString);
+    }
+
+    public long getSize() {
+        return cache.size();
+    }
+
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public static class Key {
+        protected final String queryString;
+        protected final String entityName;
+        protected final List<String> valueProperties;
+        protected final List<Object> conditionShape;
+        protected final List<String> sortOrders;
+        protected final boolean countQuery;
+        protected final Integer previousResultsKey;
+        protected final boolean keyset;
+        protected final int hashCode;
+
+        /**
+         * @param queryString        source query
+         * @param entityName         entity name, may be null for value queries
+         * @param valueProperties    value properties, may be null for entity queries
+         * @param conditionShape     structure of the actualized condition, see {@link JpqlQueryBuilder}
+         * @param sortOrders         requested sort properties with directions
+         * @param countQuery         whether the count query is built
+         * @param previousResultsKey key of previous results or null if they are not used
+         * @param keyset             whether the keyset pagination condition is added
+         */
+        public Key(String queryString, @Nullable String entityName, @Nullable List<String> valueProperties,
+                   List<Object> conditionShape, List<String> sortOrders, boolean countQuery,
+                   @Nullable Integer previousResultsKey, boolean keyset) {
+            this.queryString = queryString;
+            this.entityName = entityName;
+            this.valueProperties = valueProperties == null ? null : ImmutableList.copyOf(valueProperties);
+            this.conditionShape = Collections.unmodifiableList(new ArrayList<>(conditionShape));
+            this.sortOrders = ImmutableList.copyOf(sortOrders);
+            this.countQuery = countQuery;
+            this.previousResultsKey = previousResultsKey;
+            this.keyset = keyset;
+            this.hashCode = Objects.hash(queryString, entityName, this.valueProperties, this.conditionShape,
+                    this.sortOrders, countQuery, previousResultsKey, keyset);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return hashCode == key.hashCode
+                    && countQuery == key.countQuery
+                    && keyset == key.keyset
+                    && queryString.equals(key.queryString)
+                    && Objects.equals(entityName, key.entityName)
+                    && Objects.equals(valueProperties, key.valueProperties)
+                    && conditionShape.equals(key.conditionShape)
+                    && sortOrders.equals(key.sortOrders)
+                    && Objects.equals(previousResultsKey, key.previousResultsKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .addValue(queryString)
+                    .add("entityName", entityName)
+                    .add("conditionShape", conditionShape)
+                    .add("sortOrders", sortOrders)
+                    .add("countQuery", countQuery)
+                    .add("keyset", keyset)
+                    .toString();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jmix.data.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Expands JPQL macros using {@link QueryMacroHandler}s.
+ * <p>
+ * A query is scanned once for {@code @}-macros and only the handlers of the found macros are instantiated and
+ * invoked. Queries without the {@code @} character are returned as is. The names of the handlers required for a query
+ * string are cached, so the scan is performed once per query string.
+ */
+@Component("data_QueryMacroExpander")
+public class QueryMacroExpander {
+
+    protected static final int PLAN_CACHE_SIZE = 1000;
+
+    @Autowired
+    protected ApplicationContext applicationContext;
+
+    protected volatile Map<String, String> macroNamesByHandlerBean;
+
+    protected final Cache<String, List<String>> handlerBeansByQuery = CacheBuilder.newBuilder()
+            .maximumSize(PLAN_CACHE_SIZE)
+            .build();
+
+    /**
+     * Returns new instances of the handlers of macros contained in the query string.
+     */
+    public List<QueryMacroHandler> createHandlers(String queryString) {
+        if (queryString.indexOf('@') < 0) {
+            return Collections.emptyList();
+        }
+        List<String> beanNames = handlerBeansByQuery.getIfPresent(queryString);
+        if (beanNames == null) {
+            beanNames = getHandlerBeans(findMacroNames(queryString));
+            handlerBeansByQuery.put(queryString, beanNames);
+        }
+        if (beanNames.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<QueryMacroHandler> handlers = new ArrayList<>(beanNames.size());
+        for (String beanName : beanNames) {
+            handlers.add(applicationContext.getBean(beanName, QueryMacroHandler.class));
+        }
+        return handlers;
+    }
+
+    /**
+     * Replaces macros in the query string by the given handlers.
+     */
+    public String expandMacros(String queryString, List<QueryMacroHandler> handlers) {
+        String result = queryString;
+        for (QueryMacroHandler handler : handlers) {
+            result = handler.expandMacro(result);
+        }
+        return result;
+    }
+
+    /**
+     * Replaces parameter names in macros of the query string with their values.
+     *
+     * @see QueryMacroHandler#replaceQueryParams(String, Map)
+     */
+    public String replaceQueryParams(String queryString, Map<String, Object> params) {
+        String result = queryString;
+        for (QueryMacroHandler handler : createHandlers(queryString)) {
+            result = handler.replaceQueryParams(result, params);
+        }
+        return result;
+    }
+
+    /**
+     * Returns names of macros contained in the query string, without the leading {@code @}.
+     */
+    public Set<String> findMacroNames(String queryString) {
+        Set<String> names = new HashSet<>();
+        int length = queryString.length();
+        int pos = queryString.indexOf('@');
+        while (pos >= 0) {
+            int end = pos + 1;
+            while (end < length && Character.isJavaIdentifierPart(queryString.charAt(end))) {
+                end++;
+            }
+            if (end > pos + 1) {
+                names.add(queryString.substring(pos + 1, end));
+            }
+            pos = queryString.indexOf('@', end);
+        }
+        return names;
+    }
+
+    protected List<String> getHandlerBeans(Set<String> macroNames) {
+        if (macroNames.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> beanNames = new ArrayList<>();
+        for (Map.Entry<String, String> entry : getMacroNamesByHandlerBean().entrySet()) {
+            if (entry.getValue() == null || macroNames.contains(entry.getValue())) {
+                beanNames.add(entry.getKey());
+            }
+        }
+        return Collections.unmodifiableList(beanNames);
+    }
+
+    protected Map<String, String> getMacroNamesByHandlerBean() {
+        Map<String, String> result = macroNamesByHandlerBean;
+        if (result == null) {
+            result = new LinkedHashMap<>();
+            for (String beanName : applicationContext.getBeanNamesForType(QueryMacroHandler.class)) {
+                result.put(beanName, applicationContext.getBean(beanName, QueryMacroHandler.class).getMacroName());
+            }
+            macroNamesByHandlerBean = result;
+        }
+        return result;
+    }
+}
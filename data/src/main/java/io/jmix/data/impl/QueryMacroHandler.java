@@ -15,6 +15,7 @@
  */
 package io.jmix.data.impl;
 
+import javax.annotation.Nullable;
 import java.util.Map;
 
 /**
@@ -58,4 +59,14 @@ public interface QueryMacroHandler {
      * @return modified query string
      */
     String replaceQueryParams(String queryString, Map<String, Object> params);
+
+    /**
+     * Returns the name of the macro processed by the handler without the leading {@code @}, e.g. {@code between}.
+     * The handler is invoked only for queries containing the macro. If null is returned, the handler is invoked for
+     * all queries containing any macro.
+     */
+    @Nullable
+    default String getMacroName() {
+        return null;
+    }
 }
\ No newline at end of file
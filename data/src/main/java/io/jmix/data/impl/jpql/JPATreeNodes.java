@@ -18,6 +18,7 @@ package io.jmix.data.impl.jpql;
 
 import io.jmix.data.impl.jpql.antlr2.JPA2Lexer;
 import io.jmix.data.impl.jpql.tree.AggregateExpressionNode;
+import io.jmix.data.impl.jpql.tree.BaseCustomNode;
 import io.jmix.data.impl.jpql.tree.JoinVariableNode;
 import io.jmix.data.impl.jpql.tree.OrderByNode;
 import io.jmix.data.impl.jpql.tree.PathNode;
@@ -90,6 +91,20 @@ public class JPATreeNodes {
         return new CommonTree(new CommonToken(JPA2Lexer.WORD, word));
     }
 
+    /**
+     * Creates a deep copy of the tree. Custom nodes copy their children themselves,
+     * children of plain ANTLR nodes are copied here.
+     */
+    public static Tree copyTree(Tree node) {
+        Tree copy = node.dupNode();
+        if (!(node instanceof BaseCustomNode)) {
+            for (int i = 0; i < node.getChildCount(); i++) {
+                copy.addChild(copyTree(node.getChild(i)));
+            }
+        }
+        return copy;
+    }
+
     public static AggregateExpressionNode createAggregateCount(Tree expression, boolean distinctValues) {
         AggregateExpressionNode node = createAggregateExpression();
 
@@ -21,28 +21,36 @@ import io.jmix.data.impl.jpql.model.Attribute;
 import io.jmix.data.impl.jpql.model.JpqlEntityModel;
 import io.jmix.data.impl.jpql.tree.IdentificationVariableNode;
 import io.jmix.data.impl.jpql.tree.PathNode;
-import io.jmix.data.impl.jpql.tree.SimpleConditionNode;
 import org.antlr.runtime.tree.TreeVisitor;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Objects;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Collectors;
 
 import static java.lang.String.format;
 
+/**
+ * Parser instances are cached and shared by {@link io.jmix.data.QueryTransformerFactory}, so the parsed tree
+ * must never be modified, and the answers which do not depend on arguments are computed once.
+ */
 @Scope(BeanDefinition.SCOPE_PROTOTYPE)
 @Component("data_QueryParser")
 public class QueryParserAstBased implements QueryParser {
     protected DomainModel model;
     protected String query;
-    protected QueryTree queryTree;
-    protected QueryTreeAnalyzer queryAnalyzer;
+    protected volatile QueryTree queryTree;
+    protected volatile QueryTreeAnalyzer queryAnalyzer;
+
+    protected volatile Set<String> paramNames;
+    protected volatile Set<String> allEntityNames;
+    protected volatile String entityName;
+    protected volatile String entityAlias;
+    protected final ConcurrentMap<String, Boolean> entitySelects = new ConcurrentHashMap<>();
 
     protected static class EntityNameAndPath {
         String entityName;
@@ -65,42 +73,92 @@ public class QueryParserAstBased implements QueryParser {
         this.query = query;
     }
 
+    /**
+     * Creates a parser for an already built tree, e.g. the tree modified by a
+     * {@link io.jmix.data.impl.jpql.transform.QueryTransformerAstBased}.
+     */
+    public QueryParserAstBased(DomainModel model, QueryTree queryTree) {
+        this.model = model;
+        this.query = queryTree.getQueryString();
+        this.queryTree = queryTree;
+    }
+
     protected QueryTree getTree() {
-        if (queryTree == null) {
-            try {
-                queryTree = new QueryTree(model, query);
-            } catch (JPA2RecognitionException e) {
-                throw new JpqlSyntaxException(format("Errors found for input JPQL:[%s]\n%s", StringUtils.strip(query), e.getMessage()));
-            }
-            List<ErrorRec> errors = new ArrayList<>(queryTree.getInvalidIdVarNodes());
-            if (!errors.isEmpty()) {
-                throw new JpqlSyntaxException(format("Errors found for input JPQL:[%s]", StringUtils.strip(query)), errors);
+        QueryTree tree = queryTree;
+        if (tree == null) {
+            synchronized (this) {
+                tree = queryTree;
+                if (tree == null) {
+                    try {
+                        tree = new QueryTree(model, query);
+                    } catch (JPA2RecognitionException e) {
+                        throw new JpqlSyntaxException(format("Errors found for input JPQL:[%s]\n%s", StringUtils.strip(query), e.getMessage()));
+                    }
+                    List<ErrorRec> errors = new ArrayList<>(tree.getInvalidIdVarNodes());
+                    if (!errors.isEmpty()) {
+                        throw new JpqlSyntaxException(format("Errors found for input JPQL:[%s]", StringUtils.strip(query)), errors);
+                    }
+                    queryTree = tree;
+                }
             }
         }
-        return queryTree;
+        return tree;
+    }
+
+    /**
+     * Builds the tree of the query if it is not built yet.
+     *
+     * @throws JpqlSyntaxException if the query is invalid
+     */
+    public void parse() {
+        getTree();
     }
 
     protected QueryTreeAnalyzer getAnalyzer() {
-        if (queryAnalyzer == null) {
-            queryAnalyzer = new QueryTreeAnalyzer(getTree());
+        QueryTreeAnalyzer analyzer = queryAnalyzer;
+        if (analyzer == null) {
+            analyzer = new QueryTreeAnalyzer(getTree());
+            queryAnalyzer = analyzer;
         }
-        return queryAnalyzer;
+        return analyzer;
+    }
+
+    /**
+     * @return a copy of the parsed tree which can be modified without affecting this parser
+     */
+    public QueryTree getQueryTreeCopy() {
+        return getTree().copy();
     }
 
     @Override
     public Set<String> getParamNames() {
-        return getAnalyzer().getParamNames();
+        Set<String> result = paramNames;
+        if (result == null) {
+            result = Collections.unmodifiableSet(getAnalyzer().getParamNames());
+            paramNames = result;
+        }
+        return result;
     }
 
     @Override
     public Set<String> getAllEntityNames() {
-        return getAnalyzer().getEntityNames();
+        Set<String> result = allEntityNames;
+        if (result == null) {
+            result = Collections.unmodifiableSet(getAnalyzer().getEntityNames());
+            allEntityNames = result;
+        }
+        return result;
     }
 
     @Override
     public String getEntityName() {
-        IdentificationVariableNode identificationVariable = getAnalyzer().getMainIdentificationVariableNode();
-        return getAnalyzer().getMainEntityName(identificationVariable);
+        String result = entityName;
+        if (result == null) {
+            IdentificationVariableNode identificationVariable = getAnalyzer().getMainIdentificationVariableNode();
+            result = getAnalyzer().getMainEntityName(identificationVariable);
+            entityName = result;
+        }
+        return result;
     }
 
     @Override
@@ -110,20 +168,27 @@ public class QueryParserAstBased implements QueryParser {
 
     @Override
     public String getEntityAlias() {
-        IdentificationVariableNode identificationVariable = getAnalyzer().getMainIdentificationVariableNode();
-        return getAnalyzer().getMainEntityVariable(identificationVariable);
+        String result = entityAlias;
+        if (result == null) {
+            IdentificationVariableNode identificationVariable = getAnalyzer().getMainIdentificationVariableNode();
+            result = getAnalyzer().getMainEntityVariable(identificationVariable);
+            entityAlias = result;
+        }
+        return result;
     }
 
     @Override
     public boolean isEntitySelect(String targetEntity) {
-        PathNode pathNode = getAnalyzer().getMainSelectedPathNode();
-        IdentificationVariableNode identificationVariable = getAnalyzer().getMainIdentificationVariableNode();
-        if (pathNode != null && identificationVariable != null) {
-            return queryAnalyzer.isVariablePathNode(pathNode)
-                    && StringUtils.equalsIgnoreCase(identificationVariable.getVariableName(), pathNode.getEntityVariableName())
-                    && Objects.equals(identificationVariable.getEntityNameFromQuery(), targetEntity);
-        }
-        return false;
+        return entitySelects.computeIfAbsent(Objects.toString(targetEntity, ""), key -> {
+            PathNode pathNode = getAnalyzer().getMainSelectedPathNode();
+            IdentificationVariableNode identificationVariable = getAnalyzer().getMainIdentificationVariableNode();
+            if (pathNode != null && identificationVariable != null) {
+                return getAnalyzer().isVariablePathNode(pathNode)
+                        && StringUtils.equalsIgnoreCase(identificationVariable.getVariableName(), pathNode.getEntityVariableName())
+                        && Objects.equals(identificationVariable.getEntityNameFromQuery(), targetEntity);
+            }
+            return false;
+        });
     }
 
     @Override
@@ -131,7 +196,7 @@ public class QueryParserAstBased implements QueryParser {
         IdentificationVariableNode identificationVariable = getAnalyzer().getMainIdentificationVariableNode();
         if (identificationVariable != null) {
             String variableName = identificationVariable.getVariableName();
-            return queryTree.visit(NodesFinder.of(SimpleConditionNode.class)).getFoundNodes().stream()
+            return getAnalyzer().getConditions().stream()
                     .filter(condition -> getAnalyzer().isConditionForEntityProperty(condition, variableName, attribute))
                     .anyMatch(condition -> getAnalyzer().isConditionISNULL(condition));
         }
@@ -143,7 +208,7 @@ public class QueryParserAstBased implements QueryParser {
         IdentificationVariableNode identificationVariable = getAnalyzer().getMainIdentificationVariableNode();
         if (identificationVariable != null) {
             String variableName = identificationVariable.getVariableName();
-            return queryTree.visit(NodesFinder.of(SimpleConditionNode.class)).getFoundNodes().stream()
+            return getAnalyzer().getConditions().stream()
                     .filter(condition -> getAnalyzer().isConditionForEntityProperty(condition, variableName, attribute))
                     .anyMatch(condition -> getAnalyzer().isConditionISNOTNULL(condition));
         }
@@ -209,8 +274,12 @@ public class QueryParserAstBased implements QueryParser {
         return getTree().getAstSelectedNodes()
                 .map(node -> {
                     TreeToQuery toQuery = new TreeToQuery();
-                    node.setSkipSeparator(true);
-                    new TreeVisitor().visit(node, toQuery);
+                    TreeVisitor visitor = new TreeVisitor();
+                    // render the children instead of the item itself to omit the separator
+                    // without changing the state of the shared tree
+                    for (int i = 0; i < node.getChildCount(); i++) {
+                        visitor.visit(node.getChild(i), toQuery);
+                    }
                     return toQuery.getQueryString();
                 })
                 .collect(Collectors.toList());
@@ -225,7 +294,7 @@ public class QueryParserAstBased implements QueryParser {
         }
 
         QueryVariableContext variableContext = getTree().getQueryVariableContext();
-        if (queryAnalyzer.isVariablePathNode(pathNode)) {
+        if (getAnalyzer().isVariablePathNode(pathNode)) {
             JpqlEntityModel entity = variableContext.getEntityByVariableName(pathNode.getEntityVariableName());
             if (entity != null && entity.getName() != null && identificationVariable != null) {
                 if (!StringUtils.equalsIgnoreCase(pathNode.getEntityVariableName(), identificationVariable.getVariableName())) {
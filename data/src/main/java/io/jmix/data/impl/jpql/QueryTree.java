@@ -40,6 +40,15 @@ public class QueryTree {
         this(model, query, true);
     }
 
+    protected QueryTree(DomainModel model, String queryString, CommonTree tree) {
+        this.model = model;
+        this.queryString = queryString;
+        this.tree = tree;
+
+        this.idVarSelector = new IdVarSelector(model);
+        new TreeVisitor().visit(tree, idVarSelector);
+    }
+
     public QueryTree(DomainModel model, String query, boolean failOnErrors) {
         Preconditions.checkNotNull(query, "query is null");
         String modifiedQuery = StringUtils.replaceChars(query, "\n\r\t", "   ");
@@ -56,6 +65,21 @@ public class QueryTree {
         new TreeVisitor().visit(tree, idVarSelector);
     }
 
+    /**
+     * @return a deep copy of this tree which can be modified without affecting the original one
+     */
+    public QueryTree copy() {
+        return new QueryTree(model, queryString, (CommonTree) JPATreeNodes.copyTree(tree));
+    }
+
+    /**
+     * Rebuilds the variable context after the tree has been modified, e.g. when the main entity name is replaced.
+     */
+    public void refreshVariableContext() {
+        this.idVarSelector = new IdVarSelector(model);
+        new TreeVisitor().visit(tree, idVarSelector);
+    }
+
     public DomainModel getModel() {
         return model;
     }
@@ -47,7 +47,23 @@ public class ConditionJpqlGenerator {
             return query;
         }
         QueryTransformer transformer = queryTransformerFactory.transformer(query);
-        QueryParser parser = queryTransformerFactory.parser(query);
+        processQuery(transformer, context);
+        return transformer.getResult();
+    }
+
+    /**
+     * Modifies a JPQL query being transformed according to the given tree of conditions. Allows combining
+     * the conditions with other transformations of the same query without building an intermediate query string.
+     *
+     * @param transformer transformer of the JPQL query
+     * @param context     condition generation context
+     * @return true if the query has been modified
+     */
+    public boolean processQuery(QueryTransformer transformer, ConditionGenerationContext context) {
+        if (context.getCondition() == null) {
+            return false;
+        }
+        QueryParser parser = queryTransformerFactory.parser(transformer);
         context.setEntityAlias(parser.getEntityAlias());
 
         if (context.getValueProperties() != null) {
@@ -62,7 +78,7 @@ public class ConditionJpqlGenerator {
         } else {
             transformer.addWhere(where);
         }
-        return transformer.getResult();
+        return true;
     }
 
     protected String generateJoins(ConditionGenerationContext context) {
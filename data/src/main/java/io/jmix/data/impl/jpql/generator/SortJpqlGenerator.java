@@ -17,6 +17,7 @@
 package io.jmix.data.impl.jpql.generator;
 
 import com.google.common.collect.Iterables;
+import io.jmix.data.KeysetPosition;
 import io.jmix.data.QueryTransformer;
 import io.jmix.data.QueryTransformerFactory;
 import io.jmix.data.persistence.DbmsSpecifics;
@@ -54,9 +55,23 @@ public class SortJpqlGenerator {
     private static final Logger log = org.slf4j.LoggerFactory.getLogger(SortJpqlGenerator.class);
 
     public String processQuery(String entityName, List<String> valueProperties, String queryString, Sort sort) {
+        if (sort.getOrders().isEmpty()) {
+            return queryString;
+        }
+        QueryTransformer transformer = queryTransformerFactory.transformer(queryString);
+        return processQuery(entityName, valueProperties, transformer, sort) ? transformer.getResult() : queryString;
+    }
+
+    /**
+     * Adds 'order by' clause to a JPQL query being transformed. Allows combining the sorting with other
+     * transformations of the same query without building an intermediate query string.
+     *
+     * @return true if the query has been modified
+     */
+    public boolean processQuery(String entityName, List<String> valueProperties, QueryTransformer transformer, Sort sort) {
         List<Sort.Order> orders = sort.getOrders();
         if (orders.isEmpty()) {
-            return queryString;
+            return false;
         }
 
         Map<Sort.Direction, List<Sort.Order>> directions = orders.stream()
@@ -80,13 +95,159 @@ public class SortJpqlGenerator {
                 sortExpressions.addAll(getUniqueSortExpression(sortExpressions, metaClass, asc));
             }
         } else if (valueProperties != null) {
-            List<String> selectedExpressions = queryTransformerFactory.parser(queryString).getSelectedExpressionsList();
+            List<String> selectedExpressions = queryTransformerFactory.parser(transformer).getSelectedExpressionsList();
             for (Sort.Order order : sort.getOrders()) {
                 sortExpressions.addAll(getValuePropertySortExpression(order.getProperty(), valueProperties, selectedExpressions, asc));
             }
         }
 
-        return transformQuery(queryString, sortExpressions, asc);
+        return transformQuery(transformer, sortExpressions, asc);
+    }
+
+    /**
+     * Returns the sort to be used with keyset pagination: the given sort if it is not empty, otherwise sorting
+     * by the primary key.
+     */
+    public Sort getKeysetSort(String entityName, @Nullable Sort sort) {
+        if (sort != null && !sort.getOrders().isEmpty()) {
+            return sort;
+        }
+        MetaClass metaClass = metadata.getClass(entityName);
+        String pkName = metadataTools.getPrimaryKeyName(metaClass);
+        if (pkName == null) {
+            throw new IllegalArgumentException("Keyset pagination is not supported for entities without primary key");
+        }
+        return Sort.by(pkName);
+    }
+
+    /**
+     * Adds a keyset (seek) pagination condition to a JPQL query being transformed. The query will return only rows
+     * following a position in the order defined by the sort with the primary key as the last sort key,
+     * as it is done by {@link #processQuery(String, List, QueryTransformer, Sort)}. Values of the position are
+     * passed in parameters returned by {@link #getKeysetParameters(String, Sort, KeysetPosition)}.
+     * <p>
+     * JPQL has no row value comparison, so the condition is generated in the expanded form:
+     * {@code k1 >= :p1 and (k1 > :p1 or k1 = :p1 and k2 > :p2 ...)}. The leading range predicate allows the database
+     * to seek by an index on the first sort key. The keys are the same expressions as in the 'order by' clause.
+     *
+     * @return true if the query has been modified
+     * @throws IllegalArgumentException if keyset pagination cannot be applied to the sort: properties are sorted
+     *                                  in different directions or cannot be compared,
+     *                                  see {@link #getKeysetProperties(MetaClass, Sort)}
+     */
+    public boolean processKeysetQuery(String entityName, QueryTransformer transformer, Sort sort) {
+        List<Sort.Order> orders = sort.getOrders();
+        if (orders.isEmpty()) {
+            return false;
+        }
+        boolean asc = orders.get(0).getDirection() == Sort.Direction.ASC;
+        if (orders.stream().anyMatch(order -> (order.getDirection() == Sort.Direction.ASC) != asc)) {
+            throw new IllegalArgumentException("Keyset pagination requires sorting by all properties in the same direction");
+        }
+
+        MetaClass metaClass = metadata.getClass(entityName);
+        List<String> expressions = new ArrayList<>();
+        for (String property : getKeysetProperties(metaClass, sort)) {
+            expressions.add(getKeysetExpression(Objects.requireNonNull(metaClass.getPropertyPath(property)), asc));
+        }
+
+        String operator = asc ? ">" : "<";
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < expressions.size(); i++) {
+            if (i > 0) {
+                sb.append(" or ");
+            }
+            for (int j = 0; j < i; j++) {
+                sb.append(expressions.get(j)).append(" = :").append(keysetParameterName(j)).append(" and ");
+            }
+            sb.append(expressions.get(i)).append(" ").append(operator).append(" :").append(keysetParameterName(i));
+        }
+        String where = expressions.size() == 1 ? sb.toString() :
+                String.format("%s %s= :%s and (%s)", expressions.get(0), operator, keysetParameterName(0), sb);
+        transformer.addWhere(where);
+        return true;
+    }
+
+    /**
+     * Returns parameters of the condition added by {@link #processKeysetQuery(String, QueryTransformer, Sort)}.
+     *
+     * @throws IllegalArgumentException if the position does not match the sort keys
+     */
+    public Map<String, Object> getKeysetParameters(String entityName, Sort sort, KeysetPosition position) {
+        List<String> properties = getKeysetProperties(metadata.getClass(entityName), sort);
+        List<Object> values = position.getValues();
+        if (values.size() != properties.size()) {
+            throw new IllegalArgumentException(String.format("Keyset position %s does not match sort keys %s",
+                    position, properties));
+        }
+
+        Map<String, Object> parameters = new HashMap<>();
+        for (int i = 0; i < values.size(); i++) {
+            checkNotNullArgument(values.get(i), "Keyset position value of '%s' is null", properties.get(i));
+            parameters.put(keysetParameterName(i), values.get(i));
+        }
+        return parameters;
+    }
+
+    /**
+     * Returns paths of the sort properties followed by the primary key, checking that keyset pagination
+     * can be applied to them. The condition can be built only for mandatory persistent datatype properties
+     * of the entity itself which are sorted by their plain values: null values would not be reachable
+     * by the condition, sorting by a reference property requires a join, and an expression modified by
+     * {@link JpqlSortExpressionProvider} may order values differently.
+     *
+     * @throws IllegalArgumentException if keyset pagination cannot be applied to the sort
+     */
+    protected List<String> getKeysetProperties(MetaClass metaClass, Sort sort) {
+        if (metadataTools.hasCompositePrimaryKey(metaClass)) {
+            throw new IllegalArgumentException("Keyset pagination is not supported for entities with composite primary key");
+        }
+        boolean asc = sort.getOrders().isEmpty() || sort.getOrders().get(0).getDirection() == Sort.Direction.ASC;
+
+        List<String> properties = new ArrayList<>();
+        for (Sort.Order order : sort.getOrders()) {
+            properties.add(order.getProperty());
+        }
+        String pkName = metadataTools.getPrimaryKeyName(metaClass);
+        if (pkName != null && !properties.contains(pkName)) {
+            properties.add(pkName);
+        }
+
+        for (String property : properties) {
+            MetaPropertyPath metaPropertyPath = metaClass.getPropertyPath(property);
+            checkNotNullArgument(metaPropertyPath, "Could not resolve property path '%s' in '%s'", property, metaClass);
+            if (metaPropertyPath.getMetaProperties().length > 1
+                    || !metadataTools.isJpa(metaPropertyPath)
+                    || metaPropertyPath.getRange().isClass()
+                    || metadataTools.isLob(metaPropertyPath.getMetaProperty())) {
+                throw new IllegalArgumentException(String.format(
+                        "Keyset pagination supports only sorting by persistent datatype properties of the entity, got '%s'", property));
+            }
+            if (!property.equals(pkName) && !metaPropertyPath.getMetaProperty().isMandatory()) {
+                throw new IllegalArgumentException(String.format(
+                        "Keyset pagination supports only sorting by mandatory properties, got '%s'", property));
+            }
+            if (getKeysetExpression(metaPropertyPath, asc) == null) {
+                throw new IllegalArgumentException(String.format(
+                        "Keyset pagination does not support the sort expression of '%s'", property));
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * Returns the expression generated for the property in the 'order by' clause if the keyset condition
+     * can compare it with the position value, otherwise null.
+     */
+    @Nullable
+    protected String getKeysetExpression(MetaPropertyPath metaPropertyPath, boolean asc) {
+        List<String> sortExpressions = getPropertySortExpressions(metaPropertyPath, asc);
+        String expression = "{E}." + metaPropertyPath;
+        return sortExpressions.size() == 1 && sortExpressions.get(0).equals(expression) ? expression : null;
+    }
+
+    protected String keysetParameterName(int index) {
+        return "_keyset" + index;
     }
 
     protected List<String> getUniqueSortExpression(List<String> sortExpressions, MetaClass metaClass, boolean asc) {
@@ -118,13 +279,12 @@ public class SortJpqlGenerator {
         return Collections.emptyList();
     }
 
-    protected String transformQuery(String queryString, List<String> sortExpressions, boolean asc) {
+    protected boolean transformQuery(QueryTransformer transformer, List<String> sortExpressions, boolean asc) {
         if (!sortExpressions.isEmpty()) {
-            QueryTransformer transformer = queryTransformerFactory.transformer(queryString);
             transformer.replaceOrderByExpressions(!asc, sortExpressions.toArray(new String[0]));
-            return transformer.getResult();
+            return true;
         } else {
-            return queryString;
+            return false;
         }
     }
 
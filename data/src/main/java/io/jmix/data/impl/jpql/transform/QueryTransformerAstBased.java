@@ -17,6 +17,7 @@
 
 package io.jmix.data.impl.jpql.transform;
 
+import io.jmix.data.QueryParser;
 import io.jmix.data.QueryTransformer;
 import io.jmix.data.impl.jpql.*;
 import io.jmix.data.impl.jpql.tree.*;
@@ -44,6 +45,7 @@ public class QueryTransformerAstBased implements QueryTransformer {
     protected QueryTree queryTree;
     protected QueryTreeTransformer queryTransformer;
     protected QueryTreeAnalyzer queryAnalyzer;
+    protected QueryParserAstBased sourceParser;
     protected Set<String> addedParams = new HashSet<>();
 
     public QueryTransformerAstBased(DomainModel model, String query) {
@@ -51,6 +53,15 @@ public class QueryTransformerAstBased implements QueryTransformer {
         this.query = query;
     }
 
+    /**
+     * Creates a transformer that works on a copy of the tree already parsed by {@code sourceParser}
+     * instead of parsing the query again.
+     */
+    public QueryTransformerAstBased(DomainModel model, String query, QueryParserAstBased sourceParser) {
+        this(model, query);
+        this.sourceParser = sourceParser;
+    }
+
     protected QueryTreeTransformer getTransformer() {
         if (queryTransformer == null) {
             queryTransformer = new QueryTreeTransformer(getTree());
@@ -66,6 +77,9 @@ public class QueryTransformerAstBased implements QueryTransformer {
     }
 
     protected QueryTree getTree() {
+        if (queryTree == null && sourceParser != null) {
+            queryTree = sourceParser.getQueryTreeCopy();
+        }
         if (queryTree == null) {
             try {
                 queryTree = new QueryTree(model, query);
@@ -90,6 +104,13 @@ public class QueryTransformerAstBased implements QueryTransformer {
         return addedParams;
     }
 
+    @Override
+    public QueryParser getParser() {
+        QueryTree tree = getTree();
+        tree.refreshVariableContext();
+        return new QueryParserAstBased(model, tree);
+    }
+
     @Override
     public void handleCaseInsensitiveParam(String parameterName) {
         List<SimpleConditionNode> conditions = getAnalyzer().getConditions().stream()
@@ -17,6 +17,7 @@
 package io.jmix.data.impl.jpql.tree;
 
 import io.jmix.data.impl.jpql.ErrorRec;
+import io.jmix.data.impl.jpql.JPATreeNodes;
 import io.jmix.data.impl.jpql.QueryBuilder;
 import org.antlr.runtime.Token;
 import org.antlr.runtime.tree.CommonTree;
@@ -52,9 +53,11 @@ public class BaseCustomNode extends CommonTree implements TreeToQueryCapable {
     }
 
     protected void dupChildren(CommonTree result) {
+        if (children == null) {
+            return;
+        }
         for (Object child : children) {
-            CommonTree t = (CommonTree) child;
-            Tree copy = t.dupNode();
+            Tree copy = JPATreeNodes.copyTree((Tree) child);
             result.addChild(copy);
         }
     }
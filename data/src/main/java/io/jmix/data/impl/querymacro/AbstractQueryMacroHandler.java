@@ -29,6 +29,8 @@ import java.util.regex.Pattern;
 
 public abstract class AbstractQueryMacroHandler implements QueryMacroHandler {
 
+    protected static final Pattern MACRO_NAME_PATTERN = Pattern.compile("@(\\w+)");
+
     protected int count;
     protected final Pattern macroPattern;
     protected Map<String, Class> expandedParamTypes;
@@ -58,6 +60,17 @@ public abstract class AbstractQueryMacroHandler implements QueryMacroHandler {
 
     protected abstract String doExpand(String macro);
 
+    /**
+     * Returns the macro name from the beginning of the macro pattern, e.g. {@code between} for
+     * {@code @between\s*\(([^)]+)\)}.
+     */
+    @Nullable
+    @Override
+    public String getMacroName() {
+        Matcher matcher = MACRO_NAME_PATTERN.matcher(macroPattern.pattern());
+        return matcher.lookingAt() ? matcher.group(1) : null;
+    }
+
     @Override
     public void setExpandedParamTypes(Map<String, Class> expandedParamTypes) {
         this.expandedParamTypes = expandedParamTypes;
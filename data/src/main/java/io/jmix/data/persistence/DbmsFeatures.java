@@ -16,6 +16,8 @@
 
 package io.jmix.data.persistence;
 
+import org.springframework.jdbc.core.JdbcTemplate;
+
 import javax.annotation.Nullable;
 import java.util.Map;
 
@@ -81,6 +83,44 @@ public interface DbmsFeatures {
         return null;
     }
 
+    /**
+     * Estimates the number of rows returned by a query using planner estimates or table statistics of the DBMS.
+     * Used for counting entities with the {@link io.jmix.data.PersistenceHints#APPROXIMATE_COUNT} hint.
+     *
+     * @param jdbcTemplate JDBC template of the data store, it uses the connection of the current transaction
+     * @param selectSql    SQL of the query or null if the query has parameters and cannot be executed without them
+     * @param tableName    main table of the query
+     * @param filtered     true if the SQL selects not all rows of the table, e.g. it has conditions including
+     *                     soft deletion and additional criteria, or joins, so the table statistics cannot be used
+     * @return estimated number of rows or {@code null} if no estimate is available and the exact count must be used
+     */
+    @Nullable
+    default Long estimateRowCount(JdbcTemplate jdbcTemplate, @Nullable String selectSql, String tableName,
+                                  boolean filtered) {
+        return null;
+    }
+
+    /**
+     * @return true if a list of values can be passed to a query in a single array parameter, see
+     * {@link #getArrayInCondition(String, String)}
+     */
+    default boolean supportsArrayParameters() {
+        return false;
+    }
+
+    /**
+     * Returns a JPQL condition which is true if the value of the path is equal to an element of the array
+     * passed in the parameter. Unlike the "IN" operator with a collection parameter, the query text does not
+     * depend on the number of values.
+     *
+     * @param path      JPQL path, e.g. {@code e.id}
+     * @param paramName name of the parameter with a Java array value
+     * @throws UnsupportedOperationException if {@link #supportsArrayParameters()} returns false
+     */
+    default String getArrayInCondition(String path, String paramName) {
+        throw new UnsupportedOperationException("Array parameters are not supported by " + getTypeAndVersion());
+    }
+
 
     /**
      * Provides information about {@code jmix.data.dbmsType} and {@code jmix.data.dbmsVersion} this bean designed for. Version can be empty.
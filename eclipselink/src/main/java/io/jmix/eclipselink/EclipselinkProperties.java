@@ -16,20 +16,368 @@
 
 package io.jmix.eclipselink;
 
+import io.jmix.core.FetchMode;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.ConstructorBinding;
 import org.springframework.boot.context.properties.bind.DefaultValue;
 
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
 @ConfigurationProperties(prefix = "jmix.eclipselink")
 @ConstructorBinding
 public class EclipselinkProperties {
     boolean queryCacheEnabled;
 
-    public EclipselinkProperties(@DefaultValue("true") boolean queryCacheEnabled) {
+    /**
+     * Maximum number of transformed JPQL query strings kept in memory. Zero disables the cache.
+     */
+    int transformedQueryCacheSize;
+
+    /**
+     * JDBC fetch size and the number of entities processed at once when loading entities through a database cursor
+     * by {@link io.jmix.eclipselink.impl.JpaDataStore#loadList(io.jmix.core.LoadContext, java.util.function.Consumer)}.
+     */
+    int streamingFetchSize;
+
+    /**
+     * Whether to cache results of entity count queries in the query cache. The cached count is discarded when
+     * instances of any entity used in the query are changed through JPA. The total number of rows is also
+     * determined without a count query if a loaded page of a cacheable query is not full.
+     */
+    boolean countCacheEnabled;
+
+    /**
+     * Whether to load batches of entities by IDs concurrently, each batch in a separate read-only transaction.
+     * Used when the number of requested IDs exceeds {@link io.jmix.data.persistence.DbmsFeatures#getMaxIdsBatchSize()}
+     * and the load context does not join the current transaction.
+     */
+    boolean parallelIdBatchLoading;
+
+    /**
+     * Maximum number of ID batches of one data store loaded at the same time when
+     * {@link #parallelIdBatchLoading} is enabled. Each batch takes a database connection, so the value
+     * should be less than the size of the connection pool.
+     */
+    int idBatchLoadingMaxConnections;
+
+    /**
+     * Number of threads loading ID batches if the JVM does not support virtual threads.
+     */
+    int idBatchLoadingThreads;
+
+    /**
+     * Whether to pad lists of IDs loaded by one query to one of a few fixed sizes by repeating the last ID,
+     * so that EclipseLink and the database can reuse prepared statements. Disabled by default, because it changes
+     * the SQL and the number of bind parameters of every load by IDs.
+     */
+    boolean idListPadding;
+
+    /**
+     * Whether to choose between JOIN and BATCH fetching of {@link io.jmix.core.FetchMode#AUTO} collection attributes
+     * and between IN and EXISTS batch types using statistics of loaded data.
+     *
+     * @see io.jmix.eclipselink.impl.FetchModeStatistics
+     */
+    boolean adaptiveFetchMode;
+
+    /**
+     * Number of observed loads of an entity or an attribute before the adaptive fetch mode changes its fetching.
+     */
+    int adaptiveFetchModeWarmup;
+
+    /**
+     * Fetch modes used instead of {@link io.jmix.core.FetchMode#AUTO} for particular attributes regardless of
+     * the collected statistics. Keys are in the {@code entityName.attributeName} form, for example
+     * {@code jmix.eclipselink.pinned-fetch-modes[sales_Order.orderLines]=BATCH}.
+     */
+    Map<String, FetchMode> pinnedFetchModes;
+
+    /**
+     * Execution time in milliseconds after which a query is recorded to the slow query journal. Zero records
+     * every query, a negative value disables the journal.
+     *
+     * @see io.jmix.eclipselink.impl.SlowQueryJournal
+     */
+    long slowQueryThresholdMs;
+
+    /**
+     * Maximum number of slow queries kept in the journal. The oldest records are discarded.
+     */
+    int slowQueryJournalSize;
+
+    /**
+     * Share of slow queries recorded to the journal, from 0 to 1.
+     */
+    double slowQuerySamplingRate;
+
+    /**
+     * Regular expressions of names of query parameters which values are masked in the slow query journal.
+     */
+    List<String> slowQueryMaskedParameters;
+
+    /**
+     * Whether to count lazy loads of references by owner entity and attribute and report attributes loaded lazily
+     * for many instances within one scope: an explicitly opened scope, a transaction or a series of lazy loads in a thread.
+     *
+     * @see io.jmix.eclipselink.impl.lazyloading.LazyLoadingDetector
+     */
+    boolean lazyLoadingDetection;
+
+    /**
+     * Number of lazy loads of the same attribute within one scope which is reported.
+     */
+    int lazyLoadingDetectionThreshold;
+
+    /**
+     * Time in milliseconds after the last lazy load in a thread when the next lazy load starts a new scope. Used if
+     * there is no explicitly opened scope or transaction.
+     */
+    long lazyLoadingDetectionWindowMs;
+
+    /**
+     * Whether to throw an exception instead of logging a warning when the lazy loading threshold is exceeded.
+     * Intended for tests.
+     */
+    boolean lazyLoadingDetectionThrowException;
+
+    /**
+     * Whether the first lazy loading of a reference or collection loads it also for all other instances of the
+     * same load result which have not loaded it yet. The instances are loaded by IDs in batches limited by
+     * {@link io.jmix.data.persistence.DbmsFeatures#getMaxIdsBatchSize()}.
+     */
+    boolean lazyLoadingBatch;
+
+    /**
+     * Whether the query cache is invalidated by incrementing generation counters of the changed entities instead of
+     * evicting the affected results. Cached results record generations of their related entities and are ignored if
+     * any of them has advanced. Stale results are removed when found or by the eviction policy of the cache. The
+     * counters are local to the application instance, so the query cache should not be shared between instances.
+     */
+    boolean queryCacheGenerationInvalidation;
+
+    /**
+     * Whether changes of entities committed by the application invalidate only those cached results of simple
+     * single-entity queries which the changed instances could enter or leave. The conditions of the query are evaluated
+     * against the old and new attribute values of the instances; results of other queries and changes received from
+     * other cluster nodes are invalidated by entity type. Not used if {@link #queryCacheGenerationInvalidation} is set.
+     */
+    boolean queryCachePreciseInvalidation;
+
+    /**
+     * Whether entities are loaded by a list of IDs passed in a single array parameter if the DBMS supports it, e.g.
+     * {@code e.id = any(?)} on PostgreSQL, instead of the {@code in} operator. The query text then does not depend on the
+     * number of IDs, but the database can choose a different plan for the array condition.
+     *
+     * @see io.jmix.data.persistence.DbmsFeatures#supportsArrayParameters()
+     */
+    boolean arrayIdParameters;
+
+    public EclipselinkProperties(@DefaultValue("true") boolean queryCacheEnabled,
+                                 @DefaultValue("1000") int transformedQueryCacheSize,
+                                 @DefaultValue("500") int streamingFetchSize,
+                                 @DefaultValue("false") boolean countCacheEnabled,
+                                 @DefaultValue("false") boolean parallelIdBatchLoading,
+                                 @DefaultValue("4") int idBatchLoadingMaxConnections,
+                                 @DefaultValue("8") int idBatchLoadingThreads,
+                                 @DefaultValue("false") boolean idListPadding,
+                                 @DefaultValue("false") boolean adaptiveFetchMode,
+                                 @DefaultValue("50") int adaptiveFetchModeWarmup,
+                                 @Nullable Map<String, FetchMode> pinnedFetchModes,
+                                 @DefaultValue("-1") long slowQueryThresholdMs,
+                                 @DefaultValue("100") int slowQueryJournalSize,
+                                 @DefaultValue("1.0") double slowQuerySamplingRate,
+                                 @DefaultValue("(?i).*(password|secret|token).*") List<String> slowQueryMaskedParameters,
+                                 @DefaultValue("false") boolean lazyLoadingDetection,
+                                 @DefaultValue("10") int lazyLoadingDetectionThreshold,
+                                 @DefaultValue("1000") long lazyLoadingDetectionWindowMs,
+                                 @DefaultValue("false") boolean lazyLoadingDetectionThrowException,
+                                 @DefaultValue("false") boolean lazyLoadingBatch,
+                                 @DefaultValue("false") boolean queryCacheGenerationInvalidation,
+                                 @DefaultValue("false") boolean queryCachePreciseInvalidation,
+                                 @DefaultValue("false") boolean arrayIdParameters) {
         this.queryCacheEnabled = queryCacheEnabled;
+        this.transformedQueryCacheSize = transformedQueryCacheSize;
+        this.streamingFetchSize = streamingFetchSize;
+        this.countCacheEnabled = countCacheEnabled;
+        this.parallelIdBatchLoading = parallelIdBatchLoading;
+        this.idBatchLoadingMaxConnections = idBatchLoadingMaxConnections;
+        this.idBatchLoadingThreads = idBatchLoadingThreads;
+        this.idListPadding = idListPadding;
+        this.adaptiveFetchMode = adaptiveFetchMode;
+        this.adaptiveFetchModeWarmup = adaptiveFetchModeWarmup;
+        this.pinnedFetchModes = pinnedFetchModes == null ? Collections.emptyMap() : pinnedFetchModes;
+        this.slowQueryThresholdMs = slowQueryThresholdMs;
+        this.slowQueryJournalSize = slowQueryJournalSize;
+        this.slowQuerySamplingRate = slowQuerySamplingRate;
+        this.slowQueryMaskedParameters = slowQueryMaskedParameters;
+        this.lazyLoadingDetection = lazyLoadingDetection;
+        this.lazyLoadingDetectionThreshold = lazyLoadingDetectionThreshold;
+        this.lazyLoadingDetectionWindowMs = lazyLoadingDetectionWindowMs;
+        this.lazyLoadingDetectionThrowException = lazyLoadingDetectionThrowException;
+        this.lazyLoadingBatch = lazyLoadingBatch;
+        this.queryCacheGenerationInvalidation = queryCacheGenerationInvalidation;
+        this.queryCachePreciseInvalidation = queryCachePreciseInvalidation;
+        this.arrayIdParameters = arrayIdParameters;
     }
 
     public boolean isQueryCacheEnabled() {
         return queryCacheEnabled;
     }
+
+    /**
+     * @see #transformedQueryCacheSize
+     */
+    public int getTransformedQueryCacheSize() {
+        return transformedQueryCacheSize;
+    }
+
+    /**
+     * @see #streamingFetchSize
+     */
+    public int getStreamingFetchSize() {
+        return streamingFetchSize;
+    }
+
+    /**
+     * @see #countCacheEnabled
+     */
+    public boolean isCountCacheEnabled() {
+        return countCacheEnabled;
+    }
+
+    /**
+     * @see #parallelIdBatchLoading
+     */
+    public boolean isParallelIdBatchLoading() {
+        return parallelIdBatchLoading;
+    }
+
+    /**
+     * @see #idBatchLoadingMaxConnections
+     */
+    public int getIdBatchLoadingMaxConnections() {
+        return idBatchLoadingMaxConnections;
+    }
+
+    /**
+     * @see #idBatchLoadingThreads
+     */
+    public int getIdBatchLoadingThreads() {
+        return idBatchLoadingThreads;
+    }
+
+    /**
+     * @see #idListPadding
+     */
+    public boolean isIdListPadding() {
+        return idListPadding;
+    }
+
+    /**
+     * @see #adaptiveFetchMode
+     */
+    public boolean isAdaptiveFetchMode() {
+        return adaptiveFetchMode;
+    }
+
+    /**
+     * @see #adaptiveFetchModeWarmup
+     */
+    public int getAdaptiveFetchModeWarmup() {
+        return adaptiveFetchModeWarmup;
+    }
+
+    /**
+     * @see #pinnedFetchModes
+     */
+    public Map<String, FetchMode> getPinnedFetchModes() {
+        return pinnedFetchModes;
+    }
+
+    /**
+     * @see #slowQueryThresholdMs
+     */
+    public long getSlowQueryThresholdMs() {
+        return slowQueryThresholdMs;
+    }
+
+    /**
+     * @see #slowQueryJournalSize
+     */
+    public int getSlowQueryJournalSize() {
+        return slowQueryJournalSize;
+    }
+
+    /**
+     * @see #slowQuerySamplingRate
+     */
+    public double getSlowQuerySamplingRate() {
+        return slowQuerySamplingRate;
+    }
+
+    /**
+     * @see #slowQueryMaskedParameters
+     */
+    public List<String> getSlowQueryMaskedParameters() {
+        return slowQueryMaskedParameters;
+    }
+
+    /**
+     * @see #lazyLoadingDetection
+     */
+    public boolean isLazyLoadingDetection() {
+        return lazyLoadingDetection;
+    }
+
+    /**
+     * @see #lazyLoadingDetectionThreshold
+     */
+    public int getLazyLoadingDetectionThreshold() {
+        return lazyLoadingDetectionThreshold;
+    }
+
+    /**
+     * @see #lazyLoadingDetectionWindowMs
+     */
+    public long getLazyLoadingDetectionWindowMs() {
+        return lazyLoadingDetectionWindowMs;
+    }
+
+    /**
+     * @see #lazyLoadingDetectionThrowException
+     */
+    public boolean isLazyLoadingDetectionThrowException() {
+        return lazyLoadingDetectionThrowException;
+    }
+
+    /**
+     * @see #lazyLoadingBatch
+     */
+    public boolean isLazyLoadingBatch() {
+        return lazyLoadingBatch;
+    }
+
+    /**
+     * @see #queryCacheGenerationInvalidation
+     */
+    public boolean isQueryCacheGenerationInvalidation() {
+        return queryCacheGenerationInvalidation;
+    }
+
+    /**
+     * @see #queryCachePreciseInvalidation
+     */
+    public boolean isQueryCachePreciseInvalidation() {
+        return queryCachePreciseInvalidation;
+    }
+
+    /**
+     * @see #arrayIdParameters
+     */
+    public boolean isArrayIdParameters() {
+        return arrayIdParameters;
+    }
 }
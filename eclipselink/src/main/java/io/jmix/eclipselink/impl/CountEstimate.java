@@ -0,0 +1,47 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jmix.eclipselink.impl;
+
+/**
+ * Number of entities returned by {@link JpaDataStore#getCountEstimate(io.jmix.core.LoadContext)}.
+ */
+public class CountEstimate {
+
+    protected final long count;
+    protected final boolean estimated;
+
+    public CountEstimate(long count, boolean estimated) {
+        this.count = count;
+        this.estimated = estimated;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return true if the count is estimated using the DBMS statistics, false if it is exact
+     */
+    public boolean isEstimated() {
+        return estimated;
+    }
+
+    @Override
+    public String toString() {
+        return (estimated ? "~" : "") + count;
+    }
+}
@@ -528,9 +528,16 @@ public class EclipselinkPersistenceSupport implements ApplicationContextAware {
                         transactionListener.beforeCommit(storeName, allInstances);
                     }
                 }
-                queryCacheManager.invalidate(typeNames);
+                List<EntityChangedEventInfo> eventsInfo;
+                if (queryCacheManager.isPreciseInvalidation()) {
+                    eventsInfo = entityChangedEventManager.collect(container.getAllInstances());
+                    queryCacheManager.invalidate(getUntrackedTypes(instances, eventsInfo), eventsInfo);
+                } else {
+                    eventsInfo = entityChangedEventManager.collect(container.getAllInstances());
 
-                List<EntityChangedEventInfo> eventsInfo = entityChangedEventManager.collect(container.getAllInstances());
+                    queryCacheManager.invalidate(typeNames);
+                    queryCacheManager.invalidateCounts(getCountInvalidationTypes(instances, eventsInfo));
+                }
 
                 detachAll();
 
@@ -546,6 +553,50 @@ public class EclipselinkPersistenceSupport implements ApplicationContextAware {
             }
         }
 
+        /**
+         * Returns names of entities which instances are changed in a read-write transaction, including changes
+         * flushed before, and of entities which changes are not tracked. Instances which are only loaded
+         * do not affect the counts.
+         */
+        protected Set<String> getCountInvalidationTypes(Collection<Object> instances,
+                                                        List<EntityChangedEventInfo> eventsInfo) {
+            if (!queryCacheManager.isCountCacheEnabled()) {
+                return Collections.emptySet();
+            }
+            Set<String> typeNames = getUntrackedTypes(instances, eventsInfo);
+            for (EntityChangedEventInfo info : eventsInfo) {
+                typeNames.add(metadata.getClass(info.getEntity()).getName());
+            }
+            return typeNames;
+        }
+
+        /**
+         * Returns names of entities registered in a read-write transaction which changes are not collected
+         * for {@link EntityChangedEvent}s and cannot be used for precise invalidation of the query cache.
+         */
+        protected Set<String> getUntrackedTypes(Collection<Object> instances, List<EntityChangedEventInfo> eventsInfo) {
+            Set<Object> trackedInstances = createEntitySet();
+            for (EntityChangedEventInfo info : eventsInfo) {
+                trackedInstances.add(info.getEntity());
+            }
+            Set<String> typeNames = new HashSet<>();
+            for (Object instance : instances) {
+                if (instance instanceof Entity && !trackedInstances.contains(instance)) {
+                    AttributeChangeListener changeListener =
+                            (AttributeChangeListener) ((ChangeTracker) instance)._persistence_getPropertyChangeListener();
+                    if (getEntityEntry(instance).isNew() || changeListener == null) {
+                        typeNames.add(metadata.getClass(instance).getName());
+                    }
+                }
+            }
+            for (Object instance : container.getNewDetachedInstances()) {
+                if (!trackedInstances.contains(instance)) {
+                    typeNames.add(metadata.getClass(instance).getName());
+                }
+            }
+            return typeNames;
+        }
+
         @Override
         public void afterCompletion(int status) {
             try {
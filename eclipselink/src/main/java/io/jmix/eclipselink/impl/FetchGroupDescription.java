@@ -17,6 +17,9 @@
 package io.jmix.eclipselink.impl;
 
 import org.eclipse.persistence.config.QueryHints;
+import org.eclipse.persistence.queries.AttributeGroup;
+import org.eclipse.persistence.queries.FetchGroup;
+import org.eclipse.persistence.queries.LoadGroup;
 
 import java.util.*;
 import java.util.function.Predicate;
@@ -25,6 +28,7 @@ public class FetchGroupDescription {
     protected Set<String> fetchGroupAttributes = new TreeSet<>();
     protected Map<String, String> fetchHints = new TreeMap<>(); //sort hints by attribute path
     protected boolean batches;
+    protected volatile AttributeGroup attributeGroup;
 
     public Set<String> getAttributes() {
         return Collections.unmodifiableSet(fetchGroupAttributes);
@@ -56,4 +60,20 @@ public class FetchGroupDescription {
     public boolean hasBatches() {
         return batches;
     }
+
+    /**
+     * Returns an EclipseLink fetch or load group with the attributes of this description. The group is created on the
+     * first call and then shared by all queries using the description, so it must not be modified.
+     */
+    public AttributeGroup getAttributeGroup(boolean useFetchGroup) {
+        AttributeGroup group = attributeGroup;
+        if (group == null) {
+            group = useFetchGroup ? new FetchGroup() : new LoadGroup();
+            for (String attribute : fetchGroupAttributes) {
+                group.addAttribute(attribute);
+            }
+            attributeGroup = group;
+        }
+        return group;
+    }
 }
@@ -16,6 +16,8 @@
 
 package io.jmix.eclipselink.impl;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import io.jmix.core.*;
 import io.jmix.core.common.util.Preconditions;
 import io.jmix.core.metamodel.model.MetaClass;
@@ -46,6 +48,8 @@ public class FetchGroupManager {
 
     private final Logger log = LoggerFactory.getLogger(FetchGroupManager.class);
 
+    private static final int FETCH_GROUP_CACHE_SIZE = 1000;
+
     @Autowired
     private Metadata metadata;
 
@@ -64,43 +68,69 @@ public class FetchGroupManager {
     @Autowired
     private FetchPlans fetchPlans;
 
+    @Autowired
+    private FetchModeStatistics fetchModeStatistics;
+
+    private final Cache<FetchGroupKey, FetchGroupDescription> fetchGroupCache = CacheBuilder.newBuilder()
+            .maximumSize(FETCH_GROUP_CACHE_SIZE)
+            .build();
+
     public void setFetchPlan(JpaQuery query, String queryString, @Nullable FetchPlan fetchPlan, boolean singleResultExpected) {
+        setFetchPlan(query, queryString, fetchPlan, singleResultExpected, true);
+    }
+
+    /**
+     * Sets the fetch plan to the query.
+     *
+     * @param paged whether the query has first or max results, in this case collections are not joined by
+     *              adaptive fetch modes and batches use the IN type
+     */
+    public void setFetchPlan(JpaQuery query, String queryString, @Nullable FetchPlan fetchPlan,
+                             boolean singleResultExpected, boolean paged) {
         Preconditions.checkNotNullArgument(query, "query is null");
         if (fetchPlan != null) {
-            AttributeGroup ag = fetchPlan.loadPartialEntities() ? new FetchGroup() : new LoadGroup();
-            applyFetchPlan(query, queryString, ag, fetchPlan, singleResultExpected);
+            boolean useFetchGroup = fetchPlan.loadPartialEntities();
+            FetchGroupDescription description = calculateFetchGroup(queryString, fetchPlan, singleResultExpected, useFetchGroup, paged);
+            // the group is not modified after creation, so it is shared by all queries with the same description
+            applyFetchPlan(query, description, description.getAttributeGroup(useFetchGroup), fetchPlan, useFetchGroup, paged);
         } else {
             query.setHint(QueryHints.FETCH_GROUP, null);
         }
     }
 
     public void addFetchPlan(JpaQuery query, String queryString, FetchPlan fetchPlan, boolean singleResultExpected) {
+        addFetchPlan(query, queryString, fetchPlan, singleResultExpected, true);
+    }
+
+    /**
+     * Adds the fetch plan to the query.
+     *
+     * @param paged whether the query has first or max results
+     * @see #setFetchPlan(JpaQuery, String, FetchPlan, boolean, boolean)
+     */
+    public void addFetchPlan(JpaQuery query, String queryString, FetchPlan fetchPlan, boolean singleResultExpected,
+                             boolean paged) {
         Preconditions.checkNotNullArgument(query, "query is null");
         Preconditions.checkNotNullArgument(fetchPlan, "fetch plan is null");
 
         Map<String, Object> hints = query.getHints();
         AttributeGroup ag = null;
-        if (fetchPlan.loadPartialEntities()) {
-            if (hints != null)
-                ag = (FetchGroup) hints.get(QueryHints.FETCH_GROUP);
-            if (ag == null)
-                ag = new FetchGroup();
-        } else {
-            if (hints != null)
-                ag = (LoadGroup) hints.get(QueryHints.LOAD_GROUP);
-            if (ag == null)
-                ag = new LoadGroup();
+        boolean useFetchGroup = fetchPlan.loadPartialEntities();
+        if (hints != null) {
+            ag = (AttributeGroup) hints.get(useFetchGroup ? QueryHints.FETCH_GROUP : QueryHints.LOAD_GROUP);
         }
+        // the group set by a previous fetch plan can be shared with other queries, so it is copied before modification
+        ag = ag != null ? ag.clone() : (useFetchGroup ? new FetchGroup() : new LoadGroup());
 
-        applyFetchPlan(query, queryString, ag, fetchPlan, singleResultExpected);
+        FetchGroupDescription description = calculateFetchGroup(queryString, fetchPlan, singleResultExpected, useFetchGroup, paged);
+        for (String attribute : description.getAttributes()) {
+            ag.addAttribute(attribute);
+        }
+        applyFetchPlan(query, description, ag, fetchPlan, useFetchGroup, paged);
     }
 
-    private void applyFetchPlan(JpaQuery query, String queryString, AttributeGroup attrGroup, FetchPlan fetchPlan,
-                                boolean singleResultExpected) {
-
-        boolean useFetchGroup = attrGroup instanceof FetchGroup;
-
-        FetchGroupDescription description = calculateFetchGroup(queryString, fetchPlan, singleResultExpected, useFetchGroup);
+    private void applyFetchPlan(JpaQuery query, FetchGroupDescription description, AttributeGroup attrGroup,
+                                FetchPlan fetchPlan, boolean useFetchGroup, boolean paged) {
 
 //        ToDo: magical flag?
 //        if (attrGroup instanceof FetchGroup)
@@ -108,9 +138,6 @@ public class FetchGroupManager {
 
         if (log.isTraceEnabled())
             log.trace((useFetchGroup ? "Fetch" : "Load") + " group for " + fetchPlan + ":\n" + description.getAttributes().stream().collect(Collectors.joining("\n")));
-        for (String attribute : description.getAttributes()) {
-            attrGroup.addAttribute(attribute);
-        }
 
         MetaClass metaClass = metadata.getClass(fetchPlan.getEntityClass());
         if (!metadataTools.isCacheable(metaClass)) {
@@ -129,20 +156,78 @@ public class FetchGroupManager {
         }
 
         if (description.hasBatches()) {
-            query.setHint(QueryHints.BATCH_TYPE, "IN");
+            query.setHint(QueryHints.BATCH_TYPE, fetchModeStatistics.getBatchType(metaClass, paged));
         }
     }
 
+    /**
+     * Returns the description of the fetch group for the query and fetch plan. The description depends only on
+     * the structure of the fetch plan and on the query string, so it is calculated once and cached.
+     * The returned description must not be modified.
+     */
     public FetchGroupDescription calculateFetchGroup(String queryString,
                                                      FetchPlan fetchPlan,
                                                      boolean singleResultExpected,
                                                      boolean useFetchGroup) {
+        return calculateFetchGroup(queryString, fetchPlan, singleResultExpected, useFetchGroup, true);
+    }
+
+    /**
+     * Returns the description of the fetch group for the query and fetch plan, taking into account fetch modes
+     * chosen by {@link FetchModeStatistics}. Descriptions are recalculated when the fetch modes chosen for attributes
+     * of the fetch plan entity change.
+     * The returned description must not be modified.
+     *
+     * @param paged whether the query has first or max results
+     */
+    public FetchGroupDescription calculateFetchGroup(String queryString,
+                                                     FetchPlan fetchPlan,
+                                                     boolean singleResultExpected,
+                                                     boolean useFetchGroup,
+                                                     boolean paged) {
+        // chosen fetch modes are applied only to attributes of the root entity
+        long decisionsVersion = singleResultExpected
+                ? 0
+                : fetchModeStatistics.getDecisionsVersion(metadata.getClass(fetchPlan.getEntityClass()));
+        FetchGroupKey key = new FetchGroupKey(createFetchPlanKey(fetchPlan), queryString, singleResultExpected,
+                useFetchGroup, paged, decisionsVersion);
+        FetchGroupDescription description = fetchGroupCache.getIfPresent(key);
+        if (description == null) {
+            description = doCalculateFetchGroup(queryString, fetchPlan, singleResultExpected, useFetchGroup, paged);
+            fetchGroupCache.put(key, description);
+        }
+        return description;
+    }
+
+    /**
+     * Creates a key equal for fetch plans of the same structure: entity class, partial loading flag and properties
+     * with their fetch modes and nested plans.
+     */
+    private List<Object> createFetchPlanKey(FetchPlan fetchPlan) {
+        List<Object> key = new ArrayList<>(fetchPlan.getProperties().size() * 3 + 2);
+        key.add(fetchPlan.getEntityClass());
+        key.add(fetchPlan.loadPartialEntities());
+        for (FetchPlanProperty property : fetchPlan.getProperties()) {
+            key.add(property.getName());
+            key.add(property.getFetchMode());
+            key.add(property.getFetchPlan() != null ? createFetchPlanKey(property.getFetchPlan()) : null);
+        }
+        return key;
+    }
+
+    private FetchGroupDescription doCalculateFetchGroup(String queryString,
+                                                        FetchPlan fetchPlan,
+                                                        boolean singleResultExpected,
+                                                        boolean useFetchGroup,
+                                                        boolean paged) {
         Set<FetchGroupField> fetchGroupFields = new LinkedHashSet<>();
 
         fetchPlan = completeFetchPlan(fetchPlan);
 
         processFetchPlan(fetchPlan, null, fetchGroupFields, useFetchGroup);
 
+        applyAdaptiveFetchModes(fetchGroupFields, singleResultExpected, paged);
+
         FetchGroupDescription description = new FetchGroupDescription();
 
         for (FetchGroupField field : fetchGroupFields) {
@@ -333,6 +418,32 @@ public class FetchGroupManager {
         return description;
     }
 
+    /**
+     * Replaces AUTO fetch modes of root entity attributes by the modes pinned in configuration or chosen by
+     * {@link FetchModeStatistics}. Chosen modes are applied only to queries returning lists, and collections are not
+     * joined in paged queries, because the page would be applied to joined rows.
+     */
+    private void applyAdaptiveFetchModes(Set<FetchGroupField> fetchGroupFields, boolean singleResultExpected, boolean paged) {
+        for (FetchGroupField field : fetchGroupFields) {
+            if (field.fetchMode != FetchMode.AUTO
+                    || field.lazyLoad
+                    || field.metaPropertyPath.getMetaProperties().length != 1
+                    || !field.metaProperty.getRange().isClass()) {
+                continue;
+            }
+            String property = field.metaProperty.getName();
+            FetchMode fetchMode = singleResultExpected
+                    ? fetchModeStatistics.getPinnedFetchMode(field.metaClass, property)
+                    : fetchModeStatistics.getFetchMode(field.metaClass, property);
+            if (fetchMode == null
+                    || fetchMode == FetchMode.AUTO
+                    || fetchMode == FetchMode.JOIN && paged && field.metaProperty.getRange().getCardinality().isMany()) {
+                continue;
+            }
+            field.fetchMode = fetchMode;
+        }
+    }
+
     private boolean isTransitiveSelfReference(FetchGroupField root, FetchGroupField current,
                                               Range.Cardinality cardinality, MetaClass metaClass) {
         return root != current
@@ -624,6 +735,43 @@ public class FetchGroupManager {
         }
     }
 
+    private static class FetchGroupKey {
+        private final List<Object> fetchPlanKey;
+        private final String queryString;
+        private final boolean singleResultExpected;
+        private final boolean useFetchGroup;
+        private final boolean paged;
+        private final long decisionsVersion;
+
+        public FetchGroupKey(List<Object> fetchPlanKey, String queryString, boolean singleResultExpected,
+                             boolean useFetchGroup, boolean paged, long decisionsVersion) {
+            this.fetchPlanKey = fetchPlanKey;
+            this.queryString = queryString;
+            this.singleResultExpected = singleResultExpected;
+            this.useFetchGroup = useFetchGroup;
+            this.paged = paged;
+            this.decisionsVersion = decisionsVersion;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            FetchGroupKey that = (FetchGroupKey) o;
+            return singleResultExpected == that.singleResultExpected
+                    && useFetchGroup == that.useFetchGroup
+                    && paged == that.paged
+                    && decisionsVersion == that.decisionsVersion
+                    && queryString.equals(that.queryString)
+                    && fetchPlanKey.equals(that.fetchPlanKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(fetchPlanKey, queryString, singleResultExpected, useFetchGroup, paged, decisionsVersion);
+        }
+    }
+
     private static class OccurrenceDescription {
         private final FetchPlan fetchPlan;
         private final String path;
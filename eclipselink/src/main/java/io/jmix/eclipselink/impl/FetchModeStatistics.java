@@ -0,0 +1,385 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jmix.eclipselink.impl;
+
+import io.jmix.core.*;
+import io.jmix.core.entity.EntityValues;
+import io.jmix.core.metamodel.model.MetaClass;
+import io.jmix.core.metamodel.model.MetaProperty;
+import io.jmix.eclipselink.EclipselinkProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * INTERNAL.
+ * Collects statistics of loaded data and chooses fetch modes for {@link FetchMode#AUTO} attributes of root entities,
+ * see {@link EclipselinkProperties#isAdaptiveFetchMode()}.
+ * <ul>
+ *     <li>A to-many attribute is fetched by JOIN if its collections contain on average no more than
+ *     {@link #JOIN_MAX_FAN_OUT} elements, so joining does not multiply the result rows noticeably and saves
+ *     a separate batch query.</li>
+ *     <li>A to-one attribute is fetched by BATCH if many loaded entities refer to the same instances, so the referenced
+ *     rows are not repeated in the joined result.</li>
+ *     <li>Batch queries use the EXISTS type instead of IN if queries of the entity return on average more than
+ *     {@link #EXISTS_MIN_ROWS} rows, so the batch query does not enumerate a long list of identifiers.</li>
+ * </ul>
+ * Decisions are made after {@link EclipselinkProperties#getAdaptiveFetchModeWarmup()} observed loads and are revised
+ * with the collected statistics. After the warm-up, attributes are examined only in every
+ * {@link #SAMPLING_INTERVAL}-th load of the entity. Fetch modes from {@link EclipselinkProperties#getPinnedFetchModes()} take
+ * precedence over the decisions.
+ */
+@ManagedResource(description = "Collects statistics for adaptive fetch modes", objectName = "jmix.eclipselink:type=FetchModeStatistics")
+@Component("eclipselink_FetchModeStatistics")
+public class FetchModeStatistics {
+
+    private static final Logger log = LoggerFactory.getLogger(FetchModeStatistics.class);
+
+    protected static final double JOIN_MAX_FAN_OUT = 1.5;
+    protected static final double JOIN_CANCEL_FAN_OUT = 3.0;
+    protected static final double BATCH_MAX_DISTINCT_RATIO = 0.1;
+    protected static final double BATCH_CANCEL_DISTINCT_RATIO = 0.2;
+    protected static final double EXISTS_MIN_ROWS = 1000;
+    protected static final double EXISTS_CANCEL_ROWS = 500;
+    protected static final int SAMPLING_INTERVAL = 16;
+
+    @Autowired
+    protected EclipselinkProperties properties;
+
+    @Autowired
+    protected Metadata metadata;
+
+    @Autowired
+    protected MetadataTools metadataTools;
+
+    @Autowired
+    protected EntityStates entityStates;
+
+    protected final ConcurrentMap<String, PropertyStatistics> propertyStatistics = new ConcurrentHashMap<>();
+
+    protected final ConcurrentMap<String, EntityStatistics> entityStatistics = new ConcurrentHashMap<>();
+
+    protected final ConcurrentMap<String, FetchMode> fetchModes = new ConcurrentHashMap<>();
+
+    protected final Set<String> existsBatchEntities = ConcurrentHashMap.newKeySet();
+
+    protected final ConcurrentMap<String, AtomicLong> decisionsVersions = new ConcurrentHashMap<>();
+
+    /**
+     * Returns true if the statistics are collected and used.
+     */
+    public boolean isEnabled() {
+        return properties.isAdaptiveFetchMode();
+    }
+
+    /**
+     * Returns the fetch mode to use instead of {@link FetchMode#AUTO} for the attribute of the entity:
+     * the pinned one, the one chosen by the statistics or {@link FetchMode#AUTO} if there is no decision.
+     */
+    public FetchMode getFetchMode(MetaClass metaClass, String property) {
+        FetchMode pinned = getPinnedFetchMode(metaClass, property);
+        if (pinned != null) {
+            return pinned;
+        }
+        if (!isEnabled()) {
+            return FetchMode.AUTO;
+        }
+        return fetchModes.getOrDefault(metaClass.getName() + "." + property, FetchMode.AUTO);
+    }
+
+    /**
+     * Returns the fetch mode pinned for the attribute of the entity in configuration or null if there is no one.
+     */
+    @Nullable
+    public FetchMode getPinnedFetchMode(MetaClass metaClass, String property) {
+        return properties.getPinnedFetchModes().get(metaClass.getName() + "." + property);
+    }
+
+    /**
+     * Returns the {@link org.eclipse.persistence.config.QueryHints#BATCH_TYPE} for queries of the entity.
+     * EXISTS is never returned for paged queries, because EclipseLink supports only IN batches for them.
+     */
+    public String getBatchType(MetaClass metaClass, boolean paged) {
+        if (isEnabled() && !paged && existsBatchEntities.contains(metaClass.getName())) {
+            return "EXISTS";
+        }
+        return "IN";
+    }
+
+    /**
+     * Returns the number incremented on each change of fetch modes chosen for attributes of the entity. Cached
+     * fetch groups of the entity become obsolete when it changes.
+     */
+    public long getDecisionsVersion(MetaClass metaClass) {
+        AtomicLong version = decisionsVersions.get(metaClass.getName());
+        return version == null ? 0 : version.get();
+    }
+
+    /**
+     * Records the result of loading entities by the fetch plan.
+     *
+     * @param fetchPlan    fetch plan of the query
+     * @param entities     loaded entities with fetched attributes
+     * @param elapsedNanos time of query execution and fetching
+     */
+    public void recordLoad(FetchPlan fetchPlan, List<?> entities, long elapsedNanos) {
+        if (!isEnabled()) {
+            return;
+        }
+        MetaClass metaClass = metadata.getClass(fetchPlan.getEntityClass());
+        int warmup = properties.getAdaptiveFetchModeWarmup();
+
+        EntityStatistics entityStats = entityStatistics.computeIfAbsent(metaClass.getName(), name -> new EntityStatistics());
+        long load = entityStats.record(entities.size(), elapsedNanos);
+        updateBatchType(metaClass.getName(), entityStats, warmup);
+
+        // walking the loaded graph is expensive, so after the warm-up only a sample of loads is examined
+        if (entities.isEmpty() || load > warmup && load % SAMPLING_INTERVAL != 0) {
+            return;
+        }
+        for (FetchPlanProperty property : fetchPlan.getProperties()) {
+            if (property.getFetchMode() != FetchMode.AUTO) {
+                continue;
+            }
+            MetaProperty metaProperty = metaClass.findProperty(property.getName());
+            if (metaProperty == null
+                    || !metaProperty.getRange().isClass()
+                    || !metadataTools.isJpa(metaProperty)
+                    || metadataTools.isEmbedded(metaProperty)) {
+                continue;
+            }
+            if (metaProperty.getRange().getCardinality().isMany()) {
+                recordCollections(metaClass.getName(), property.getName(), entities, elapsedNanos, warmup);
+            } else {
+                recordReferences(metaClass.getName(), property.getName(), entities, elapsedNanos, warmup);
+            }
+        }
+    }
+
+    protected void recordCollections(String entityName, String property, List<?> entities, long elapsedNanos,
+                                     int warmup) {
+        long parents = 0;
+        long elements = 0;
+        for (Object entity : entities) {
+            if (entity instanceof Entity && entityStates.isLoaded(entity, property)) {
+                Object value = EntityValues.getValue(entity, property);
+                parents++;
+                if (value instanceof Collection) {
+                    elements += ((Collection<?>) value).size();
+                }
+            }
+        }
+        if (parents == 0) {
+            return;
+        }
+        String key = entityName + "." + property;
+        PropertyStatistics stats = propertyStatistics.computeIfAbsent(key, k -> new PropertyStatistics(true));
+        stats.record(parents, elements, elapsedNanos);
+
+        if (stats.getLoads() >= warmup) {
+            double fanOut = stats.getAverageRatio();
+            FetchMode current = fetchModes.get(key);
+            if (current != FetchMode.JOIN && fanOut <= JOIN_MAX_FAN_OUT) {
+                setFetchMode(entityName, key, FetchMode.JOIN, fanOut);
+            } else if (current == FetchMode.JOIN && fanOut > JOIN_CANCEL_FAN_OUT) {
+                setFetchMode(entityName, key, null, fanOut);
+            }
+        }
+    }
+
+    protected void recordReferences(String entityName, String property, List<?> entities, long elapsedNanos,
+                                    int warmup) {
+        long parents = 0;
+        Set<Object> distinct = new HashSet<>();
+        for (Object entity : entities) {
+            if (entity instanceof Entity && entityStates.isLoaded(entity, property)) {
+                Object value = EntityValues.getValue(entity, property);
+                if (value instanceof Entity) {
+                    parents++;
+                    distinct.add(EntityValues.getId(value));
+                }
+            }
+        }
+        if (parents == 0) {
+            return;
+        }
+        String key = entityName + "." + property;
+        PropertyStatistics stats = propertyStatistics.computeIfAbsent(key, k -> new PropertyStatistics(false));
+        stats.record(parents, distinct.size(), elapsedNanos);
+
+        if (stats.getLoads() >= warmup) {
+            double distinctRatio = stats.getAverageRatio();
+            FetchMode current = fetchModes.get(key);
+            if (current != FetchMode.BATCH && distinctRatio <= BATCH_MAX_DISTINCT_RATIO) {
+                setFetchMode(entityName, key, FetchMode.BATCH, distinctRatio);
+            } else if (current == FetchMode.BATCH && distinctRatio > BATCH_CANCEL_DISTINCT_RATIO) {
+                setFetchMode(entityName, key, null, distinctRatio);
+            }
+        }
+    }
+
+    protected void updateBatchType(String entityName, EntityStatistics stats, int warmup) {
+        if (stats.getLoads() < warmup) {
+            return;
+        }
+        double rows = stats.getAverageRows();
+        if (rows > EXISTS_MIN_ROWS) {
+            if (existsBatchEntities.add(entityName)) {
+                log.debug("Using EXISTS batch type for {}: {} rows per query on average", entityName, rows);
+            }
+        } else if (rows < EXISTS_CANCEL_ROWS) {
+            if (existsBatchEntities.remove(entityName)) {
+                log.debug("Using IN batch type for {}: {} rows per query on average", entityName, rows);
+            }
+        }
+    }
+
+    protected void setFetchMode(String entityName, String key, @Nullable FetchMode fetchMode, double ratio) {
+        if (fetchMode == null) {
+            fetchModes.remove(key);
+        } else {
+            fetchModes.put(key, fetchMode);
+        }
+        log.debug("Using {} fetch mode for {}: ratio {}", fetchMode == null ? FetchMode.AUTO : fetchMode, key, ratio);
+        decisionsVersions.computeIfAbsent(entityName, name -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * Returns fetch modes chosen by the statistics, without pinned ones.
+     */
+    public Map<String, FetchMode> getDecisions() {
+        return Collections.unmodifiableMap(new TreeMap<>(fetchModes));
+    }
+
+    @ManagedAttribute(description = "Fetch modes chosen by the statistics and pinned in configuration")
+    public String getFetchModes() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, FetchMode> entry : new TreeMap<>(properties.getPinnedFetchModes()).entrySet()) {
+            sb.append(entry.getKey()).append(": ").append(entry.getValue()).append(" (pinned)\n");
+        }
+        for (Map.Entry<String, FetchMode> entry : getDecisions().entrySet()) {
+            if (!properties.getPinnedFetchModes().containsKey(entry.getKey())) {
+                sb.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+            }
+        }
+        for (String entityName : new TreeSet<>(existsBatchEntities)) {
+            sb.append(entityName).append(": EXISTS batch type\n");
+        }
+        return sb.toString();
+    }
+
+    @ManagedOperation(description = "Print collected statistics")
+    public String printStatistics() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, EntityStatistics> entry : new TreeMap<>(entityStatistics).entrySet()) {
+            sb.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+        }
+        for (Map.Entry<String, PropertyStatistics> entry : new TreeMap<>(propertyStatistics).entrySet()) {
+            sb.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    @ManagedOperation(description = "Clear collected statistics and chosen fetch modes")
+    public void reset() {
+        propertyStatistics.clear();
+        entityStatistics.clear();
+        fetchModes.clear();
+        existsBatchEntities.clear();
+        for (AtomicLong version : decisionsVersions.values()) {
+            version.incrementAndGet();
+        }
+    }
+
+    protected static class EntityStatistics {
+        private long loads;
+        private long rows;
+        private long nanos;
+
+        /**
+         * @return number of recorded loads including this one
+         */
+        public synchronized long record(long rows, long nanos) {
+            this.loads++;
+            this.rows += rows;
+            this.nanos += nanos;
+            return loads;
+        }
+
+        public synchronized long getLoads() {
+            return loads;
+        }
+
+        public synchronized double getAverageRows() {
+            return loads == 0 ? 0 : (double) rows / loads;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format("loads=%d, avgRows=%.1f, avgTime=%dms", loads, getAverageRows(),
+                    loads == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(nanos / loads));
+        }
+    }
+
+    protected static class PropertyStatistics {
+        private final boolean toMany;
+        private long loads;
+        private long parents;
+        private long values;
+        private long nanos;
+
+        public PropertyStatistics(boolean toMany) {
+            this.toMany = toMany;
+        }
+
+        public synchronized void record(long parents, long values, long nanos) {
+            this.loads++;
+            this.parents += parents;
+            this.values += values;
+            this.nanos += nanos;
+        }
+
+        public synchronized long getLoads() {
+            return loads;
+        }
+
+        /**
+         * Returns the average number of collection elements per entity for to-many attributes and the share of
+         * distinct references for to-one attributes.
+         */
+        public synchronized double getAverageRatio() {
+            return parents == 0 ? 0 : (double) values / parents;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format("loads=%d, %s=%.2f, avgTime=%dms", loads, toMany ? "fanOut" : "distinctRatio",
+                    getAverageRatio(), loads == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(nanos / loads));
+        }
+    }
+}
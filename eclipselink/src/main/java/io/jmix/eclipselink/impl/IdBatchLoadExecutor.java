@@ -0,0 +1,203 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jmix.eclipselink.impl;
+
+import io.jmix.core.security.SecurityContextHelper;
+import io.jmix.eclipselink.EclipselinkProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * INTERNAL.
+ * Executes batches of a load operation concurrently, see {@link EclipselinkProperties#isParallelIdBatchLoading()}.
+ * <p>
+ * Virtual threads are used if the JVM supports them, otherwise a fixed number of daemon threads. In both cases
+ * the number of batches of one data store running at the same time is limited by
+ * {@link EclipselinkProperties#getIdBatchLoadingMaxConnections()}, because each batch takes a separate connection.
+ */
+@Component("eclipselink_IdBatchLoadExecutor")
+public class IdBatchLoadExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(IdBatchLoadExecutor.class);
+
+    @Autowired
+    protected EclipselinkProperties properties;
+
+    protected volatile ExecutorService executor;
+
+    protected final Map<String, Semaphore> storePermits = new ConcurrentHashMap<>();
+
+    /**
+     * Executes the tasks concurrently and returns their results in the order of tasks. The current authentication
+     * is passed to the executing threads.
+     * <p>
+     * If a task fails, the remaining tasks are cancelled and the exception is rethrown.
+     *
+     * @param storeName data store the tasks work with
+     * @param tasks     tasks to execute
+     * @return list of task results in the order of tasks
+     */
+    public <T> List<T> executeAll(String storeName, List<Callable<T>> tasks) {
+        Semaphore permits = storePermits.computeIfAbsent(storeName,
+                name -> new Semaphore(Math.max(properties.getIdBatchLoadingMaxConnections(), 1)));
+        Authentication authentication = SecurityContextHelper.getAuthentication();
+
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        try {
+            for (Callable<T> task : tasks) {
+                permits.acquire();
+                PermitTask<T> future = new PermitTask<>(() -> {
+                    Authentication previousAuthentication = SecurityContextHelper.getAuthentication();
+                    SecurityContextHelper.setAuthentication(authentication);
+                    try {
+                        return task.call();
+                    } finally {
+                        SecurityContextHelper.setAuthentication(previousAuthentication);
+                    }
+                }, permits);
+                try {
+                    getExecutor().execute(future);
+                } catch (RejectedExecutionException e) {
+                    future.cancel(false);
+                    cancel(futures);
+                    throw e;
+                }
+                futures.add(future);
+            }
+
+            List<T> results = new ArrayList<>(tasks.size());
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            cancel(futures);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while loading entities", e);
+        } catch (ExecutionException e) {
+            cancel(futures);
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException("Error loading entities", cause);
+        }
+    }
+
+    protected void cancel(List<? extends Future<?>> futures) {
+        for (Future<?> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * Task holding a permit of the data store, which is released when the task completes or when it is cancelled
+     * before it has started.
+     */
+    protected static class PermitTask<T> extends FutureTask<T> {
+
+        protected static final int NEW = 0;
+        protected static final int STARTED = 1;
+        protected static final int RELEASED = 2;
+
+        protected final Semaphore permits;
+        protected final AtomicInteger state;
+
+        protected PermitTask(Callable<T> callable, Semaphore permits) {
+            this(callable, permits, new AtomicInteger(NEW));
+        }
+
+        private PermitTask(Callable<T> callable, Semaphore permits, AtomicInteger state) {
+            super(() -> {
+                if (!state.compareAndSet(NEW, STARTED)) {
+                    throw new CancellationException();
+                }
+                try {
+                    return callable.call();
+                } finally {
+                    state.set(RELEASED);
+                    permits.release();
+                }
+            });
+            this.permits = permits;
+            this.state = state;
+        }
+
+        @Override
+        protected void done() {
+            if (state.compareAndSet(NEW, RELEASED)) {
+                permits.release();
+            }
+        }
+    }
+
+    protected ExecutorService getExecutor() {
+        ExecutorService result = executor;
+        if (result == null) {
+            synchronized (this) {
+                result = executor;
+                if (result == null) {
+                    result = createExecutor();
+                    executor = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    protected ExecutorService createExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            log.debug("Using virtual threads to load ID batches");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            int threads = Math.max(properties.getIdBatchLoadingThreads(), 1);
+            AtomicInteger threadNumber = new AtomicInteger();
+            ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(threads, threads,
+                    60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "jmix-id-batch-loader-" + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            threadPoolExecutor.allowCoreThreadTimeOut(true);
+            return threadPoolExecutor;
+        }
+    }
+
+    @PreDestroy
+    protected void shutdown() {
+        ExecutorService result = executor;
+        if (result != null) {
+            result.shutdownNow();
+        }
+    }
+}
@@ -29,13 +29,16 @@ import io.jmix.core.metamodel.model.MetaClass;
 import io.jmix.data.*;
 import io.jmix.data.impl.EntityFetcher;
 import io.jmix.data.impl.QueryConstantHandler;
+import io.jmix.data.impl.QueryMacroExpander;
 import io.jmix.data.impl.QueryMacroHandler;
 import io.jmix.data.impl.QueryParamValuesManager;
 import io.jmix.data.persistence.DbmsFeatures;
 import io.jmix.data.persistence.DbmsSpecifics;
+import io.jmix.eclipselink.impl.entitycache.CountQueryKey;
 import io.jmix.eclipselink.impl.entitycache.QueryCacheManager;
 import io.jmix.eclipselink.impl.entitycache.QueryKey;
 import io.jmix.eclipselink.persistence.AdditionalCriteriaProvider;
+import org.apache.commons.lang3.StringUtils;
 import org.eclipse.persistence.config.CascadePolicy;
 import org.eclipse.persistence.config.HintValues;
 import org.eclipse.persistence.config.QueryHints;
@@ -43,9 +46,13 @@ import org.eclipse.persistence.internal.helper.ClassConstants;
 import org.eclipse.persistence.internal.helper.ConversionManager;
 import org.eclipse.persistence.internal.helper.CubaUtil;
 import org.eclipse.persistence.internal.jpa.EJBQueryImpl;
+import org.eclipse.persistence.internal.sessions.DatabaseRecord;
 import org.eclipse.persistence.jpa.JpaQuery;
+import org.eclipse.persistence.queries.CursoredStream;
 import org.eclipse.persistence.queries.DatabaseQuery;
 import org.eclipse.persistence.queries.ObjectLevelReadQuery;
+import org.eclipse.persistence.sessions.Session;
+import org.eclipse.persistence.sessions.UnitOfWork;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.BeanFactory;
@@ -55,6 +62,7 @@ import javax.annotation.Nullable;
 import javax.persistence.*;
 import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -79,10 +87,15 @@ public class JmixEclipseLinkQuery<E> implements JmixQuery<E> {
     protected QueryTransformerFactory queryTransformerFactory;
     protected QueryHintsProcessor hintsProcessor;
     protected DbmsSpecifics dbmsSpecifics;
-    protected Collection<QueryMacroHandler> macroHandlers;
+    protected QueryMacroExpander macroExpander;
+    protected Collection<QueryMacroHandler> macroHandlers = Collections.emptyList();
     protected Collection<QueryConstantHandler> constantHandlers;
     protected List<AdditionalCriteriaProvider> additionalCriteriaProviders;
     protected QueryParamValuesManager queryParamValuesManager;
+    protected TransformedQueryCache transformedQueryCache;
+    protected FetchModeStatistics fetchModeStatistics;
+    protected PersistenceMetrics persistenceMetrics;
+    protected SlowQueryJournal slowQueryJournal;
 
     protected JpaQuery query;
     protected boolean isNative;
@@ -96,60 +109,78 @@ public class JmixEclipseLinkQuery<E> implements JmixQuery<E> {
     protected Integer firstResult;
     protected boolean singleResultExpected;
     protected boolean cacheable;
+    protected boolean resultFromCache;
     protected FlushModeType flushMode;
 
     public JmixEclipseLinkQuery(EntityManager entityManager, BeanFactory beanFactory, boolean isNative, String qlString,
                                 @Nullable Class<E> resultClass) {
+        this(entityManager, beanFactory.getBean(JmixEclipseLinkQueryFactory.class), isNative, qlString, resultClass);
+    }
+
+    public JmixEclipseLinkQuery(EntityManager entityManager, JmixEclipseLinkQueryFactory factory, boolean isNative,
+                                String qlString, @Nullable Class<E> resultClass) {
         this.entityManager = entityManager;
-        this.beanFactory = beanFactory;
         this.isNative = isNative;
         this.queryString = qlString;
         this.resultClass = resultClass;
 
-        environment = beanFactory.getBean(Environment.class);
-        metadata = beanFactory.getBean(Metadata.class);
-        metadataTools = beanFactory.getBean(MetadataTools.class);
-        extendedEntities = beanFactory.getBean(ExtendedEntities.class);
-        fetchPlanRepository = beanFactory.getBean(FetchPlanRepository.class);
-        support = beanFactory.getBean(EclipselinkPersistenceSupport.class);
-        entityChangedEventManager = beanFactory.getBean(EntityChangedEventManager.class);
-        fetchGroupMgr = beanFactory.getBean(FetchGroupManager.class);
-        entityFetcher = beanFactory.getBean(EntityFetcher.class);
-        queryCacheMgr = beanFactory.getBean(QueryCacheManager.class);
-        queryTransformerFactory = beanFactory.getBean(QueryTransformerFactory.class);
-        hintsProcessor = beanFactory.getBean(QueryHintsProcessor.class);
-        dbmsSpecifics = beanFactory.getBean(DbmsSpecifics.class);
-        macroHandlers = beanFactory.getBeanProvider(QueryMacroHandler.class).stream().collect(Collectors.toList());
-        constantHandlers = beanFactory.getBeanProvider(QueryConstantHandler.class).stream().collect(Collectors.toList());
-        additionalCriteriaProviders = beanFactory.getBeanProvider(AdditionalCriteriaProvider.class).stream().collect(Collectors.toList());
-        queryParamValuesManager = beanFactory.getBean(QueryParamValuesManager.class);
+        beanFactory = factory.getBeanFactory();
+        environment = factory.getEnvironment();
+        metadata = factory.getMetadata();
+        metadataTools = factory.getMetadataTools();
+        extendedEntities = factory.getExtendedEntities();
+        fetchPlanRepository = factory.getFetchPlanRepository();
+        support = factory.getSupport();
+        entityChangedEventManager = factory.getEntityChangedEventManager();
+        fetchGroupMgr = factory.getFetchGroupManager();
+        entityFetcher = factory.getEntityFetcher();
+        queryCacheMgr = factory.getQueryCacheManager();
+        queryTransformerFactory = factory.getQueryTransformerFactory();
+        hintsProcessor = factory.getHintsProcessor();
+        dbmsSpecifics = factory.getDbmsSpecifics();
+        macroExpander = factory.getMacroExpander();
+        constantHandlers = factory.createConstantHandlers();
+        additionalCriteriaProviders = factory.getAdditionalCriteriaProviders();
+        queryParamValuesManager = factory.getQueryParamValuesManager();
+        transformedQueryCache = factory.getTransformedQueryCache();
+        fetchModeStatistics = factory.getFetchModeStatistics();
+        persistenceMetrics = factory.getPersistenceMetrics();
+        slowQueryJournal = factory.getSlowQueryJournal();
     }
 
     @Override
     public List<E> getResultList() {
         logQueryString();
+        long slowQueryStart = slowQueryJournal.startTimer();
 
         singleResultExpected = false;
 
         JpaQuery<E> query = getQuery();
         preExecute(query);
 
+        long start = System.nanoTime();
+
         @SuppressWarnings("unchecked")
-        List<E> resultList = (List<E>) getResultFromCache(query, false, obj -> {
-            for (Object item : (List) obj) {
-                if (item instanceof Entity) {
-                    for (FetchPlan fetchPlan : fetchPlans) {
-                        entityFetcher.fetch((Entity) item, fetchPlan);
-                    }
-                }
+        List<E> resultList = (List<E>) getResultFromCache(query, false, obj ->
+                entityFetcher.fetchAll((List<?>) obj, fetchPlans));
+
+        // results from the query cache tell nothing about fetching
+        if (!isNative && !resultFromCache && fetchModeStatistics.isEnabled()) {
+            long elapsed = System.nanoTime() - start;
+            for (FetchPlan fetchPlan : fetchPlans) {
+                fetchModeStatistics.recordLoad(fetchPlan, resultList, elapsed);
             }
-        });
+        }
+        if (slowQueryJournal.isSlow(slowQueryStart)) {
+            recordSlowQuery("getResultList", slowQueryStart, resultList.size());
+        }
         return resultList;
     }
 
     @Override
     public E getSingleResult() {
         logQueryString();
+        long slowQueryStart = slowQueryJournal.startTimer();
 
         singleResultExpected = true;
 
@@ -164,9 +195,81 @@ public class JmixEclipseLinkQuery<E> implements JmixQuery<E> {
                 }
             }
         });
+        if (slowQueryJournal.isSlow(slowQueryStart)) {
+            recordSlowQuery("getSingleResult", slowQueryStart, 1);
+        }
         return result;
     }
 
+    /**
+     * Returns the key of the result of this count query in the query cache. The key takes into account the query
+     * after all transformations, parameter values, soft deletion mode and additional criteria.
+     */
+    public CountQueryKey createCountQueryKey() {
+        Preconditions.checkState(!isNative, "Count results of native queries are not cached");
+        singleResultExpected = true;
+        JpaQuery<E> jpaQuery = getQuery();
+        return CountQueryKey.create(transformedQueryString, PersistenceHints.isSoftDeletion(entityManager), jpaQuery,
+                getAdditionalCriteriaParameters());
+    }
+
+    /**
+     * Returns SQL generated for the query, including conditions of soft deletion and additional criteria.
+     * Parameters are represented by {@code ?} bind markers. Intended for analysis of the query and for passing
+     * it to DBMS tools like the query planner.
+     */
+    public String getSqlString() {
+        JpaQuery<E> jpaQuery = getQuery();
+        Session session = entityManager.unwrap(UnitOfWork.class);
+        DatabaseQuery databaseQuery = jpaQuery.getDatabaseQuery();
+        databaseQuery.prepareCall(session, new DatabaseRecord());
+        return databaseQuery.getSQLString();
+    }
+
+    /**
+     * Returns names of all entities used in the query after transformations.
+     */
+    public Set<String> getQueryEntityNames() {
+        getQuery();
+        return queryTransformerFactory.parser(transformedQueryString).getAllEntityNames();
+    }
+
+    /**
+     * Executes the query through a database cursor and passes the results to the consumer in chunks, so the whole
+     * result list is never held in memory. Objects of a chunk are released by the cursor after the consumer returns,
+     * the consumer is responsible for detaching them from the persistence context.
+     * <p>
+     * The query cache is not used.
+     *
+     * @param chunkSize     number of rows fetched from the database at once and passed to the consumer
+     * @param chunkConsumer receives the results of each chunk
+     */
+    public void processResultChunks(int chunkSize, Consumer<List<E>> chunkConsumer) {
+        Preconditions.checkArgument(chunkSize > 0, "chunkSize must be positive");
+        logQueryString();
+
+        singleResultExpected = false;
+
+        JpaQuery<E> jpaQuery = getQuery();
+        jpaQuery.setHint(QueryHints.CURSOR, HintValues.TRUE);
+        jpaQuery.setHint(QueryHints.CURSOR_PAGE_SIZE, chunkSize);
+        jpaQuery.setHint(QueryHints.JDBC_FETCH_SIZE, chunkSize);
+        preExecute(jpaQuery);
+
+        CursoredStream cursor = (CursoredStream) jpaQuery.getSingleResult();
+        try {
+            while (cursor.hasNext()) {
+                @SuppressWarnings("unchecked")
+                List<E> chunk = (List<E>) cursor.next(chunkSize);
+                entityFetcher.fetchAll(chunk, fetchPlans);
+                chunkConsumer.accept(chunk);
+                cursor.releasePrevious();
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
     @Override
     public TypedQuery<E> setMaxResults(int maxResult) {
         this.maxResults = maxResult;
@@ -277,6 +380,7 @@ public class JmixEclipseLinkQuery<E> implements JmixQuery<E> {
 
     @Override
     public int executeUpdate() {
+        long slowQueryStart = slowQueryJournal.startTimer();
         JpaQuery<E> jpaQuery = getQuery();
         DatabaseQuery databaseQuery = jpaQuery.getDatabaseQuery();
         Class referenceClass = databaseQuery.getReferenceClass();
@@ -300,7 +404,11 @@ public class JmixEclipseLinkQuery<E> implements JmixQuery<E> {
             queryCacheMgr.invalidateAll();
         }
         preExecute(jpaQuery);
-        return jpaQuery.executeUpdate();
+        int updated = jpaQuery.executeUpdate();
+        if (slowQueryJournal.isSlow(slowQueryStart)) {
+            recordSlowQuery("executeUpdate", slowQueryStart, updated);
+        }
+        return updated;
     }
 
     @Override
@@ -436,6 +544,45 @@ public class JmixEclipseLinkQuery<E> implements JmixQuery<E> {
         this.singleResultExpected = singleResultExpected;
     }
 
+    private void recordSlowQuery(String operation, long startNanos, int rowCount) {
+        long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+        Map<String, String> parameters = new LinkedHashMap<>();
+        for (Param param : params) {
+            String name = param.name instanceof Integer ? "?" + param.name : String.valueOf(param.name);
+            parameters.put(name, slowQueryJournal.formatParameter(name, param.value));
+        }
+
+        Map<String, String> fetchModes = new LinkedHashMap<>();
+        if (!isNative) {
+            for (FetchPlan fetchPlan : fetchPlans) {
+                FetchGroupDescription description = fetchGroupMgr.calculateFetchGroup(queryString, fetchPlan,
+                        singleResultExpected, fetchPlan.loadPartialEntities(), isPaged());
+                for (Map.Entry<String, String> entry : description.getHints().entrySet()) {
+                    fetchModes.put(entry.getKey(), QueryHints.LEFT_FETCH.equals(entry.getValue()) ? "JOIN" : "BATCH");
+                }
+            }
+        }
+
+        String fetchPlanName = fetchPlans.isEmpty() ? null : fetchPlans.stream()
+                .map(fetchPlan -> StringUtils.defaultIfEmpty(fetchPlan.getName(), "<ad-hoc>"))
+                .collect(Collectors.joining(", "));
+
+        slowQueryJournal.add(new SlowQueryRecord(new Date(), operation, durationMs, queryString,
+                isNative ? null : transformedQueryString, getSqlStringSafely(), parameters, fetchPlanName,
+                fetchModes, rowCount));
+    }
+
+    @Nullable
+    private String getSqlStringSafely() {
+        try {
+            return query.getDatabaseQuery().getSQLString();
+        } catch (RuntimeException e) {
+            log.debug("Unable to get SQL of query {}", queryString, e);
+            return null;
+        }
+    }
+
     private void logQueryString() {
         if (log.isDebugEnabled())
             log.debug(queryString.replaceAll("[\\t\\n\\x0B\\f\\r]", " "));
@@ -459,7 +606,9 @@ public class JmixEclipseLinkQuery<E> implements JmixQuery<E> {
                 }
             } else {
                 log.trace("Creating JPQL query: {}", queryString);
+                long start = persistenceMetrics.startTimer();
                 transformedQueryString = transformQueryString();
+                stopTimer(PersistenceMetrics.Stage.QUERY_TRANSFORMATION, start);
                 log.trace("Transformed JPQL query: {}", transformedQueryString);
 
                 processParams(transformedQueryString);
@@ -516,14 +665,18 @@ public class JmixEclipseLinkQuery<E> implements JmixQuery<E> {
 
             for (int i = 0; i < fetchPlans.size(); i++) {
                 if (i == 0)
-                    fetchGroupMgr.setFetchPlan(query, queryString, fetchPlans.get(i), singleResultExpected);
+                    fetchGroupMgr.setFetchPlan(query, queryString, fetchPlans.get(i), singleResultExpected, isPaged());
                 else
-                    fetchGroupMgr.addFetchPlan(query, queryString, fetchPlans.get(i), singleResultExpected);
+                    fetchGroupMgr.addFetchPlan(query, queryString, fetchPlans.get(i), singleResultExpected, isPaged());
             }
         }
         return query;
     }
 
+    private boolean isPaged() {
+        return !singleResultExpected && (maxResults != null || firstResult != null);
+    }
+
     @Nullable
     private Class getEffectiveResultClass() {
         if (resultClass == null) {
@@ -541,7 +694,7 @@ public class JmixEclipseLinkQuery<E> implements JmixQuery<E> {
         if (fetchPlan != null) {
             boolean useFetchGroup = fetchPlan.loadPartialEntities();
             for (FetchPlan it : fetchPlans) {
-                FetchGroupDescription description = fetchGroupMgr.calculateFetchGroup(queryString, it, singleResultExpected, useFetchGroup);
+                FetchGroupDescription description = fetchGroupMgr.calculateFetchGroup(queryString, it, singleResultExpected, useFetchGroup, isPaged());
                 if (description.hasBatches()) {
                     useJPQLCache = false;
                     break;
@@ -566,17 +719,72 @@ public class JmixEclipseLinkQuery<E> implements JmixQuery<E> {
         String result = replaceConstants(queryString);
         result = expandMacros(result);
 
+        if (!transformedQueryCache.isEnabled()) {
+            result = transformExpandedQueryString(result);
+            lowerCaseInsensitiveParams();
+            return result;
+        }
+
+        TransformedQueryCache.Key key = createTransformedQueryKey(result);
+        TransformedQueryCache.TransformedQuery transformedQuery = transformedQueryCache.get(key);
+        if (transformedQuery == null) {
+            Set<String> paramNames = getNamedParamNames();
+            result = transformExpandedQueryString(result);
+            transformedQuery = new TransformedQueryCache.TransformedQuery(result,
+                    Sets.difference(paramNames, getNamedParamNames()));
+            transformedQueryCache.put(key, transformedQuery);
+        } else {
+            log.trace("Transformed JPQL query found in cache: {}", key);
+            Set<String> removedParams = transformedQuery.getRemovedParams();
+            if (!removedParams.isEmpty()) {
+                params.removeIf(param -> param.isNamedParam() && removedParams.contains((String) param.name));
+            }
+        }
+        lowerCaseInsensitiveParams();
+        return transformedQuery.getQueryString();
+    }
+
+    private TransformedQueryCache.Key createTransformedQueryKey(String expandedQueryString) {
+        Map<String, TransformedQueryCache.ParamShape> paramShapes = new HashMap<>();
+        for (Param param : params) {
+            if (param.isNamedParam()) {
+                TransformedQueryCache.ParamShape shape;
+                if (param.value == null) {
+                    shape = TransformedQueryCache.ParamShape.NULL;
+                } else if (param.value instanceof Collection && ((Collection<?>) param.value).isEmpty()) {
+                    shape = TransformedQueryCache.ParamShape.EMPTY_COLLECTION;
+                } else if (isCaseInsensitiveParam(param)) {
+                    shape = TransformedQueryCache.ParamShape.CASE_INSENSITIVE;
+                } else {
+                    shape = TransformedQueryCache.ParamShape.VALUE;
+                }
+                paramShapes.put((String) param.name, shape);
+            }
+        }
+        return new TransformedQueryCache.Key(expandedQueryString, firstResult != null && firstResult > 0, paramShapes);
+    }
+
+    private Set<String> getNamedParamNames() {
+        return params.stream()
+                .filter(Param::isNamedParam)
+                .map(param -> (String) param.name)
+                .collect(Collectors.toSet());
+    }
+
+    private String transformExpandedQueryString(String queryString) {
+        // all modifications are applied to the same parsed query, the result query string is built once
+        QueryTransformer transformer = queryTransformerFactory.transformer(queryString);
+        boolean transformed = false;
         boolean rebuildParser = false;
-        QueryParser parser = queryTransformerFactory.parser(result);
+        QueryParser parser = queryTransformerFactory.parser(queryString);
 
         String entityName = parser.getEntityName();
         Class effectiveClass = extendedEntities.getEffectiveClass(entityName);
         MetaClass effectiveMetaClass = metadata.getClass(effectiveClass);
         String effectiveEntityName = effectiveMetaClass.getName();
         if (!effectiveEntityName.equals(entityName)) {
-            QueryTransformer transformer = queryTransformerFactory.transformer(result);
             transformer.replaceEntityName(effectiveEntityName);
-            result = transformer.getResult();
+            transformed = true;
             rebuildParser = true;
         }
 
@@ -584,17 +792,16 @@ public class JmixEclipseLinkQuery<E> implements JmixQuery<E> {
             String storeName = effectiveMetaClass.getStore().getName();
             DbmsFeatures dbmsFeatures = dbmsSpecifics.getDbmsFeatures(storeName);
             if (dbmsFeatures.useOrderByForPaging()) {
-                QueryTransformer transformer = queryTransformerFactory.transformer(result);
                 transformer.addOrderByIdIfNotExists(metadataTools.getPrimaryKeyName(effectiveMetaClass));
-                result = transformer.getResult();
+                transformed = true;
                 rebuildParser = true;
             }
         }
 
-        result = replaceParams(result, parser);
+        transformed |= replaceParams(transformer, parser);
 
         if (rebuildParser) {
-            parser = queryTransformerFactory.parser(result);
+            parser = queryTransformerFactory.parser(transformer);
         }
         String nestedEntityName = parser.getOriginalEntityName();
         String nestedEntityPath = parser.getOriginalEntityPath();
@@ -604,7 +811,6 @@ public class JmixEclipseLinkQuery<E> implements JmixQuery<E> {
             }
 
             if (!metadataTools.isJpaEmbeddable(metadata.getClass(nestedEntityName))) {
-                QueryTransformer transformer = queryTransformerFactory.transformer(result);
                 transformer.replaceWithSelectEntityVariable("tempEntityAlias");
                 transformer.addFirstSelectionSource(String.format("%s tempEntityAlias", nestedEntityName));
                 MetaClass nestedMetaClass = metadata.getSession().getClass(nestedEntityName);
@@ -614,13 +820,13 @@ public class JmixEclipseLinkQuery<E> implements JmixQuery<E> {
                     log.info("MetaClass {} that is necessary for building JPQL query is not found", nestedMetaClass);
                 }
                 transformer.addEntityInGroupBy("tempEntityAlias");
-                result = transformer.getResult();
+                transformed = true;
             }
         }
 
-        result = replaceIsNullAndIsNotNullStatements(result);
+        transformed |= replaceIsNullAndIsNotNullStatements(transformer);
 
-        return result;
+        return transformed ? transformer.getResult() : queryString;
     }
 
     private void processParams(String queryString) {
@@ -646,13 +852,9 @@ public class JmixEclipseLinkQuery<E> implements JmixQuery<E> {
     }
 
     private String expandMacros(String queryStr) {
-        String result = queryStr;
-        if (macroHandlers != null) {
-            for (QueryMacroHandler handler : macroHandlers) {
-                result = handler.expandMacro(result);
-            }
-        }
-        return result;
+        List<QueryMacroHandler> handlers = macroExpander.createHandlers(queryStr);
+        macroHandlers = handlers;
+        return macroExpander.expandMacros(queryStr, handlers);
     }
 
     private void addIdConditions(MetaClass nestedMetaClass, String nestedEntityPath, QueryTransformer transformer) {
@@ -676,58 +878,60 @@ public class JmixEclipseLinkQuery<E> implements JmixQuery<E> {
         return result;
     }
 
-    private String replaceParams(String query, QueryParser parser) {
-        String result = query;
+    private boolean replaceParams(QueryTransformer transformer, QueryParser parser) {
+        boolean transformed = false;
         Set<String> paramNames = Sets.newHashSet(parser.getParamNames());
         for (Iterator<Param> iterator = params.iterator(); iterator.hasNext(); ) {
             Param param = iterator.next();
             String paramName = param.name.toString();
-            if (param.value instanceof String) {
-                String strValue = (String) param.value;
-                if (strValue.startsWith("(?i)")) {
-                    result = replaceCaseInsensitiveParam(result, paramName);
-                    param.value = strValue.substring(4).toLowerCase();
-                }
+            if (isCaseInsensitiveParam(param)) {
+                transformer.handleCaseInsensitiveParam(paramName);
+                transformed = true;
             }
             if (param.isNamedParam()) {
                 paramNames.remove(paramName);
                 if (param.value instanceof Collection) {
                     Collection collectionValue = (Collection) param.value;
                     if (collectionValue.isEmpty()) {
-                        result = replaceInCollectionParam(result, paramName);
+                        transformer.replaceInCondition(paramName);
+                        transformed = true;
                         iterator.remove();
                     }
                 }
                 if (param.value == null) {
                     if (parser.isParameterInCondition(paramName)) {
-                        result = replaceInCollectionParam(result, paramName);
+                        transformer.replaceInCondition(paramName);
+                        transformed = true;
                         iterator.remove();
                     }
                 }
             }
         }
         for (String paramName : paramNames) {
-            result = replaceInCollectionParam(result, paramName);
+            transformer.replaceInCondition(paramName);
+            transformed = true;
         }
-        return result;
+        return transformed;
     }
 
-    private String replaceCaseInsensitiveParam(String query, String paramName) {
-        QueryTransformer transformer = queryTransformerFactory.transformer(query);
-        transformer.handleCaseInsensitiveParam(paramName);
-        return transformer.getResult();
+    private boolean isCaseInsensitiveParam(Param param) {
+        return param.value instanceof String && ((String) param.value).startsWith("(?i)");
     }
 
-    private String replaceInCollectionParam(String query, String paramName) {
-        QueryTransformer transformer = queryTransformerFactory.transformer(query);
-        transformer.replaceInCondition(paramName);
-        return transformer.getResult();
+    /**
+     * Removes the case-insensitive marker from parameter values after the query has been transformed.
+     */
+    private void lowerCaseInsensitiveParams() {
+        for (Param param : params) {
+            if (isCaseInsensitiveParam(param)) {
+                param.value = ((String) param.value).substring(4).toLowerCase();
+            }
+        }
     }
 
-    private String replaceIsNullAndIsNotNullStatements(String query) {
+    private boolean replaceIsNullAndIsNotNullStatements(QueryTransformer transformer) {
         Set<Param> replacedParams = new HashSet<>();
 
-        QueryTransformer transformer = queryTransformerFactory.transformer(query);
         params.stream()
                 .filter(Param::isNamedParam)
                 .map(param -> Maps.immutableEntry(param, transformer.replaceIsNullStatements(
@@ -736,41 +940,42 @@ public class JmixEclipseLinkQuery<E> implements JmixQuery<E> {
                 .forEach(entry -> replacedParams.add(entry.getKey()));
 
         if (replacedParams.isEmpty()) {
-            return query;
+            return false;
         }
 
-        String resultQuery = transformer.getResult();
-
-        QueryParser parser = queryTransformerFactory.parser(resultQuery);
+        QueryParser parser = queryTransformerFactory.parser(transformer);
         params.removeAll(replacedParams.stream()
                 .filter(param -> !parser.isParameterUsedInAnyCondition(param.name.toString()))
                 .collect(Collectors.toSet()));
 
-        return resultQuery;
+        return true;
     }
 
     private void addMacroParams(javax.persistence.TypedQuery jpaQuery) {
-        if (macroHandlers != null) {
-            for (QueryMacroHandler handler : macroHandlers) {
+        if (macroHandlers.isEmpty()) {
+            return;
+        }
 
-                Map<String, Object> namedParams = new HashMap<>();
-                for (Param param : params) {
-                    if (param.name instanceof String)
-                        namedParams.put((String) param.name, param.value);
-                }
+        Map<String, Object> namedParams = new HashMap<>();
+        for (Param param : params) {
+            if (param.name instanceof String)
+                namedParams.put((String) param.name, param.value);
+        }
 
-                Map<String, Class> paramsTypes = new HashMap<>();
-                for (Parameter<?> parameter : jpaQuery.getParameters()) {
-                    if (parameter.getName() != null) {
-                        paramsTypes.put(parameter.getName(), parameter.getParameterType());
-                    }
-                }
-                handler.setQueryParams(namedParams);
-                handler.setExpandedParamTypes(paramsTypes);
+        Map<String, Class> paramsTypes = new HashMap<>();
+        for (Parameter<?> parameter : jpaQuery.getParameters()) {
+            if (parameter.getName() != null) {
+                paramsTypes.put(parameter.getName(), parameter.getParameterType());
+            }
+        }
 
-                for (Map.Entry<String, Object> entry : handler.getParams().entrySet()) {
-                    jpaQuery.setParameter(entry.getKey(), entry.getValue());
-                }
+        for (QueryMacroHandler handler : macroHandlers) {
+            // handlers may modify the map, so each of them gets a copy
+            handler.setQueryParams(new HashMap<>(namedParams));
+            handler.setExpandedParamTypes(paramsTypes);
+
+            for (Map.Entry<String, Object> entry : handler.getParams().entrySet()) {
+                jpaQuery.setParameter(entry.getKey(), entry.getValue());
             }
         }
     }
@@ -791,8 +996,9 @@ public class JmixEclipseLinkQuery<E> implements JmixQuery<E> {
         Preconditions.checkNotNull(fetcher);
         boolean useQueryCache = cacheable && !isNative && queryCacheMgr.isEnabled() && lockMode == null;
         Object result;
+        resultFromCache = false;
         if (useQueryCache) {
-            QueryParser parser = beanFactory.getBean(QueryTransformerFactory.class).parser(transformedQueryString);
+            QueryParser parser = queryTransformerFactory.parser(transformedQueryString);
             String entityName = parser.getEntityName();
             useQueryCache = parser.isEntitySelect(entityName);
             QueryKey queryKey = null;
@@ -803,33 +1009,76 @@ public class JmixEclipseLinkQuery<E> implements JmixQuery<E> {
                         singleResult,
                         jpaQuery,
                         getAdditionalCriteriaParameters());
+                long start = persistenceMetrics.startTimer();
                 result = singleResult ? queryCacheMgr.getSingleResultFromCache(queryKey, fetchPlans) :
                         queryCacheMgr.getResultListFromCache(queryKey, fetchPlans);
+                stopTimer(PersistenceMetrics.Stage.QUERY_CACHE_LOOKUP, start);
                 if (result != null) {
+                    resultFromCache = true;
                     return result;
                 }
             }
+            // taken before the execution, so the result is stale if a transaction commits meanwhile
+            Map<String, Long> generations = useQueryCache ?
+                    queryCacheMgr.getCurrentGenerations(parser.getAllEntityNames(), false) : null;
             try {
-                result = singleResult ? jpaQuery.getSingleResult() : jpaQuery.getResultList();
+                result = executeQuery(jpaQuery, singleResult);
             } catch (NoResultException | NonUniqueResultException ex) {
                 if (useQueryCache && singleResult) {
-                    queryCacheMgr.putResultToCache(queryKey, null, entityName, parser.getAllEntityNames(), ex);
+                    queryCacheMgr.putResultToCache(queryKey, null, entityName, parser.getAllEntityNames(), ex,
+                            generations);
                 }
                 throw ex;
             }
-            fetcher.accept(result);
+            fetch(fetcher, result);
             if (useQueryCache) {
                 queryCacheMgr.putResultToCache(queryKey,
                         singleResult ? Collections.singletonList(result) : (List) result,
-                        entityName, parser.getAllEntityNames());
+                        entityName, parser.getAllEntityNames(), generations);
             }
         } else {
-            result = singleResult ? jpaQuery.getSingleResult() : jpaQuery.getResultList();
-            fetcher.accept(result);
+            result = executeQuery(jpaQuery, singleResult);
+            fetch(fetcher, result);
         }
         return result;
     }
 
+    private Object executeQuery(JpaQuery jpaQuery, boolean singleResult) {
+        long start = persistenceMetrics.startTimer();
+        try {
+            return singleResult ? jpaQuery.getSingleResult() : jpaQuery.getResultList();
+        } finally {
+            stopTimer(PersistenceMetrics.Stage.QUERY_EXECUTION, start);
+        }
+    }
+
+    private void fetch(Consumer<Object> fetcher, Object result) {
+        long start = persistenceMetrics.startTimer();
+        fetcher.accept(result);
+        stopTimer(PersistenceMetrics.Stage.FETCHING, start);
+    }
+
+    private void stopTimer(PersistenceMetrics.Stage stage, long start) {
+        if (persistenceMetrics.isEnabled()) {
+            MetaClass metaClass = getMetricsMetaClass();
+            persistenceMetrics.stopTimer(stage,
+                    metaClass != null ? metaClass.getStore().getName() : Stores.MAIN,
+                    metaClass != null ? metaClass.getName() : null,
+                    start);
+        }
+    }
+
+    @Nullable
+    private MetaClass getMetricsMetaClass() {
+        if (!fetchPlans.isEmpty()) {
+            return metadata.getClass(fetchPlans.get(0).getEntityClass());
+        }
+        if (resultClass != null && Entity.class.isAssignableFrom(resultClass)) {
+            return metadata.getClass(resultClass);
+        }
+        return null;
+    }
+
     private Map<String, Object> getAdditionalCriteriaParameters() {
         Map<String, Object> parameters = new HashMap<>();
         for (AdditionalCriteriaProvider acp : additionalCriteriaProviders) {
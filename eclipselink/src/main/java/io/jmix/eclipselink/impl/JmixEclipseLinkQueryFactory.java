@@ -0,0 +1,205 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jmix.eclipselink.impl;
+
+import io.jmix.core.ExtendedEntities;
+import io.jmix.core.FetchPlanRepository;
+import io.jmix.core.Metadata;
+import io.jmix.core.MetadataTools;
+import io.jmix.data.QueryTransformerFactory;
+import io.jmix.data.impl.EntityFetcher;
+import io.jmix.data.impl.QueryConstantHandler;
+import io.jmix.data.impl.QueryMacroExpander;
+import io.jmix.data.impl.QueryParamValuesManager;
+import io.jmix.data.persistence.DbmsSpecifics;
+import io.jmix.eclipselink.impl.entitycache.QueryCacheManager;
+import io.jmix.eclipselink.persistence.AdditionalCriteriaProvider;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nullable;
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Creates {@link JmixEclipseLinkQuery} instances. Singleton collaborators of the queries are injected into the factory
+ * once and passed to each query instead of being looked up in the bean factory on every query creation.
+ * <p>
+ * Query macro and constant handlers are stateful prototypes, so a new set of them is created for each query.
+ * Macro handlers are created by {@link QueryMacroExpander} only for the macros contained in the query.
+ */
+@Component("eclipselink_JmixEclipseLinkQueryFactory")
+public class JmixEclipseLinkQueryFactory {
+
+    @Autowired
+    protected BeanFactory beanFactory;
+    @Autowired
+    protected Environment environment;
+    @Autowired
+    protected Metadata metadata;
+    @Autowired
+    protected MetadataTools metadataTools;
+    @Autowired
+    protected ExtendedEntities extendedEntities;
+    @Autowired
+    protected FetchPlanRepository fetchPlanRepository;
+    @Autowired
+    protected EclipselinkPersistenceSupport support;
+    @Autowired
+    protected EntityChangedEventManager entityChangedEventManager;
+    @Autowired
+    protected FetchGroupManager fetchGroupManager;
+    @Autowired
+    protected EntityFetcher entityFetcher;
+    @Autowired
+    protected QueryCacheManager queryCacheManager;
+    @Autowired
+    protected QueryTransformerFactory queryTransformerFactory;
+    @Autowired
+    protected QueryHintsProcessor hintsProcessor;
+    @Autowired
+    protected DbmsSpecifics dbmsSpecifics;
+    @Autowired
+    protected QueryParamValuesManager queryParamValuesManager;
+    @Autowired
+    protected TransformedQueryCache transformedQueryCache;
+    @Autowired
+    protected QueryMacroExpander macroExpander;
+    @Autowired
+    protected FetchModeStatistics fetchModeStatistics;
+    @Autowired
+    protected PersistenceMetrics persistenceMetrics;
+    @Autowired
+    protected SlowQueryJournal slowQueryJournal;
+    @Autowired
+    protected ObjectProvider<QueryConstantHandler> constantHandlerProvider;
+    @Autowired
+    protected ObjectProvider<AdditionalCriteriaProvider> additionalCriteriaProviderBeans;
+
+    protected volatile List<AdditionalCriteriaProvider> additionalCriteriaProviders;
+
+    /**
+     * Creates a JPQL or native query for the given entity manager.
+     */
+    public <E> JmixEclipseLinkQuery<E> createQuery(EntityManager entityManager, boolean isNative, String qlString,
+                                                   @Nullable Class<E> resultClass) {
+        return new JmixEclipseLinkQuery<>(entityManager, this, isNative, qlString, resultClass);
+    }
+
+    public BeanFactory getBeanFactory() {
+        return beanFactory;
+    }
+
+    public Environment getEnvironment() {
+        return environment;
+    }
+
+    public Metadata getMetadata() {
+        return metadata;
+    }
+
+    public MetadataTools getMetadataTools() {
+        return metadataTools;
+    }
+
+    public ExtendedEntities getExtendedEntities() {
+        return extendedEntities;
+    }
+
+    public FetchPlanRepository getFetchPlanRepository() {
+        return fetchPlanRepository;
+    }
+
+    public EclipselinkPersistenceSupport getSupport() {
+        return support;
+    }
+
+    public EntityChangedEventManager getEntityChangedEventManager() {
+        return entityChangedEventManager;
+    }
+
+    public FetchGroupManager getFetchGroupManager() {
+        return fetchGroupManager;
+    }
+
+    public EntityFetcher getEntityFetcher() {
+        return entityFetcher;
+    }
+
+    public QueryCacheManager getQueryCacheManager() {
+        return queryCacheManager;
+    }
+
+    public QueryTransformerFactory getQueryTransformerFactory() {
+        return queryTransformerFactory;
+    }
+
+    public QueryHintsProcessor getHintsProcessor() {
+        return hintsProcessor;
+    }
+
+    public DbmsSpecifics getDbmsSpecifics() {
+        return dbmsSpecifics;
+    }
+
+    public QueryParamValuesManager getQueryParamValuesManager() {
+        return queryParamValuesManager;
+    }
+
+    public TransformedQueryCache getTransformedQueryCache() {
+        return transformedQueryCache;
+    }
+
+    public QueryMacroExpander getMacroExpander() {
+        return macroExpander;
+    }
+
+    public FetchModeStatistics getFetchModeStatistics() {
+        return fetchModeStatistics;
+    }
+
+    public PersistenceMetrics getPersistenceMetrics() {
+        return persistenceMetrics;
+    }
+
+    public SlowQueryJournal getSlowQueryJournal() {
+        return slowQueryJournal;
+    }
+
+    /**
+     * @return new instances of query constant handlers
+     */
+    public List<QueryConstantHandler> createConstantHandlers() {
+        return constantHandlerProvider.stream().collect(Collectors.toList());
+    }
+
+    /**
+     * @return additional criteria providers, resolved on the first call
+     */
+    public List<AdditionalCriteriaProvider> getAdditionalCriteriaProviders() {
+        List<AdditionalCriteriaProvider> providers = additionalCriteriaProviders;
+        if (providers == null) {
+            providers = additionalCriteriaProviderBeans.stream().collect(Collectors.toUnmodifiableList());
+            additionalCriteriaProviders = providers;
+        }
+        return providers;
+    }
+}
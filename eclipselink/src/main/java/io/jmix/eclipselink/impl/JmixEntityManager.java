@@ -66,6 +66,7 @@ public class JmixEntityManager implements EntityManager {
     private TimeSource timeSource;
     private AuditInfoProvider auditInfoProvider;
     private AuditConversionService auditConverter;
+    private JmixEclipseLinkQueryFactory queryFactory;
 
     private static final Logger log = LoggerFactory.getLogger(JmixEntityManager.class);
 
@@ -83,6 +84,7 @@ public class JmixEntityManager implements EntityManager {
         timeSource = beanFactory.getBean(TimeSource.class);
         auditInfoProvider = beanFactory.getBean(AuditInfoProvider.class);
         auditConverter = beanFactory.getBean(AuditConversionService.class);
+        queryFactory = beanFactory.getBean(JmixEclipseLinkQueryFactory.class);
 
         setAdditionalProperties();
     }
@@ -273,7 +275,7 @@ public class JmixEntityManager implements EntityManager {
 
     @Override
     public Query createQuery(String qlString) {
-        return new JmixEclipseLinkQuery(delegate, beanFactory, false, qlString, null);
+        return queryFactory.createQuery(delegate, false, qlString, null);
     }
 
     @Override
@@ -293,7 +295,7 @@ public class JmixEntityManager implements EntityManager {
 
     @Override
     public <T> TypedQuery<T> createQuery(String qlString, Class<T> resultClass) {
-        return new JmixEclipseLinkQuery<T>(delegate, beanFactory, false, qlString, resultClass);
+        return queryFactory.createQuery(delegate, false, qlString, resultClass);
     }
 
     @Override
@@ -308,12 +310,12 @@ public class JmixEntityManager implements EntityManager {
 
     @Override
     public Query createNativeQuery(String sqlString) {
-        return new JmixEclipseLinkQuery(delegate, beanFactory, true, sqlString, null);
+        return queryFactory.createQuery(delegate, true, sqlString, null);
     }
 
     @Override
     public Query createNativeQuery(String sqlString, Class resultClass) {
-        return new JmixEclipseLinkQuery(delegate, beanFactory, true, sqlString, resultClass);
+        return queryFactory.createQuery(delegate, true, sqlString, resultClass);
     }
 
     @Override
@@ -598,7 +600,7 @@ public class JmixEntityManager implements EntityManager {
     }
 
     protected void setAdditionalProperties() {
-        for (AdditionalCriteriaProvider acp : beanFactory.getBeansOfType(AdditionalCriteriaProvider.class).values()) {
+        for (AdditionalCriteriaProvider acp : queryFactory.getAdditionalCriteriaProviders()) {
             if (acp.getCriteriaParameters() != null) {
                 for (Map.Entry<String, Object> entry : acp.getCriteriaParameters().entrySet()) {
                     this.delegate.setProperty(entry.getKey(), entry.getValue());
@@ -19,10 +19,17 @@ package io.jmix.eclipselink.impl;
 import com.google.common.collect.Lists;
 import io.jmix.core.*;
 import io.jmix.core.datastore.AbstractDataStore;
+import io.jmix.core.datastore.DataStoreAfterEntityLoadEvent;
+import io.jmix.core.datastore.DataStoreBeforeEntityCountEvent;
+import io.jmix.core.datastore.DataStoreBeforeEntityLoadEvent;
+import io.jmix.core.datastore.DataStoreEntityLoadingEvent;
+import io.jmix.core.datastore.EventSharedState;
+import io.jmix.core.entity.EntityValues;
 import io.jmix.core.event.EntityChangedEvent;
 import io.jmix.core.metamodel.model.MetaClass;
 import io.jmix.core.metamodel.model.MetaProperty;
 import io.jmix.data.DataProperties;
+import io.jmix.data.KeysetPosition;
 import io.jmix.data.PersistenceHints;
 import io.jmix.data.QueryTransformerFactory;
 import io.jmix.data.StoreAwareLocator;
@@ -33,6 +40,9 @@ import io.jmix.data.impl.EntityEventManager;
 import io.jmix.data.impl.JpqlQueryBuilder;
 import io.jmix.data.impl.QueryResultsManager;
 import io.jmix.data.persistence.DbmsSpecifics;
+import io.jmix.eclipselink.EclipselinkProperties;
+import io.jmix.eclipselink.impl.entitycache.CountQueryKey;
+import io.jmix.eclipselink.impl.entitycache.QueryCacheManager;
 import io.jmix.eclipselink.impl.lazyloading.LazyLoadingContext;
 import org.apache.commons.lang3.StringUtils;
 import org.eclipse.persistence.exceptions.QueryException;
@@ -48,6 +58,7 @@ import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.annotation.Nullable;
 import javax.persistence.EntityManager;
@@ -55,10 +66,13 @@ import javax.persistence.NoResultException;
 import javax.persistence.PersistenceException;
 import javax.persistence.Query;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
 
 import static io.jmix.core.entity.EntityValues.getValue;
 
@@ -75,6 +89,21 @@ public class JpaDataStore extends AbstractDataStore implements DataSortingOption
 
     private static final Logger log = LoggerFactory.getLogger(JpaDataStore.class);
 
+    /**
+     * Maximum number of bind parameters in a query loading entities by composite keys if the DBMS has no limit.
+     * Keys are matched by a disjunction of conditions which is expensive to parse, so the batch is kept small.
+     */
+    protected static final int COMPOSITE_IDS_BATCH_PARAMETERS = 200;
+
+    /**
+     * Sizes to which lists of IDs are padded, so that queries loading different numbers of IDs share
+     * the same JPQL and SQL text and hit the statement caches.
+     */
+    protected static final int[] ID_LIST_PADDING_SIZES = {1, 8, 32, 128, 512};
+
+    protected static final Pattern FILTERING_SQL_PATTERN =
+            Pattern.compile("\\b(where|join|distinct|group by|union)\\b", Pattern.CASE_INSENSITIVE);
+
     @Autowired
     protected DataProperties properties;
 
@@ -117,6 +146,18 @@ public class JpaDataStore extends AbstractDataStore implements DataSortingOption
     @Autowired
     protected FetchPlanRepository fetchPlanRepository;
 
+    @Autowired
+    protected EclipselinkProperties eclipselinkProperties;
+
+    @Autowired
+    protected QueryCacheManager queryCacheManager;
+
+    @Autowired
+    protected IdBatchLoadExecutor idBatchLoadExecutor;
+
+    @Autowired
+    protected PersistenceMetrics persistenceMetrics;
+
     protected String storeName;
 
     protected static final AtomicLong txCount = new AtomicLong();
@@ -141,6 +182,8 @@ public class JpaDataStore extends AbstractDataStore implements DataSortingOption
         Query query = createQuery(em, context, false);
 
         List<Object> resultList = executeQuery(query, isSingleResult(context));
+        persistenceMetrics.recordAmount(PersistenceMetrics.Amount.LOADED_ENTITIES, storeName,
+                context.getEntityMetaClass().getName(), resultList.size());
 
         return resultList.isEmpty() ? null : resultList.get(0);
     }
@@ -155,42 +198,165 @@ public class JpaDataStore extends AbstractDataStore implements DataSortingOption
         EntityManager em = storeAwareLocator.getEntityManager(storeName);
         em.setProperty(PersistenceHints.SOFT_DELETION, context.getHints().get(PersistenceHints.SOFT_DELETION));
 
+        List<Object> resultList;
         if (!context.getIds().isEmpty()) {
             if (metadataTools.hasCompositePrimaryKey(metaClass)) {
-                return loadAllByIds(context, em);
+                resultList = sortByIds(loadAllByIdBatches(context, em), context.getIds());
             } else {
-                return loadAllByIdBatches(context, em);
+                resultList = loadAllByIdBatches(context, em);
             }
         } else {
             Query query = createQuery(em, context, false);
-            return executeQuery(query, false);
+            boolean cacheCount = isCountOfPageCacheable(context);
+            // taken before the execution, so the count is stale if a transaction commits meanwhile
+            Map<String, Long> countGenerations = null;
+            if (cacheCount) {
+                countGenerations = queryCacheManager.getCurrentGenerations(
+                        ((JmixEclipseLinkQuery<?>) query).getQueryEntityNames(), true);
+            }
+            resultList = executeQuery(query, false);
+            if (cacheCount) {
+                cacheCountOfNotFullPage(em, context, resultList, countGenerations);
+            }
+        }
+        persistenceMetrics.recordAmount(PersistenceMetrics.Amount.LOADED_ENTITIES, storeName, metaClass.getName(),
+                resultList.size());
+        return resultList;
+    }
+
+    /**
+     * Returns true if the total number of rows should be put into the count cache when a page loaded by the context
+     * is not full. It is done only for pages of cacheable queries, because building the key of the count query
+     * requires one more query transformation.
+     */
+    protected boolean isCountOfPageCacheable(LoadContext<?> context) {
+        LoadContext.Query contextQuery = context.getQuery();
+        return contextQuery != null
+                && contextQuery.isCacheable()
+                && contextQuery.getMaxResults() > 0
+                && context.getHints().get(PersistenceHints.KEYSET_POSITION) == null
+                && queryCacheManager.isCountCacheEnabled();
+    }
+
+    /**
+     * If a page is loaded and it is not full, the total number of rows is known without a count query,
+     * so it is put into the count cache for the subsequent {@link #countAll(LoadContext)}.
+     * Invoked only if {@link #isCountOfPageCacheable(LoadContext)} returns true.
+     *
+     * @param generations generations of the related types taken before the page was loaded
+     */
+    protected void cacheCountOfNotFullPage(EntityManager em, LoadContext<?> context, List<Object> resultList,
+                                           @Nullable Map<String, Long> generations) {
+        LoadContext.Query contextQuery = Objects.requireNonNull(context.getQuery());
+        if (resultList.size() >= contextQuery.getMaxResults()
+                || resultList.isEmpty() && contextQuery.getFirstResult() > 0) {
+            return;
         }
+        JmixEclipseLinkQuery<?> countQuery = (JmixEclipseLinkQuery<?>) createQuery(em, context, true);
+        queryCacheManager.putCountToCache(countQuery.createCountQueryKey(),
+                contextQuery.getFirstResult() + resultList.size(),
+                extendedEntities.getEffectiveMetaClass(context.getEntityMetaClass()).getName(),
+                countQuery.getQueryEntityNames(), generations);
     }
 
-    protected List<Object> loadAllByIds(LoadContext<?> context, EntityManager em) {
-        LoadContext<?> contextCopy = context.copy();
-        contextCopy.setIds(Collections.emptyList());
+    /**
+     * Loads entities by the given context through a database cursor and passes them to the consumer one by one,
+     * without keeping the whole result list in memory. Suitable for processing large result sets, e.g. for export.
+     * <p>
+     * Entities are read, detached and processed by the data store listeners in chunks of
+     * {@link EclipselinkProperties#getStreamingFetchSize()} instances, so in-memory access constraints and loading
+     * events are applied to each chunk. The consumer is invoked inside the load transaction and receives detached
+     * instances. Loading by a list of identifiers is performed as usual and the loaded list is passed to the consumer.
+     *
+     * @param context  loading context
+     * @param consumer receives loaded entities
+     */
+    @SuppressWarnings("unchecked")
+    public <E> void loadList(LoadContext<E> context, Consumer<? super E> consumer) {
+        if (!context.getIds().isEmpty()) {
+            for (Object entity : loadList(context)) {
+                consumer.accept((E) entity);
+            }
+            return;
+        }
 
-        List<Object> entities = new ArrayList<>(context.getIds().size());
+        EventSharedState eventState = new EventSharedState();
 
-        for (Object id : context.getIds()) {
-            contextCopy.setId(id);
-            Query query = createQuery(em, contextCopy, false);
-            List<Object> list = executeQuery(query, true);
-            entities.addAll(list);
+        DataStoreBeforeEntityLoadEvent beforeLoadEvent = new DataStoreBeforeEntityLoadEvent(context, eventState);
+        fireEvent(beforeLoadEvent);
+        if (beforeLoadEvent.loadPrevented()) {
+            return;
+        }
+
+        Object transaction = beginLoadTransaction(context.isJoinTransaction());
+        try {
+            queryResultsManager.savePreviousQueryResults(context);
+
+            EntityManager em = storeAwareLocator.getEntityManager(storeName);
+            em.setProperty(PersistenceHints.SOFT_DELETION, context.getHints().get(PersistenceHints.SOFT_DELETION));
+
+            JmixEclipseLinkQuery<Object> query = (JmixEclipseLinkQuery<Object>) createQuery(em, context, false);
+            try {
+                query.processResultChunks(eclipselinkProperties.getStreamingFetchSize(), chunk ->
+                        processLoadedChunk(em, context, chunk, eventState, consumer));
+            } catch (PersistenceException e) {
+                throw convertQueryException(e);
+            }
+
+            commitTransaction(transaction);
+        } finally {
+            rollbackTransaction(transaction);
+        }
+    }
+
+    /**
+     * Detaches a chunk of entities loaded by {@link #loadList(LoadContext, Consumer)}, fires the loading events
+     * for it and passes the remaining entities to the consumer.
+     */
+    @SuppressWarnings("unchecked")
+    protected <E> void processLoadedChunk(EntityManager em, LoadContext<E> context, List<Object> chunk,
+                                          EventSharedState eventState, Consumer<? super E> consumer) {
+        DataStoreEntityLoadingEvent loadingEvent = new DataStoreEntityLoadingEvent(context, new ArrayList<>(chunk), eventState);
+        fireEvent(loadingEvent);
+
+        // detach all read instances, including excluded ones, to keep the persistence context small
+        long start = persistenceMetrics.startTimer();
+        for (Object entity : chunk) {
+            detachEntity(em, entity, context.getFetchPlan(), false);
+        }
+        persistenceMetrics.stopTimer(PersistenceMetrics.Stage.DETACHING, storeName,
+                context.getEntityMetaClass().getName(), start);
+        persistenceMetrics.recordAmount(PersistenceMetrics.Amount.LOADED_ENTITIES, storeName,
+                context.getEntityMetaClass().getName(), chunk.size());
+
+        List<Object> entities = loadingEvent.getResultEntities();
+        for (Object entity : entities) {
+            entityEventManager.publishEntityLoadingEvent(entity);
         }
 
-        return entities;
+        DataStoreAfterEntityLoadEvent afterLoadEvent = new DataStoreAfterEntityLoadEvent(context, entities, eventState);
+        fireEvent(afterLoadEvent);
+
+        for (Object entity : afterLoadEvent.getResultEntities()) {
+            consumer.accept((E) entity);
+        }
     }
 
     @SuppressWarnings("unchecked")
     protected List<Object> loadAllByIdBatches(LoadContext<?> context, EntityManager em) {
-        Integer batchSize = dbmsSpecifics.getDbmsFeatures(storeName).getMaxIdsBatchSize();
-
         List<Object> resultList = new ArrayList<>(context.getIds().size());
 
-        List<List<Object>> partitions = Lists.partition((List<Object>) context.getIds(),
-                batchSize == null ? Integer.MAX_VALUE : batchSize);
+        MetaClass metaClass = extendedEntities.getEffectiveMetaClass(context.getEntityMetaClass());
+        int batchSize = getIdsBatchSize(metaClass);
+        List<List<Object>> partitions = Lists.partition((List<Object>) context.getIds(), batchSize);
+        if (isIdListPaddingRequired(metaClass)) {
+            partitions = partitions.stream()
+                    .map(partition -> padIdList(partition, batchSize))
+                    .collect(Collectors.toList());
+        }
+        if (partitions.size() > 1 && eclipselinkProperties.isParallelIdBatchLoading() && !context.isJoinTransaction()) {
+            return loadIdBatchesConcurrently(context, partitions);
+        }
         for (List<Object> partition : partitions) {
             LoadContext<Object> contextCopy = (LoadContext<Object>) context.copy();
             contextCopy.setIds(partition);
@@ -204,17 +370,225 @@ public class JpaDataStore extends AbstractDataStore implements DataSortingOption
         return resultList;
     }
 
+    /**
+     * Returns the number of IDs loaded by one query. For entities with composite keys, each key takes a bind
+     * parameter for every key attribute, so {@link io.jmix.data.persistence.DbmsFeatures#getMaxIdsBatchSize()} is
+     * divided by the number of key attributes.
+     */
+    protected int getIdsBatchSize(MetaClass metaClass) {
+        Integer batchSize = dbmsSpecifics.getDbmsFeatures(storeName).getMaxIdsBatchSize();
+        if (!metadataTools.hasCompositePrimaryKey(metaClass)) {
+            return batchSize == null ? Integer.MAX_VALUE : batchSize;
+        }
+        MetaProperty primaryKeyProperty = Objects.requireNonNull(metadataTools.getPrimaryKeyProperty(metaClass));
+        long keySize = primaryKeyProperty.getRange().asClass().getProperties().stream()
+                .filter(property -> property.getRange().isDatatype() && metadataTools.isJpa(property))
+                .count();
+        int maxParameters = batchSize == null ? COMPOSITE_IDS_BATCH_PARAMETERS : batchSize;
+        return (int) Math.max(maxParameters / Math.max(keySize, 1), 1);
+    }
+
+    /**
+     * Returns true if lists of IDs should be padded to reduce the number of distinct query texts, see
+     * {@link EclipselinkProperties#isIdListPadding()}. Not required if the IDs are passed in a single array parameter.
+     */
+    protected boolean isIdListPaddingRequired(MetaClass metaClass) {
+        return eclipselinkProperties.isIdListPadding()
+                && (metadataTools.hasCompositePrimaryKey(metaClass)
+                || !dbmsSpecifics.getDbmsFeatures(storeName).supportsArrayParameters());
+    }
+
+    /**
+     * Pads the list of IDs by repeating the last ID up to the nearest of {@link #ID_LIST_PADDING_SIZES}
+     * or to a multiple of the largest of them, but not beyond the maximum batch size.
+     */
+    protected List<Object> padIdList(List<Object> ids, int maxSize) {
+        int size = ids.size();
+        int lastBucket = ID_LIST_PADDING_SIZES[ID_LIST_PADDING_SIZES.length - 1];
+        long paddedSize = ((long) size + lastBucket - 1) / lastBucket * lastBucket;
+        for (int bucket : ID_LIST_PADDING_SIZES) {
+            if (bucket >= size) {
+                paddedSize = bucket;
+                break;
+            }
+        }
+        paddedSize = Math.min(paddedSize, maxSize);
+        if (paddedSize <= size) {
+            return ids;
+        }
+        List<Object> padded = new ArrayList<>((int) paddedSize);
+        padded.addAll(ids);
+        Object lastId = ids.get(size - 1);
+        while (padded.size() < paddedSize) {
+            padded.add(lastId);
+        }
+        return padded;
+    }
+
+    /**
+     * Arranges loaded entities in the order of requested IDs.
+     */
+    protected List<Object> sortByIds(List<Object> entities, List<?> ids) {
+        Map<Object, Object> entitiesById = new HashMap<>(entities.size());
+        for (Object entity : entities) {
+            entitiesById.put(EntityValues.getId(entity), entity);
+        }
+        List<Object> result = new ArrayList<>(entities.size());
+        for (Object id : ids) {
+            Object entity = entitiesById.get(id);
+            if (entity != null) {
+                result.add(entity);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Loads the batches of IDs concurrently, each in a separate read-only transaction. The merged results are
+     * arranged in the order of requested IDs.
+     */
+    @SuppressWarnings("unchecked")
+    protected List<Object> loadIdBatchesConcurrently(LoadContext<?> context, List<List<Object>> partitions) {
+        List<Callable<List<Object>>> tasks = new ArrayList<>(partitions.size());
+        for (List<Object> partition : partitions) {
+            LoadContext<Object> contextCopy = (LoadContext<Object>) context.copy();
+            contextCopy.setIds(partition);
+            tasks.add(() -> loadIdBatchInSeparateTransaction(contextCopy));
+        }
+
+        List<Object> resultList = new ArrayList<>(context.getIds().size());
+        for (List<Object> list : idBatchLoadExecutor.executeAll(storeName, tasks)) {
+            resultList.addAll(list);
+        }
+        return sortByIds(resultList, context.getIds());
+    }
+
+    protected List<Object> loadIdBatchInSeparateTransaction(LoadContext<?> context) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(storeAwareLocator.getTransactionManager(storeName));
+        transactionTemplate.setName(LOAD_TX_PREFIX + txCount.incrementAndGet());
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        transactionTemplate.setReadOnly(true);
+
+        return transactionTemplate.execute(status -> {
+            EntityManager em = storeAwareLocator.getEntityManager(storeName);
+            em.setProperty(PersistenceHints.SOFT_DELETION, context.getHints().get(PersistenceHints.SOFT_DELETION));
+
+            Query query = createQuery(em, context, false);
+            return executeQuery(query, false);
+        });
+    }
+
+    /**
+     * Returns the number of entities matching the load context. The number is estimated using the DBMS statistics
+     * if the DBMS can provide an estimate for the query, otherwise the exact number is returned.
+     * <p>
+     * Getting the count this way is equivalent to {@link #getCount(LoadContext)} with the
+     * {@link PersistenceHints#APPROXIMATE_COUNT} hint, but the result also tells whether the number is an estimate.
+     *
+     * @param context loading context
+     * @return estimated or exact number of entities
+     */
+    public CountEstimate getCountEstimate(LoadContext<?> context) {
+        EventSharedState eventState = new EventSharedState();
+
+        DataStoreBeforeEntityCountEvent beforeCountEvent = new DataStoreBeforeEntityCountEvent(context, eventState);
+        fireEvent(beforeCountEvent);
+        if (beforeCountEvent.countPrevented()) {
+            return new CountEstimate(0, false);
+        }
+        if (beforeCountEvent.countByItems()) {
+            // in-memory constraints require loading the instances
+            return new CountEstimate(getCount(context), false);
+        }
+
+        Object transaction = beginLoadTransaction(context.isJoinTransaction());
+        try {
+            CountEstimate result = countAll(context, true);
+            commitTransaction(transaction);
+            return result;
+        } finally {
+            rollbackTransaction(transaction);
+        }
+    }
+
     @Override
     protected long countAll(LoadContext<?> context) {
+        return countAll(context, Boolean.TRUE.equals(context.getHints().get(PersistenceHints.APPROXIMATE_COUNT)))
+                .getCount();
+    }
+
+    protected CountEstimate countAll(LoadContext<?> context, boolean approximate) {
         queryResultsManager.savePreviousQueryResults(context);
 
         EntityManager em = storeAwareLocator.getEntityManager(storeName);
         em.setProperty(PersistenceHints.SOFT_DELETION, context.getHints().get(PersistenceHints.SOFT_DELETION));
 
+        if (approximate) {
+            Long estimate = estimateCount(em, context);
+            if (estimate != null) {
+                return new CountEstimate(estimate, true);
+            }
+        }
+
         Query query = createQuery(em, context, true);
+        if (queryCacheManager.isCountCacheEnabled()) {
+            return new CountEstimate(countAllCached((JmixEclipseLinkQuery<?>) query, context), false);
+        }
         Number result = (Number) query.getSingleResult();
 
-        return result.longValue();
+        return new CountEstimate(result.longValue(), false);
+    }
+
+    /**
+     * Estimates the number of entities matching the load context using the DBMS statistics.
+     *
+     * @return estimated count or null if the DBMS cannot provide it for this query
+     */
+    @Nullable
+    protected Long estimateCount(EntityManager em, LoadContext<?> context) {
+        if (context.getQuery() == null) {
+            return null;
+        }
+        MetaClass metaClass = extendedEntities.getEffectiveMetaClass(context.getEntityMetaClass());
+        String tableName = metadataTools.getDatabaseTable(metaClass);
+        if (tableName == null) {
+            return null;
+        }
+
+        LoadContext<?> selectContext = context.copy();
+        selectContext.getQuery().setFirstResult(0);
+        selectContext.getQuery().setMaxResults(0);
+        selectContext.getHints().remove(PersistenceHints.KEYSET_POSITION);
+
+        try {
+            JmixEclipseLinkQuery<?> query = (JmixEclipseLinkQuery<?>) createQuery(em, selectContext, false);
+            // the generated SQL contains conditions of soft deletion and additional criteria which are not in JPQL
+            String sql = query.getSqlString();
+            boolean filtered = FILTERING_SQL_PATTERN.matcher(sql).find()
+                    || !metaClass.getAncestors().isEmpty()
+                    || !metaClass.getDescendants().isEmpty();
+            boolean parameterized = sql.indexOf('?') >= 0;
+
+            return dbmsSpecifics.getDbmsFeatures(storeName).estimateRowCount(
+                    storeAwareLocator.getJdbcTemplate(storeName), parameterized ? null : sql, tableName, filtered);
+        } catch (RuntimeException e) {
+            log.debug("Cannot estimate count of {}, falling back to exact count", metaClass.getName(), e);
+            return null;
+        }
+    }
+
+    protected long countAllCached(JmixEclipseLinkQuery<?> query, LoadContext<?> context) {
+        CountQueryKey queryKey = query.createCountQueryKey();
+        Long count = queryCacheManager.getCountFromCache(queryKey);
+        if (count == null) {
+            Set<String> relatedTypes = query.getQueryEntityNames();
+            Map<String, Long> generations = queryCacheManager.getCurrentGenerations(relatedTypes, true);
+            count = ((Number) query.getSingleResult()).longValue();
+            queryCacheManager.putCountToCache(queryKey, count,
+                    extendedEntities.getEffectiveMetaClass(context.getEntityMetaClass()).getName(),
+                    relatedTypes, generations);
+        }
+        return count;
     }
 
     @Override
@@ -238,6 +612,13 @@ public class JpaDataStore extends AbstractDataStore implements DataSortingOption
             }
         }
 
+        if (persistenceMetrics.isEnabled()) {
+            Map<String, Long> countsByEntity = result.stream()
+                    .collect(Collectors.groupingBy(entity -> metadata.getClass(entity).getName(), Collectors.counting()));
+            countsByEntity.forEach((entityName, count) ->
+                    persistenceMetrics.recordAmount(PersistenceMetrics.Amount.SAVED_ENTITIES, storeName, entityName, count));
+        }
+
         return result;
     }
 
@@ -301,10 +682,18 @@ public class JpaDataStore extends AbstractDataStore implements DataSortingOption
     protected void beforeLoadTransactionCommit(LoadContext<?> context, Collection<Object> entities) {
         if (context.isJoinTransaction()) {
             EntityManager em = storeAwareLocator.getEntityManager(storeName);
+            boolean timed = persistenceMetrics.isEnabled();
+            long detachingNanos = 0;
             for (Object entity : entities) {
+                long start = persistenceMetrics.startTimer();
                 detachEntity(em, entity, context.getFetchPlan(), false);
+                if (timed) {
+                    detachingNanos += System.nanoTime() - start;
+                }
                 entityEventManager.publishEntityLoadingEvent(entity);
             }
+            persistenceMetrics.recordTime(PersistenceMetrics.Stage.DETACHING, storeName,
+                    context.getEntityMetaClass().getName(), detachingNanos);
         }
     }
 
@@ -351,9 +740,17 @@ public class JpaDataStore extends AbstractDataStore implements DataSortingOption
             boolean softDeletionBefore = PersistenceHints.isSoftDeletion(em);
             try {
                 em.setProperty(PersistenceHints.SOFT_DELETION, context.getHints().get(PersistenceHints.SOFT_DELETION));
+                long start = persistenceMetrics.startTimer();
                 persistenceSupport.processFlush(em, false);
+                persistenceMetrics.stopTimer(PersistenceMetrics.Stage.FLUSH_PROCESSING, storeName, null, start);
+
+                start = persistenceMetrics.startTimer();
                 eventsInfo = entityChangedEventManager.collect( persistenceSupport.getInstances(em));
+                persistenceMetrics.stopTimer(PersistenceMetrics.Stage.ENTITY_CHANGED_EVENTS_COLLECTING, storeName, null, start);
+
+                start = persistenceMetrics.startTimer();
                 ((EntityManager) em.getDelegate()).flush();
+                persistenceMetrics.stopTimer(PersistenceMetrics.Stage.FLUSH, storeName, null, start);
             } catch (PersistenceException e) {
                 Pattern pattern = getUniqueConstraintViolationPattern();
                 Matcher matcher = pattern.matcher(e.toString());
@@ -372,11 +769,15 @@ public class JpaDataStore extends AbstractDataStore implements DataSortingOption
                         Id.of(info.getEntity()), info.getType(), info.getChanges(), info.getOriginalMetaClass()));
             }
 
+            long start = persistenceMetrics.startTimer();
             for (Object entity : entities) {
                 detachEntity(em, entity, context.getFetchPlans().get(entity), true);
             }
+            persistenceMetrics.stopTimer(PersistenceMetrics.Stage.DETACHING, storeName, null, start);
 
+            start = persistenceMetrics.startTimer();
             entityChangedEventManager.publish(events);
+            persistenceMetrics.stopTimer(PersistenceMetrics.Stage.ENTITY_CHANGED_EVENTS_PUBLISHING, storeName, null, start);
         }
     }
 
@@ -395,6 +796,7 @@ public class JpaDataStore extends AbstractDataStore implements DataSortingOption
 
         queryBuilder.setId(context.getId())
                 .setIds(context.getIds())
+                .setDbmsFeatures(dbmsSpecifics.getDbmsFeatures(storeName))
                 .setEntityName(metaClass.getName());
 
         if (contextQuery != null) {
@@ -408,6 +810,8 @@ public class JpaDataStore extends AbstractDataStore implements DataSortingOption
 
         if (countQuery) {
             queryBuilder.setCountQuery();
+        } else {
+            queryBuilder.setKeysetPosition((KeysetPosition) context.getHints().get(PersistenceHints.KEYSET_POSITION));
         }
 
         if (!context.getPreviousQueries().isEmpty()) {
@@ -416,7 +820,9 @@ public class JpaDataStore extends AbstractDataStore implements DataSortingOption
 //            queryBuilder.setPreviousResults(userSessionSource.getUserSession().getId(), context.getQueryKey());
         }
 
+        long start = persistenceMetrics.startTimer();
         JmixEclipseLinkQuery<?> query = queryBuilder.getQuery(em);
+        persistenceMetrics.stopTimer(PersistenceMetrics.Stage.QUERY_BUILDING, storeName, metaClass.getName(), start);
 
         if (contextQuery != null) {
             if (contextQuery.getFirstResult() != 0)
@@ -436,8 +842,10 @@ public class JpaDataStore extends AbstractDataStore implements DataSortingOption
             query.setHint(PersistenceHints.FETCH_PLAN, createFetchPlan(context));
         }
 
+        start = persistenceMetrics.startTimer();
         ReadEntityQueryContext queryContext = new ReadEntityQueryContext(query, metaClass, queryTransformerFactory);
         accessManager.applyConstraints(queryContext, context.getAccessConstraints());
+        persistenceMetrics.stopTimer(PersistenceMetrics.Stage.ACCESS_CONSTRAINTS, storeName, metaClass.getName(), start);
 
         query = (JmixEclipseLinkQuery) queryContext.getResultQuery();
 
@@ -502,17 +910,20 @@ public class JpaDataStore extends AbstractDataStore implements DataSortingOption
                 list = query.getResultList();
             }
         } catch (PersistenceException e) {
-            if (e.getCause() instanceof QueryException
-                    && e.getMessage() != null
-                    && e.getMessage().contains("Fetch group cannot be set on report query")) {
-                throw new DevelopmentException("DataManager cannot execute query for single attributes");
-            } else {
-                throw e;
-            }
+            throw convertQueryException(e);
         }
         return list;
     }
 
+    protected RuntimeException convertQueryException(PersistenceException e) {
+        if (e.getCause() instanceof QueryException
+                && e.getMessage() != null
+                && e.getMessage().contains("Fetch group cannot be set on report query")) {
+            return new DevelopmentException("DataManager cannot execute query for single attributes");
+        }
+        return e;
+    }
+
 
     protected <E> void detachEntity(EntityManager em, @Nullable E rootEntity, @Nullable FetchPlan fetchPlan, boolean loadedOnly) {
         if (rootEntity == null)
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jmix.eclipselink.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.context.ApplicationContext;
+
+import javax.annotation.Nullable;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * INTERNAL.
+ * Records {@link PersistenceMetrics} to a Micrometer {@link MeterRegistry}. The class is loaded only if Micrometer
+ * is on the classpath.
+ */
+public class MicrometerPersistenceMetricsRecorder implements PersistenceMetrics.Recorder {
+
+    protected final MeterRegistry registry;
+
+    protected final Map<PersistenceMetrics.Stage, ConcurrentMap<String, Timer>> timers =
+            new EnumMap<>(PersistenceMetrics.Stage.class);
+
+    protected final Map<PersistenceMetrics.Amount, ConcurrentMap<String, DistributionSummary>> summaries =
+            new EnumMap<>(PersistenceMetrics.Amount.class);
+
+    protected final Map<PersistenceMetrics.Count, ConcurrentMap<String, Counter>> counters =
+            new EnumMap<>(PersistenceMetrics.Count.class);
+
+    public MicrometerPersistenceMetricsRecorder(MeterRegistry registry) {
+        this.registry = registry;
+        for (PersistenceMetrics.Stage stage : PersistenceMetrics.Stage.values()) {
+            timers.put(stage, new ConcurrentHashMap<>());
+        }
+        for (PersistenceMetrics.Amount amount : PersistenceMetrics.Amount.values()) {
+            summaries.put(amount, new ConcurrentHashMap<>());
+        }
+        for (PersistenceMetrics.Count count : PersistenceMetrics.Count.values()) {
+            counters.put(count, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Creates the recorder if there is a {@link MeterRegistry} bean in the context.
+     *
+     * @return recorder or null if there is no registry
+     */
+    @Nullable
+    public static MicrometerPersistenceMetricsRecorder create(ApplicationContext applicationContext) {
+        MeterRegistry registry = applicationContext.getBeanProvider(MeterRegistry.class).getIfAvailable();
+        return registry != null ? new MicrometerPersistenceMetricsRecorder(registry) : null;
+    }
+
+    @Override
+    public void recordTime(PersistenceMetrics.Stage stage, String storeName, @Nullable String entityName, long nanos) {
+        String entityTag = entityName != null ? entityName : "";
+        timers.get(stage)
+                .computeIfAbsent(storeName + ':' + entityTag, key -> Timer.builder(PersistenceMetrics.STAGE_TIMER)
+                        .tag(PersistenceMetrics.STAGE_TAG, stage.getTagValue())
+                        .tag(PersistenceMetrics.STORE_TAG, storeName)
+                        .tag(PersistenceMetrics.ENTITY_TAG, entityTag)
+                        .register(registry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordAmount(PersistenceMetrics.Amount amount, String storeName, @Nullable String entityName, long value) {
+        String entityTag = entityName != null ? entityName : "";
+        summaries.get(amount)
+                .computeIfAbsent(storeName + ':' + entityTag, key -> DistributionSummary.builder(amount.getMeterName())
+                        .tag(PersistenceMetrics.STORE_TAG, storeName)
+                        .tag(PersistenceMetrics.ENTITY_TAG, entityTag)
+                        .register(registry))
+                .record(value);
+    }
+
+    @Override
+    public void increment(PersistenceMetrics.Count count, String storeName, @Nullable String entityName) {
+        String entityTag = entityName != null ? entityName : "";
+        counters.get(count)
+                .computeIfAbsent(storeName + ':' + entityTag, key -> Counter.builder(count.getMeterName())
+                        .tag(PersistenceMetrics.STORE_TAG, storeName)
+                        .tag(PersistenceMetrics.ENTITY_TAG, entityTag)
+                        .register(registry))
+                .increment();
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jmix.eclipselink.impl;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
+
+/**
+ * INTERNAL.
+ * Records the duration of stages of loading and saving entities and the number of processed entities to Micrometer
+ * meters tagged by data store and entity name.
+ * <p>
+ * Micrometer is an optional dependency. If it is not on the classpath or there is no {@code MeterRegistry} bean,
+ * {@link #startTimer()} returns 0 without reading the clock and the other methods return immediately.
+ * <p>
+ * Usage:
+ * <pre>
+ *     long start = persistenceMetrics.startTimer();
+ *     // ...
+ *     persistenceMetrics.stopTimer(PersistenceMetrics.Stage.FLUSH, storeName, entityName, start);
+ * </pre>
+ */
+@Component("eclipselink_PersistenceMetrics")
+public class PersistenceMetrics {
+
+    /**
+     * Name of the timer of all stages, distinguished by the {@code stage} tag.
+     */
+    public static final String STAGE_TIMER = "jmix.data.stage";
+
+    public static final String STAGE_TAG = "stage";
+    public static final String STORE_TAG = "store";
+    public static final String ENTITY_TAG = "entity";
+
+    protected static final String METER_REGISTRY_CLASS = "io.micrometer.core.instrument.MeterRegistry";
+
+    public enum Stage {
+        QUERY_BUILDING("query-building"),
+        QUERY_TRANSFORMATION("query-transformation"),
+        ACCESS_CONSTRAINTS("access-constraints"),
+        QUERY_CACHE_LOOKUP("query-cache-lookup"),
+        QUERY_EXECUTION("query-execution"),
+        FETCHING("fetching"),
+        DETACHING("detaching"),
+        FLUSH_PROCESSING("flush-processing"),
+        FLUSH("flush"),
+        ENTITY_CHANGED_EVENTS_COLLECTING("entity-changed-events-collecting"),
+        ENTITY_CHANGED_EVENTS_PUBLISHING("entity-changed-events-publishing");
+
+        private final String tagValue;
+
+        Stage(String tagValue) {
+            this.tagValue = tagValue;
+        }
+
+        public String getTagValue() {
+            return tagValue;
+        }
+    }
+
+    public enum Amount {
+        LOADED_ENTITIES("jmix.data.loaded.entities"),
+        SAVED_ENTITIES("jmix.data.saved.entities");
+
+        private final String meterName;
+
+        Amount(String meterName) {
+            this.meterName = meterName;
+        }
+
+        public String getMeterName() {
+            return meterName;
+        }
+    }
+
+    public enum Count {
+        LAZY_LOADS("jmix.data.lazy.loads"),
+        EXCESSIVE_LAZY_LOADS("jmix.data.lazy.loads.excessive");
+
+        private final String meterName;
+
+        Count(String meterName) {
+            this.meterName = meterName;
+        }
+
+        public String getMeterName() {
+            return meterName;
+        }
+    }
+
+    @Autowired
+    protected ApplicationContext applicationContext;
+
+    protected Recorder recorder;
+
+    @PostConstruct
+    protected void init() {
+        if (ClassUtils.isPresent(METER_REGISTRY_CLASS, getClass().getClassLoader())) {
+            recorder = MicrometerPersistenceMetricsRecorder.create(applicationContext);
+        }
+    }
+
+    /**
+     * Returns true if a meter registry is available and the metrics are recorded.
+     */
+    public boolean isEnabled() {
+        return recorder != null;
+    }
+
+    /**
+     * Returns the current time in nanoseconds to pass to {@link #stopTimer(Stage, String, String, long)},
+     * or 0 if metrics are disabled.
+     */
+    public long startTimer() {
+        return recorder != null ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the time elapsed since {@code startNanos} for the stage.
+     *
+     * @param stage      stage of the operation
+     * @param storeName  data store name
+     * @param entityName entity name or null if the operation does not relate to a particular entity
+     * @param startNanos value returned by {@link #startTimer()}
+     */
+    public void stopTimer(Stage stage, String storeName, @Nullable String entityName, long startNanos) {
+        Recorder r = recorder;
+        if (r != null) {
+            r.recordTime(stage, storeName, entityName, System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Records the time of the stage measured by the caller, e.g. summed up over iterations of a loop which also
+     * performs other stages.
+     */
+    public void recordTime(Stage stage, String storeName, @Nullable String entityName, long nanos) {
+        Recorder r = recorder;
+        if (r != null) {
+            r.recordTime(stage, storeName, entityName, nanos);
+        }
+    }
+
+    /**
+     * Records the number of entities processed by an operation.
+     */
+    public void recordAmount(Amount amount, String storeName, @Nullable String entityName, long value) {
+        Recorder r = recorder;
+        if (r != null) {
+            r.recordAmount(amount, storeName, entityName, value);
+        }
+    }
+
+    /**
+     * Increments the counter of events.
+     */
+    public void increment(Count count, String storeName, @Nullable String entityName) {
+        Recorder r = recorder;
+        if (r != null) {
+            r.increment(count, storeName, entityName);
+        }
+    }
+
+    /**
+     * Records metrics to a particular metrics library.
+     */
+    public interface Recorder {
+
+        void recordTime(Stage stage, String storeName, @Nullable String entityName, long nanos);
+
+        void recordAmount(Amount amount, String storeName, @Nullable String entityName, long value);
+
+        void increment(Count count, String storeName, @Nullable String entityName);
+    }
+}
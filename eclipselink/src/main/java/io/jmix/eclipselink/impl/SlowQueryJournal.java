@@ -0,0 +1,169 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jmix.eclipselink.impl;
+
+import io.jmix.core.Entity;
+import io.jmix.core.entity.EntityValues;
+import io.jmix.eclipselink.EclipselinkProperties;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the most recent queries executed longer than {@link EclipselinkProperties#getSlowQueryThresholdMs()}
+ * in a bounded in-memory ring buffer.
+ * <p>
+ * Queries are measured by {@link JmixEclipseLinkQuery} from the start of {@code getResultList()},
+ * {@code getSingleResult()} or {@code executeUpdate()} including transformation of the query and fetching
+ * of loaded entities. Only a share of slow queries defined by {@link EclipselinkProperties#getSlowQuerySamplingRate()}
+ * is recorded.
+ */
+@ManagedResource(description = "Keeps recent slow queries", objectName = "jmix.eclipselink:type=SlowQueryJournal")
+@Component("eclipselink_SlowQueryJournal")
+public class SlowQueryJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(SlowQueryJournal.class);
+
+    protected static final String MASK = "*****";
+
+    protected static final int MAX_VALUE_LENGTH = 200;
+
+    @Autowired
+    protected EclipselinkProperties properties;
+
+    protected List<Pattern> maskedParameterPatterns;
+
+    protected SlowQueryRecord[] records;
+    protected int nextIndex;
+    protected int count;
+
+    @PostConstruct
+    protected void init() {
+        maskedParameterPatterns = properties.getSlowQueryMaskedParameters().stream()
+                .filter(StringUtils::isNotBlank)
+                .map(Pattern::compile)
+                .collect(Collectors.toList());
+        records = new SlowQueryRecord[Math.max(properties.getSlowQueryJournalSize(), 1)];
+    }
+
+    /**
+     * Returns true if slow queries are recorded.
+     */
+    public boolean isEnabled() {
+        return properties.getSlowQueryThresholdMs() >= 0;
+    }
+
+    /**
+     * Returns the current time in nanoseconds to pass to {@link #isSlow(long)}, or 0 if the journal is disabled.
+     */
+    public long startTimer() {
+        return isEnabled() ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Returns true if the query started at {@code startNanos} exceeded the threshold and is selected by sampling.
+     */
+    public boolean isSlow(long startNanos) {
+        if (startNanos == 0 || !isEnabled()) {
+            return false;
+        }
+        long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        if (durationMs < properties.getSlowQueryThresholdMs()) {
+            return false;
+        }
+        double samplingRate = properties.getSlowQuerySamplingRate();
+        return samplingRate >= 1.0 || ThreadLocalRandom.current().nextDouble() < samplingRate;
+    }
+
+    /**
+     * Adds the record to the journal, replacing the oldest one if the journal is full.
+     */
+    public void add(SlowQueryRecord record) {
+        log.info("Slow query: {}", record);
+        synchronized (this) {
+            records[nextIndex] = record;
+            nextIndex = (nextIndex + 1) % records.length;
+            if (count < records.length) {
+                count++;
+            }
+        }
+    }
+
+    /**
+     * Returns a string representation of the parameter value to be recorded, masked if the parameter name matches
+     * one of {@link EclipselinkProperties#getSlowQueryMaskedParameters()}.
+     */
+    public String formatParameter(String name, @Nullable Object value) {
+        for (Pattern pattern : maskedParameterPatterns) {
+            if (pattern.matcher(name).matches()) {
+                return MASK;
+            }
+        }
+        if (value instanceof Entity) {
+            value = EntityValues.getId(value);
+        } else if (value instanceof Collection && ((Collection<?>) value).size() > 10) {
+            return "[" + ((Collection<?>) value).size() + " values]";
+        }
+        return StringUtils.abbreviate(String.valueOf(value), MAX_VALUE_LENGTH);
+    }
+
+    /**
+     * Returns recorded queries, from the oldest to the newest.
+     */
+    public synchronized List<SlowQueryRecord> getRecords() {
+        List<SlowQueryRecord> result = new ArrayList<>(count);
+        int start = (nextIndex - count + records.length) % records.length;
+        for (int i = 0; i < count; i++) {
+            result.add(records[(start + i) % records.length]);
+        }
+        return result;
+    }
+
+    @ManagedAttribute(description = "Number of recorded slow queries")
+    public synchronized int getRecordCount() {
+        return count;
+    }
+
+    @ManagedOperation(description = "Print recorded slow queries, from the newest to the oldest")
+    public String printRecords() {
+        List<SlowQueryRecord> list = getRecords();
+        Collections.reverse(list);
+        return list.stream()
+                .map(SlowQueryRecord::toString)
+                .collect(Collectors.joining("\n"));
+    }
+
+    @ManagedOperation(description = "Clear recorded slow queries")
+    public synchronized void clear() {
+        Arrays.fill(records, null);
+        nextIndex = 0;
+        count = 0;
+    }
+}
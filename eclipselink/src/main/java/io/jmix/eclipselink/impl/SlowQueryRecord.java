@@ -0,0 +1,148 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jmix.eclipselink.impl;
+
+import javax.annotation.Nullable;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Information about a query recorded by {@link SlowQueryJournal}.
+ */
+public class SlowQueryRecord {
+
+    private final Date timestamp;
+    private final String operation;
+    private final long durationMs;
+    private final String queryString;
+    private final String transformedQueryString;
+    private final String sqlString;
+    private final Map<String, String> parameters;
+    private final String fetchPlanName;
+    private final Map<String, String> fetchModes;
+    private final int rowCount;
+
+    public SlowQueryRecord(Date timestamp, String operation, long durationMs, String queryString,
+                           @Nullable String transformedQueryString, @Nullable String sqlString,
+                           Map<String, String> parameters, @Nullable String fetchPlanName,
+                           Map<String, String> fetchModes, int rowCount) {
+        this.timestamp = timestamp;
+        this.operation = operation;
+        this.durationMs = durationMs;
+        this.queryString = queryString;
+        this.transformedQueryString = transformedQueryString;
+        this.sqlString = sqlString;
+        this.parameters = parameters;
+        this.fetchPlanName = fetchPlanName;
+        this.fetchModes = fetchModes;
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * Returns the time when the query finished.
+     */
+    public Date getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Returns the executed method of the query: {@code getResultList}, {@code getSingleResult} or
+     * {@code executeUpdate}.
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    /**
+     * Returns the query string as it was passed to the query.
+     */
+    public String getQueryString() {
+        return queryString;
+    }
+
+    /**
+     * Returns the JPQL query string after replacing constants and macros and other transformations,
+     * or null for native queries.
+     */
+    @Nullable
+    public String getTransformedQueryString() {
+        return transformedQueryString;
+    }
+
+    /**
+     * Returns the SQL generated by EclipseLink or null if it is not available.
+     */
+    @Nullable
+    public String getSqlString() {
+        return sqlString;
+    }
+
+    /**
+     * Returns string representations of parameter values by parameter names. Values of parameters matching
+     * {@link io.jmix.eclipselink.EclipselinkProperties#getSlowQueryMaskedParameters()} are masked.
+     */
+    public Map<String, String> getParameters() {
+        return parameters;
+    }
+
+    @Nullable
+    public String getFetchPlanName() {
+        return fetchPlanName;
+    }
+
+    /**
+     * Returns fetch modes (JOIN or BATCH) of references chosen by {@link FetchGroupManager} by attribute paths.
+     */
+    public Map<String, String> getFetchModes() {
+        return fetchModes;
+    }
+
+    /**
+     * Returns the number of loaded rows or the number of updated rows for {@code executeUpdate}.
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(timestamp).append(' ').append(operation).append(' ').append(durationMs).append("ms, ")
+                .append(rowCount).append(" rows\n");
+        sb.append("  query: ").append(queryString).append('\n');
+        if (transformedQueryString != null && !transformedQueryString.equals(queryString)) {
+            sb.append("  transformed: ").append(transformedQueryString).append('\n');
+        }
+        if (sqlString != null) {
+            sb.append("  SQL: ").append(sqlString).append('\n');
+        }
+        if (!parameters.isEmpty()) {
+            sb.append("  parameters: ").append(parameters).append('\n');
+        }
+        if (fetchPlanName != null) {
+            sb.append("  fetch plan: ").append(fetchPlanName).append('\n');
+        }
+        if (!fetchModes.isEmpty()) {
+            sb.append("  fetch modes: ").append(fetchModes).append('\n');
+        }
+        return sb.toString();
+    }
+}
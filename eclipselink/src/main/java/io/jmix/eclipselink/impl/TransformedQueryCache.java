@@ -0,0 +1,174 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jmix.eclipselink.impl;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import io.jmix.eclipselink.EclipselinkProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Bounded in-memory cache of JPQL query strings transformed by {@link JmixEclipseLinkQuery}.
+ * <p>
+ * The transformation result depends on the query string with expanded constants and macros, on whether
+ * the query is paged and on the shape of the parameter values, so all of them form the {@link Key}.
+ * The main entity name and its effective replacement are derived from the query string and do not
+ * need to be a part of the key.
+ */
+@ManagedResource(description = "Caches transformed JPQL queries", objectName = "jmix.eclipselink:type=TransformedQueryCache")
+@Component("eclipselink_TransformedQueryCache")
+public class TransformedQueryCache {
+
+    @Autowired
+    protected EclipselinkProperties properties;
+
+    protected Cache<Key, TransformedQuery> cache;
+
+    @PostConstruct
+    protected void init() {
+        cache = CacheBuilder.newBuilder()
+                .maximumSize(Math.max(properties.getTransformedQueryCacheSize(), 0))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns true if the cache is enabled by {@link EclipselinkProperties#getTransformedQueryCacheSize()}.
+     */
+    public boolean isEnabled() {
+        return properties.getTransformedQueryCacheSize() > 0;
+    }
+
+    /**
+     * Returns the transformed query for the given key or null if it is not cached.
+     */
+    @Nullable
+    public TransformedQuery get(Key key) {
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * Associates the transformed query with the key.
+     */
+    public void put(Key key, TransformedQuery transformedQuery) {
+        cache.put(key, transformedQuery);
+    }
+
+    @ManagedAttribute(description = "Current number of cached queries")
+    public long getSize() {
+        return cache.size();
+    }
+
+    @ManagedAttribute(description = "Number of lookups that returned a cached query")
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    @ManagedAttribute(description = "Number of lookups that required transforming a query")
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    @ManagedOperation(description = "Discard all cached queries")
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Shape of a query parameter value which affects the transformation.
+     */
+    public enum ParamShape {
+        VALUE,
+        NULL,
+        EMPTY_COLLECTION,
+        CASE_INSENSITIVE
+    }
+
+    public static class Key {
+        protected final String queryString;
+        protected final boolean paged;
+        protected final Map<String, ParamShape> paramShapes;
+        protected final int hashCode;
+
+        public Key(String queryString, boolean paged, Map<String, ParamShape> paramShapes) {
+            this.queryString = queryString;
+            this.paged = paged;
+            this.paramShapes = ImmutableMap.copyOf(paramShapes);
+            this.hashCode = Objects.hash(queryString, paged, this.paramShapes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return hashCode == key.hashCode
+                    && paged == key.paged
+                    && queryString.equals(key.queryString)
+                    && paramShapes.equals(key.paramShapes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .addValue(queryString)
+                    .add("paged", paged)
+                    .add("paramShapes", paramShapes)
+                    .toString();
+        }
+    }
+
+    /**
+     * Result of the query transformation: the final query string and names of parameters that
+     * are not used by it anymore and must be removed from the query.
+     */
+    public static class TransformedQuery {
+        protected final String queryString;
+        protected final Set<String> removedParams;
+
+        public TransformedQuery(String queryString, Set<String> removedParams) {
+            this.queryString = queryString;
+            this.removedParams = ImmutableSet.copyOf(removedParams);
+        }
+
+        public String getQueryString() {
+            return queryString;
+        }
+
+        public Set<String> getRemovedParams() {
+            return removedParams;
+        }
+    }
+}
@@ -17,10 +17,12 @@
 package io.jmix.eclipselink.impl.dbms;
 
 import io.jmix.data.persistence.DbmsFeatures;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Nullable;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Component("mysqlDbmsFeatures")
@@ -65,6 +67,18 @@ public class MysqlDbmsFeatures implements DbmsFeatures {
         return true;
     }
 
+    @Nullable
+    @Override
+    public Long estimateRowCount(JdbcTemplate jdbcTemplate, @Nullable String selectSql, String tableName,
+                                 boolean filtered) {
+        if (filtered) {
+            return null;
+        }
+        List<Long> rows = jdbcTemplate.queryForList("select TABLE_ROWS from information_schema.TABLES " +
+                "where TABLE_SCHEMA = database() and upper(TABLE_NAME) = upper(?)", Long.class, tableName);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
     @Override
     public String getTypeAndVersion() {
         return "mysql";
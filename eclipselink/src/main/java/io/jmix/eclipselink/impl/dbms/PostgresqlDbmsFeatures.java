@@ -17,15 +17,32 @@
 package io.jmix.eclipselink.impl.dbms;
 
 import io.jmix.data.persistence.DbmsFeatures;
+import io.jmix.eclipselink.EclipselinkProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Nullable;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Component("postgresqlDbmsFeatures")
 public class PostgresqlDbmsFeatures implements DbmsFeatures {
 
+    protected static final Pattern EXPLAIN_ROWS_PATTERN = Pattern.compile("rows=(\\d+)");
+
+    @Autowired
+    protected EclipselinkProperties eclipselinkProperties;
+
     @Override
     public Map<String, String> getJpaParameters() {
         HashMap<String, String> params = new HashMap<>();
@@ -65,6 +82,64 @@ public class PostgresqlDbmsFeatures implements DbmsFeatures {
         return true;
     }
 
+    @Nullable
+    @Override
+    public Long estimateRowCount(JdbcTemplate jdbcTemplate, @Nullable String selectSql, String tableName,
+                                 boolean filtered) {
+        if (!filtered) {
+            // reltuples is -1 if the table has never been analyzed
+            List<Long> rows = jdbcTemplate.queryForList("select cast(reltuples as bigint) from pg_class " +
+                    "where oid = to_regclass(?)", Long.class, tableName);
+            return rows.isEmpty() || rows.get(0) == null || rows.get(0) < 0 ? null : rows.get(0);
+        }
+        // the planner needs parameter values, so only the SQL generated without parameters is explained
+        if (selectSql == null) {
+            return null;
+        }
+        return jdbcTemplate.execute((ConnectionCallback<Long>) connection -> explainRowCount(connection, selectSql));
+    }
+
+    /**
+     * Returns the number of rows estimated by the planner for the given SQL. A failed statement aborts the whole
+     * transaction in PostgreSQL, so inside a transaction the statement is executed under a savepoint which is rolled
+     * back on error.
+     */
+    @Nullable
+    protected Long explainRowCount(Connection connection, String selectSql) throws SQLException {
+        Savepoint savepoint = connection.getAutoCommit() ? null : connection.setSavepoint();
+        String topNode;
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("explain " + selectSql)) {
+            topNode = resultSet.next() ? resultSet.getString(1) : null;
+        } catch (SQLException | RuntimeException e) {
+            if (savepoint != null) {
+                connection.rollback(savepoint);
+            }
+            throw e;
+        }
+        if (savepoint != null) {
+            connection.releaseSavepoint(savepoint);
+        }
+        // the first line of the plan describes the top node, e.g. "Seq Scan on sales_customer c  (cost=0.00..1.05 rows=5 width=72)"
+        if (topNode != null) {
+            Matcher matcher = EXPLAIN_ROWS_PATTERN.matcher(topNode);
+            if (matcher.find()) {
+                return Long.parseLong(matcher.group(1));
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean supportsArrayParameters() {
+        return eclipselinkProperties.isArrayIdParameters();
+    }
+
+    @Override
+    public String getArrayInCondition(String path, String paramName) {
+        return path + " = FUNCTION('any', :" + paramName + ")";
+    }
+
     @Override
     public String getTypeAndVersion() {
         return "postgresql";
@@ -17,6 +17,7 @@
 package io.jmix.eclipselink.impl.dbms;
 
 import io.jmix.data.persistence.DbmsFeatures;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Nullable;
@@ -65,6 +66,17 @@ public class SqlServerDbmsFeatures implements DbmsFeatures {
         return true;
     }
 
+    @Nullable
+    @Override
+    public Long estimateRowCount(JdbcTemplate jdbcTemplate, @Nullable String selectSql, String tableName,
+                                 boolean filtered) {
+        if (filtered) {
+            return null;
+        }
+        return jdbcTemplate.queryForObject("select sum(p.rows) from sys.partitions p " +
+                "where p.object_id = object_id(?) and p.index_id in (0, 1)", Long.class, tableName);
+    }
+
     @Override
     public String getTypeAndVersion() {
         return "sqlServer";
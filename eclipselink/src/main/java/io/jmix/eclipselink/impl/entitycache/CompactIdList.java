@@ -0,0 +1,210 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jmix.eclipselink.impl.entitycache;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * INTERNAL.
+ * Immutable lists of identifiers stored in primitive arrays instead of boxed objects.
+ * <ul>
+ *     <li>{@code Long} and {@code Integer} identifiers are stored in a {@code long[]}, or as delta-encoded
+ *     varints in a {@code byte[]} if it takes at most half of the space, which is usual for sequences.</li>
+ *     <li>{@code UUID} identifiers are stored in a {@code long[]} of high and low halves.</li>
+ * </ul>
+ * Lists of other identifiers, of mixed types or containing nulls are not compacted.
+ */
+public final class CompactIdList {
+
+    private CompactIdList() {
+    }
+
+    /**
+     * Returns an immutable list with the same elements, compacted if possible.
+     */
+    @SuppressWarnings("unchecked")
+    public static List<Object> of(List<?> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Class<?> idClass = ids.get(0) != null ? ids.get(0).getClass() : null;
+        for (Object id : ids) {
+            if (id == null || id.getClass() != idClass) {
+                return Collections.unmodifiableList((List<Object>) ids);
+            }
+        }
+        if (idClass == Long.class || idClass == Integer.class) {
+            long[] values = new long[ids.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = ((Number) ids.get(i)).longValue();
+            }
+            boolean integers = idClass == Integer.class;
+            byte[] deltas = VarintDeltaList.encode(values);
+            return deltas != null && deltas.length <= values.length * 4 ?
+                    new VarintDeltaList(deltas, values.length, integers) : new LongList(values, integers);
+        }
+        if (idClass == UUID.class) {
+            return new UuidList((List<UUID>) ids);
+        }
+        return Collections.unmodifiableList((List<Object>) ids);
+    }
+
+    private static Object box(long value, boolean integers) {
+        return integers ? Integer.valueOf((int) value) : Long.valueOf(value);
+    }
+
+    static final class LongList extends AbstractList<Object> implements RandomAccess, Serializable {
+        private static final long serialVersionUID = -1598338735937185460L;
+
+        private final long[] values;
+        private final boolean integers;
+
+        LongList(long[] values, boolean integers) {
+            this.values = values;
+            this.integers = integers;
+        }
+
+        @Override
+        public Object get(int index) {
+            return box(values[index], integers);
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+    }
+
+    /**
+     * Differences between subsequent values are zigzag-encoded into variable-length bytes. The list is intended
+     * for iteration, {@link #get(int)} decodes the values from the beginning.
+     */
+    static final class VarintDeltaList extends AbstractList<Object> implements Serializable {
+        private static final long serialVersionUID = 5061862402335186431L;
+
+        private final byte[] data;
+        private final int size;
+        private final boolean integers;
+
+        VarintDeltaList(byte[] data, int size, boolean integers) {
+            this.data = data;
+            this.size = size;
+            this.integers = integers;
+        }
+
+        /**
+         * Returns encoded values or null if the encoding exceeds the size of {@code long[]}.
+         */
+        static byte[] encode(long[] values) {
+            byte[] buffer = new byte[values.length * 8];
+            int position = 0;
+            long previous = 0;
+            for (long value : values) {
+                long delta = value - previous;
+                long zigzag = (delta << 1) ^ (delta >> 63);
+                while ((zigzag & ~0x7FL) != 0) {
+                    if (position >= buffer.length) {
+                        return null;
+                    }
+                    buffer[position++] = (byte) ((zigzag & 0x7F) | 0x80);
+                    zigzag >>>= 7;
+                }
+                if (position >= buffer.length) {
+                    return null;
+                }
+                buffer[position++] = (byte) zigzag;
+                previous = value;
+            }
+            return Arrays.copyOf(buffer, position);
+        }
+
+        @Override
+        public Object get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            Iterator<Object> iterator = iterator();
+            for (int i = 0; i < index; i++) {
+                iterator.next();
+            }
+            return iterator.next();
+        }
+
+        @Override
+        public Iterator<Object> iterator() {
+            return new Iterator<Object>() {
+                private int position;
+                private int count;
+                private long value;
+
+                @Override
+                public boolean hasNext() {
+                    return count < size;
+                }
+
+                @Override
+                public Object next() {
+                    if (count >= size) {
+                        throw new NoSuchElementException();
+                    }
+                    long zigzag = 0;
+                    int shift = 0;
+                    byte b;
+                    do {
+                        b = data[position++];
+                        zigzag |= (long) (b & 0x7F) << shift;
+                        shift += 7;
+                    } while ((b & 0x80) != 0);
+                    value += (zigzag >>> 1) ^ -(zigzag & 1);
+                    count++;
+                    return box(value, integers);
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    static final class UuidList extends AbstractList<Object> implements RandomAccess, Serializable {
+        private static final long serialVersionUID = 8512040513994874093L;
+
+        private final long[] bits;
+
+        UuidList(List<UUID> ids) {
+            bits = new long[ids.size() * 2];
+            for (int i = 0; i < ids.size(); i++) {
+                UUID id = ids.get(i);
+                bits[i * 2] = id.getMostSignificantBits();
+                bits[i * 2 + 1] = id.getLeastSignificantBits();
+            }
+        }
+
+        @Override
+        public Object get(int index) {
+            return new UUID(bits[index * 2], bits[index * 2 + 1]);
+        }
+
+        @Override
+        public int size() {
+            return bits.length / 2;
+        }
+    }
+}
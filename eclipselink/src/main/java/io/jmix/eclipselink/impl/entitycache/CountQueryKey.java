@@ -0,0 +1,43 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jmix.eclipselink.impl.entitycache;
+
+import javax.persistence.Query;
+import java.util.Map;
+
+/**
+ * Key of a cached result of a count query. Count results are stored in the {@link QueryCache} together with
+ * results of entity queries, but are invalidated on any change of the related types.
+ *
+ * @see QueryCacheManager#getCountFromCache(CountQueryKey)
+ */
+public class CountQueryKey extends QueryKey {
+
+    private static final long serialVersionUID = -1739522418837361592L;
+
+    public static CountQueryKey create(String queryString, boolean softDeletion, Query jpaQuery,
+                                       Map<String, Object> additionalCriteriaParameters) {
+        return new CountQueryKey(queryString, softDeletion, getNamedParameters(jpaQuery),
+                getPositionalParameters(jpaQuery), additionalCriteriaParameters);
+    }
+
+    protected CountQueryKey(String queryString, boolean softDeletion, Map<String, Object> namedParameters,
+                            Object[] positionalParameters, Map<String, Object> additionalCriteriaParameters) {
+        super(queryString, 0, Integer.MAX_VALUE, softDeletion, true, namedParameters, positionalParameters,
+                additionalCriteriaParameters);
+    }
+}
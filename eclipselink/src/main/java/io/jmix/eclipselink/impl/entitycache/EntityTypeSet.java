@@ -0,0 +1,196 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jmix.eclipselink.impl.entitycache;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * INTERNAL.
+ * Immutable set of entity names stored as a bitset over the registry of names shared by the application.
+ * Equal sets are interned, so cached query results with the same related types share one instance.
+ * <p>
+ * Indexes of names are local to the JVM, so the set is serialized as an array of names.
+ */
+public final class EntityTypeSet extends AbstractSet<String> implements Serializable {
+
+    private static final long serialVersionUID = 2847015478925468130L;
+
+    private static final ConcurrentMap<String, Integer> indexes = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[0];
+
+    private static final ConcurrentMap<EntityTypeSet, EntityTypeSet> internedSets = new ConcurrentHashMap<>();
+
+    private final long[] bits;
+    private final int size;
+    private final int hashCode;
+
+    private EntityTypeSet(long[] bits) {
+        this.bits = bits;
+        int size = 0;
+        int hashCode = 0;
+        String[] currentNames = names;
+        for (int i = nextIndex(0); i >= 0; i = nextIndex(i + 1)) {
+            size++;
+            hashCode += currentNames[i].hashCode();
+        }
+        this.size = size;
+        this.hashCode = hashCode;
+    }
+
+    /**
+     * Returns the interned set of the given names.
+     */
+    public static EntityTypeSet of(Collection<String> typeNames) {
+        if (typeNames instanceof EntityTypeSet) {
+            return (EntityTypeSet) typeNames;
+        }
+        long[] bits = new long[0];
+        for (String typeName : typeNames) {
+            int index = getIndex(typeName);
+            int word = index >>> 6;
+            if (word >= bits.length) {
+                bits = Arrays.copyOf(bits, word + 1);
+            }
+            bits[word] |= 1L << index;
+        }
+        EntityTypeSet set = new EntityTypeSet(bits);
+        EntityTypeSet interned = internedSets.putIfAbsent(set, set);
+        return interned != null ? interned : set;
+    }
+
+    private static int getIndex(String typeName) {
+        Integer index = indexes.get(typeName);
+        if (index != null) {
+            return index;
+        }
+        synchronized (EntityTypeSet.class) {
+            index = indexes.get(typeName);
+            if (index == null) {
+                String[] newNames = Arrays.copyOf(names, names.length + 1);
+                newNames[names.length] = typeName;
+                // publish the name before its index
+                names = newNames;
+                index = names.length - 1;
+                indexes.put(typeName, index);
+            }
+            return index;
+        }
+    }
+
+    private int nextIndex(int fromIndex) {
+        int word = fromIndex >>> 6;
+        if (word >= bits.length) {
+            return -1;
+        }
+        long value = bits[word] & (-1L << fromIndex);
+        while (true) {
+            if (value != 0) {
+                return word * 64 + Long.numberOfTrailingZeros(value);
+            }
+            if (++word == bits.length) {
+                return -1;
+            }
+            value = bits[word];
+        }
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        Integer index = o instanceof String ? indexes.get(o) : null;
+        if (index == null) {
+            return false;
+        }
+        int word = index >>> 6;
+        return word < bits.length && (bits[word] & (1L << index)) != 0;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        String[] currentNames = names;
+        return new Iterator<String>() {
+            private int next = nextIndex(0);
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public String next() {
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+                String name = currentNames[next];
+                next = nextIndex(next + 1);
+                return name;
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (o instanceof EntityTypeSet) {
+            return hashCode == o.hashCode() && equalBits(((EntityTypeSet) o).bits);
+        }
+        return super.equals(o);
+    }
+
+    private boolean equalBits(long[] other) {
+        int length = Math.max(bits.length, other.length);
+        for (int i = 0; i < length; i++) {
+            if ((i < bits.length ? bits[i] : 0) != (i < other.length ? other[i] : 0)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+        return new SerializedForm(toArray(new String[0]));
+    }
+
+    private static class SerializedForm implements Serializable {
+        private static final long serialVersionUID = -4978520513245371734L;
+
+        private final String[] names;
+
+        SerializedForm(String[] names) {
+            this.names = names;
+        }
+
+        private Object readResolve() throws ObjectStreamException {
+            return of(Arrays.asList(names));
+        }
+    }
+}
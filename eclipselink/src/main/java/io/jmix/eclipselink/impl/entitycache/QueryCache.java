@@ -18,6 +18,7 @@ package io.jmix.eclipselink.impl.entitycache;
 
 
 import java.util.Set;
+import java.util.function.Predicate;
 
 /**
  * Cache that contains queries and a collection of object identifiers
@@ -34,6 +35,13 @@ public interface QueryCache {
      */
     void put(QueryKey queryKey, QueryResult queryResult);
 
+    /**
+     * Discards the cached result of {@code queryKey}. Used to remove stale results, so by default the result
+     * is left to be replaced by the next {@link #put(QueryKey, QueryResult)}.
+     */
+    default void evict(QueryKey queryKey) {
+    }
+
     /**
      * Discards cached query results for metaClass name {@code typeName}.
      */
@@ -44,6 +52,23 @@ public interface QueryCache {
      */
     void invalidate(Set<String> typeNames);
 
+    /**
+     * Discards cached query results for metaClass name {@code typeName} which keys satisfy {@code predicate}.
+     * By default, all results for the type are discarded.
+     */
+    default void invalidate(String typeName, Predicate<QueryKey> predicate) {
+        invalidate(typeName);
+    }
+
+    /**
+     * Discards cached results of count queries for metaClass names {@code typeNames}.
+     *
+     * @see CountQueryKey
+     */
+    default void invalidateCounts(Set<String> typeNames) {
+        invalidate(typeNames);
+    }
+
     /**
      * Discards all queries results in the cache.
      */
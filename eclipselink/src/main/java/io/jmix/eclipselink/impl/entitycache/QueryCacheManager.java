@@ -16,25 +16,39 @@
 
 package io.jmix.eclipselink.impl.entitycache;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import io.jmix.core.Entity;
+import io.jmix.core.EntityStates;
+import io.jmix.core.ExtendedEntities;
 import io.jmix.core.FetchPlan;
 import io.jmix.core.Metadata;
 import io.jmix.core.MetadataTools;
 import io.jmix.core.entity.EntityValues;
+import io.jmix.core.event.AttributeChanges;
+import io.jmix.core.event.EntityChangedEvent;
 import io.jmix.core.metamodel.model.MetaClass;
 import io.jmix.core.metamodel.model.MetadataObject;
 import io.jmix.data.PersistenceHints;
 import io.jmix.data.StoreAwareLocator;
+import io.jmix.data.impl.EntityChangedEventInfo;
+import io.jmix.data.impl.EntityFetcher;
 import io.jmix.eclipselink.EclipselinkProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.annotation.Nullable;
 import javax.persistence.EntityManager;
 import javax.persistence.MappedSuperclass;
 import javax.persistence.TypedQuery;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 @Component("eclipselink_QueryCacheManager")
@@ -50,9 +64,24 @@ public class QueryCacheManager {
     protected MetadataTools metadataTools;
     @Autowired
     protected StoreAwareLocator storeAwareLocator;
+    @Autowired
+    protected EntityStates entityStates;
+    @Autowired
+    protected ExtendedEntities extendedEntities;
+    @Autowired
+    protected EntityFetcher entityFetcher;
 
     protected static final Logger log = LoggerFactory.getLogger(QueryCacheManager.class);
 
+    protected final ConcurrentMap<String, AtomicLong> generations = new ConcurrentHashMap<>();
+    protected final ConcurrentMap<String, AtomicLong> countGenerations = new ConcurrentHashMap<>();
+
+    protected static final int PREDICATE_CACHE_SIZE = 1000;
+
+    protected final Cache<String, Optional<QueryPredicate>> predicates = CacheBuilder.newBuilder()
+            .maximumSize(PREDICATE_CACHE_SIZE)
+            .build();
+
     /**
      * Returns true if query cache enabled
      */
@@ -60,6 +89,22 @@ public class QueryCacheManager {
         return properties.isQueryCacheEnabled();
     }
 
+    /**
+     * Returns true if the query cache is invalidated by generations of entities,
+     * see {@link EclipselinkProperties#isQueryCacheGenerationInvalidation()}
+     */
+    public boolean isGenerationInvalidation() {
+        return properties.isQueryCacheGenerationInvalidation();
+    }
+
+    /**
+     * Returns true if the query cache is invalidated by evaluating conditions of cached queries against changed
+     * instances, see {@link EclipselinkProperties#isQueryCachePreciseInvalidation()}
+     */
+    public boolean isPreciseInvalidation() {
+        return isEnabled() && properties.isQueryCachePreciseInvalidation() && !isGenerationInvalidation();
+    }
+
     /**
      * Get query results from query cache by specified {@code queryKey}
      */
@@ -67,24 +112,65 @@ public class QueryCacheManager {
     public <T> List<T> getResultListFromCache(QueryKey queryKey, List<FetchPlan> fetchPlans) {
         log.debug("Looking for query in cache: {}", queryKey.printDescription());
         List<T> resultList = null;
-        QueryResult queryResult = queryCache.get(queryKey);
+        QueryResult queryResult = getValidResult(queryKey);
         if (queryResult != null) {
             MetaClass metaClass = metadata.getClass(queryResult.getType());
-            String storeName = metaClass.getStore().getName();
-            EntityManager em = storeAwareLocator.getEntityManager(storeName);
-            resultList = new ArrayList<>(queryResult.getResult().size());
             if (!metadataTools.isCacheable(metaClass)) {
                 log.warn("Using cacheable query without entity cache for {}", queryResult.getType());
             }
-            for (Object id : queryResult.getResult()) {
-                resultList.add(em.find(metaClass.getJavaClass(), id, PersistenceHints.builder().withFetchPlans(fetchPlans).build()));
-            }
+            resultList = findByIds(metaClass, queryResult.getResult(), fetchPlans);
         } else {
             log.debug("Query results are not found in cache: {}", queryKey.printDescription());
         }
         return resultList;
     }
 
+    /**
+     * Returns instances with the given IDs in the same order. Instances which are in the entity cache and are loaded
+     * with the fetch plans are found one by one, the rest are loaded by {@link EntityFetcher#findByIds}.
+     * The list contains null for IDs of instances which are not found.
+     */
+    @SuppressWarnings("unchecked")
+    protected <T> List<T> findByIds(MetaClass metaClass, List<?> ids, List<FetchPlan> fetchPlans) {
+        EntityManager em = storeAwareLocator.getEntityManager(metaClass.getStore().getName());
+        Class<?> javaClass = metaClass.getJavaClass();
+
+        Map<Object, Object> entitiesById = new HashMap<>(ids.size());
+        List<Object> notFoundIds = new ArrayList<>();
+        javax.persistence.Cache entityCache = em.getEntityManagerFactory().getCache();
+        for (Object id : ids) {
+            if (entitiesById.containsKey(id)) {
+                continue;
+            }
+            Object entity = entityCache.contains(javaClass, id) ? em.find(javaClass, id) : null;
+            if (entity != null && isLoadedWithFetchPlans(entity, fetchPlans)) {
+                entitiesById.put(id, entity);
+            } else {
+                entitiesById.put(id, null);
+                notFoundIds.add(id);
+            }
+        }
+
+        if (!notFoundIds.isEmpty()) {
+            entitiesById.putAll(entityFetcher.findByIds(em, metaClass, notFoundIds, fetchPlans));
+        }
+
+        List<T> resultList = new ArrayList<>(ids.size());
+        for (Object id : ids) {
+            resultList.add((T) entitiesById.get(id));
+        }
+        return resultList;
+    }
+
+    protected boolean isLoadedWithFetchPlans(Object entity, List<FetchPlan> fetchPlans) {
+        for (FetchPlan fetchPlan : fetchPlans) {
+            if (!entityStates.isLoadedWithFetchPlan(entity, fetchPlan)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Get single query results from query cache by specified {@code queryKey}
      * If query is cached and no results found exception is thrown
@@ -92,7 +178,7 @@ public class QueryCacheManager {
     @SuppressWarnings("unchecked")
     public <T> T getSingleResultFromCache(QueryKey queryKey, List<FetchPlan> fetchPlans) {
         log.debug("Looking for query in cache: {}", queryKey.printDescription());
-        QueryResult queryResult = queryCache.get(queryKey);
+        QueryResult queryResult = getValidResult(queryKey);
         if (queryResult != null) {
             MetaClass metaClass = metadata.getClass(queryResult.getType());
             if (!metadataTools.isCacheable(metaClass)) {
@@ -114,24 +200,53 @@ public class QueryCacheManager {
     }
 
 
+    /**
+     * Returns current generations of the query dependent types and their descendants, or null if the query cache
+     * is not invalidated by generations. Should be called before the query is executed and passed to
+     * {@code putResultToCache()} or {@code putCountToCache()}, so that the result is stale if a transaction
+     * changing the related types commits while the query is executed.
+     *
+     * @param relatedTypes query dependent types (metaClass names)
+     * @param count        whether the result is a count
+     */
+    @Nullable
+    public Map<String, Long> getCurrentGenerations(@Nullable Set<String> relatedTypes, boolean count) {
+        return getGenerations(getDescendants(relatedTypes), count);
+    }
+
+    /**
+     * Put query results into query cache for specified query {@code queryKey}.
+     * Results are extracted as identifiers from {@code resultList}
+     *
+     * @param type         - result entity type (metaClass name)
+     * @param relatedTypes - query dependent types (metaClass names). It's a list of entity types used in query
+     */
+    public void putResultToCache(QueryKey queryKey, List resultList, String type, Set<String> relatedTypes) {
+        putResultToCache(queryKey, resultList, type, relatedTypes, getCurrentGenerations(relatedTypes, false));
+    }
+
     /**
      * Put query results into query cache for specified query {@code queryKey}.
      * Results are extracted as identifiers from {@code resultList}
      *
      * @param type         - result entity type (metaClass name)
      * @param relatedTypes - query dependent types (metaClass names). It's a list of entity types used in query
+     * @param generations  - generations of the related types taken before the query was executed,
+     *                     see {@link #getCurrentGenerations(Set, boolean)}
      */
     @SuppressWarnings("unchecked")
-    public void putResultToCache(QueryKey queryKey, List resultList, String type, Set<String> relatedTypes) {
+    public void putResultToCache(QueryKey queryKey, List resultList, String type, Set<String> relatedTypes,
+                                 @Nullable Map<String, Long> generations) {
         QueryResult queryResult;
+        Set<String> descendants = getDescendants(relatedTypes);
         if (resultList.size() > 0) {
             List idList = (List) resultList.stream()
                     .filter(item -> item instanceof Entity)
                     .map(item -> EntityValues.getId(((Entity) item)))
                     .collect(Collectors.toList());
-            queryResult = new QueryResult(idList, type, getDescendants(relatedTypes));
+            queryResult = new QueryResult(idList, type, descendants, null, generations);
         } else {
-            queryResult = new QueryResult(Collections.emptyList(), type, getDescendants(relatedTypes));
+            queryResult = new QueryResult(Collections.emptyList(), type, descendants, null, generations);
         }
         log.debug("Put results into cache for query: {}, relatedTypes: {}", queryKey.printDescription(), relatedTypes);
         queryCache.put(queryKey, queryResult);
@@ -145,18 +260,80 @@ public class QueryCacheManager {
      * @param relatedTypes - query dependent types (metaClass names). It's a list of entity types used in query
      * @param exception    - store exception in the query cache if {@link TypedQuery#getSingleResult()} throws exception
      */
-    @SuppressWarnings("unchecked")
     public <T> void putResultToCache(QueryKey queryKey, T result, String type, Set<String> relatedTypes, RuntimeException exception) {
+        putResultToCache(queryKey, result, type, relatedTypes, exception, getCurrentGenerations(relatedTypes, false));
+    }
+
+    /**
+     * Put query results into query cache for specified query {@code queryKey}.
+     * Results are extracted as identifiers from entity {@code result}
+     *
+     * @param type         - result entity type (metaClass name)
+     * @param relatedTypes - query dependent types (metaClass names). It's a list of entity types used in query
+     * @param exception    - store exception in the query cache if {@link TypedQuery#getSingleResult()} throws exception
+     * @param generations  - generations of the related types taken before the query was executed,
+     *                     see {@link #getCurrentGenerations(Set, boolean)}
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void putResultToCache(QueryKey queryKey, T result, String type, Set<String> relatedTypes,
+                                     RuntimeException exception, @Nullable Map<String, Long> generations) {
         QueryResult queryResult;
         if (exception == null) {
-            queryResult = new QueryResult(Collections.singletonList(EntityValues.getId(((Entity) result))), type, relatedTypes);
+            queryResult = new QueryResult(Collections.singletonList(EntityValues.getId(((Entity) result))), type,
+                    relatedTypes, null, generations);
         } else {
-            queryResult = new QueryResult(Collections.emptyList(), type, relatedTypes, exception);
+            queryResult = new QueryResult(Collections.emptyList(), type, relatedTypes, exception, generations);
         }
         log.debug("Put results into cache for query: {}, relatedTypes: {}", queryKey.printDescription(), relatedTypes);
         queryCache.put(queryKey, queryResult);
     }
 
+    /**
+     * Returns true if results of count queries are cached, see {@link EclipselinkProperties#isCountCacheEnabled()}
+     */
+    public boolean isCountCacheEnabled() {
+        return isEnabled() && properties.isCountCacheEnabled();
+    }
+
+    /**
+     * Get result of a count query from query cache by specified {@code queryKey}
+     *
+     * @return number of rows or null if the result is not cached
+     */
+    @Nullable
+    public Long getCountFromCache(CountQueryKey queryKey) {
+        QueryResult queryResult = getValidResult(queryKey);
+        if (queryResult != null) {
+            log.debug("Count is found in cache: {}", queryKey.printDescription());
+            return (Long) queryResult.getResult().get(0);
+        }
+        return null;
+    }
+
+    /**
+     * Put result of a count query into query cache for specified query {@code queryKey}.
+     *
+     * @param relatedTypes - query dependent types (metaClass names). It's a list of entity types used in query
+     */
+    public void putCountToCache(CountQueryKey queryKey, long count, String type, Set<String> relatedTypes) {
+        putCountToCache(queryKey, count, type, relatedTypes, getCurrentGenerations(relatedTypes, true));
+    }
+
+    /**
+     * Put result of a count query into query cache for specified query {@code queryKey}.
+     *
+     * @param relatedTypes - query dependent types (metaClass names). It's a list of entity types used in query
+     * @param generations  - generations of the related types taken before the query was executed,
+     *                     see {@link #getCurrentGenerations(Set, boolean)}
+     */
+    public void putCountToCache(CountQueryKey queryKey, long count, String type, Set<String> relatedTypes,
+                                @Nullable Map<String, Long> generations) {
+        log.debug("Put count into cache for query: {}, relatedTypes: {}", queryKey.printDescription(), relatedTypes);
+        Set<String> descendants = getDescendants(relatedTypes);
+        queryCache.put(queryKey, new QueryResult(Collections.singletonList(count), type, descendants, null,
+                generations));
+    }
+
     /**
      * Discards cached query results for java class (associated with metaClass) {@code typeClass}
      */
@@ -172,7 +349,11 @@ public class QueryCacheManager {
      */
     public void invalidate(String typeName) {
         if (isEnabled()) {
-            queryCache.invalidate(typeName);
+            if (isGenerationInvalidation()) {
+                incrementGeneration(generations, typeName);
+            } else {
+                queryCache.invalidate(typeName);
+            }
         }
     }
 
@@ -182,17 +363,225 @@ public class QueryCacheManager {
     public void invalidate(Set<String> typeNames) {
         if (isEnabled()) {
             if (typeNames != null && typeNames.size() > 0) {
-                queryCache.invalidate(typeNames);
+                if (isGenerationInvalidation()) {
+                    typeNames.forEach(typeName -> incrementGeneration(generations, typeName));
+                } else {
+                    queryCache.invalidate(typeNames);
+                }
             }
         }
     }
 
+    /**
+     * Discards cached results of count queries for metaClass names {@code typeNames}
+     */
+    public void invalidateCounts(Set<String> typeNames) {
+        if (isCountCacheEnabled()) {
+            if (typeNames != null && typeNames.size() > 0) {
+                if (isGenerationInvalidation()) {
+                    typeNames.forEach(typeName -> incrementGeneration(countGenerations, typeName));
+                } else {
+                    queryCache.invalidateCounts(typeNames);
+                }
+            }
+        }
+    }
+
+    /**
+     * Discards cached query results affected by changes of the current transaction. Results of simple queries
+     * selecting a changed type are discarded only if a changed instance satisfies the query conditions before or
+     * after the change, results of other queries are discarded by type. The changes are kept until the end of the
+     * transaction to repeat the invalidation when the committed changes are merged, see {@link #invalidateCommitted(Set)}.
+     *
+     * @param typeNames metaClass names of instances with unknown changes, results for them are discarded by type
+     * @param changes   changes of instances collected for {@link EntityChangedEvent}s
+     */
+    public void invalidate(Set<String> typeNames, Collection<EntityChangedEventInfo> changes) {
+        if (!isPreciseInvalidation()) {
+            Set<String> allTypeNames = new HashSet<>(typeNames);
+            for (EntityChangedEventInfo info : changes) {
+                allTypeNames.add(metadata.getClass(info.getEntity()).getName());
+            }
+            invalidate(allTypeNames);
+            return;
+        }
+        invalidate(typeNames);
+        invalidatePrecisely(changes);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionChanges transactionChanges = (TransactionChanges) TransactionSynchronizationManager.getResource(this);
+            if (transactionChanges == null) {
+                transactionChanges = new TransactionChanges();
+                TransactionSynchronizationManager.bindResource(this, transactionChanges);
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        TransactionSynchronizationManager.unbindResourceIfPossible(QueryCacheManager.this);
+                    }
+                });
+            }
+            transactionChanges.changes.addAll(changes);
+            for (EntityChangedEventInfo info : changes) {
+                transactionChanges.preciseTypes.addAll(getNames(metadata.getClass(info.getEntity())));
+            }
+            for (String typeName : typeNames) {
+                transactionChanges.preciseTypes.removeAll(getNames(metadata.getClass(typeName)));
+            }
+        }
+    }
+
+    /**
+     * Discards cached query results for metaClass names {@code typeNames} changed by the transaction which is being
+     * committed by the current thread. If the changes of the transaction are passed to
+     * {@link #invalidate(Set, Collection)}, the results are invalidated by them again to discard results which
+     * could be loaded by other transactions before the commit.
+     */
+    public void invalidateCommitted(Set<String> typeNames) {
+        if (!isEnabled()) {
+            return;
+        }
+        TransactionChanges transactionChanges = isPreciseInvalidation()
+                && TransactionSynchronizationManager.isSynchronizationActive() ?
+                (TransactionChanges) TransactionSynchronizationManager.getResource(this) : null;
+        if (transactionChanges == null) {
+            invalidate(typeNames);
+            return;
+        }
+        Set<String> otherTypeNames = new HashSet<>();
+        for (String typeName : typeNames) {
+            if (!transactionChanges.preciseTypes.contains(typeName)) {
+                otherTypeNames.add(typeName);
+            }
+        }
+        invalidate(otherTypeNames);
+        invalidatePrecisely(transactionChanges.changes);
+    }
+
     public void invalidateAll() {
         if (isEnabled()) {
             queryCache.invalidateAll();
         }
     }
 
+    /**
+     * Returns the cached result or null if it is not found or is stale by generations of the related types.
+     */
+    @Nullable
+    protected QueryResult getValidResult(QueryKey queryKey) {
+        QueryResult queryResult = queryCache.get(queryKey);
+        if (queryResult != null && isGenerationInvalidation() && isStale(queryKey, queryResult)) {
+            log.debug("Query result in cache is stale: {}", queryKey.printDescription());
+            queryCache.evict(queryKey);
+            return null;
+        }
+        return queryResult;
+    }
+
+    protected boolean isStale(QueryKey queryKey, QueryResult queryResult) {
+        Map<String, Long> resultGenerations = queryResult.getGenerations();
+        if (resultGenerations == null) {
+            return true;
+        }
+        boolean count = queryKey instanceof CountQueryKey;
+        for (Map.Entry<String, Long> entry : resultGenerations.entrySet()) {
+            if (getGeneration(entry.getKey(), count) != entry.getValue()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns current generations of the types to store in a result, or null if the query cache is not invalidated
+     * by generations.
+     *
+     * @param count whether the result is a count, which is also invalidated by {@link #invalidateCounts(Set)}
+     */
+    @Nullable
+    protected Map<String, Long> getGenerations(@Nullable Set<String> relatedTypes, boolean count) {
+        if (!isGenerationInvalidation()) {
+            return null;
+        }
+        if (relatedTypes == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, Long> result = new HashMap<>(relatedTypes.size());
+        for (String typeName : relatedTypes) {
+            result.put(typeName, getGeneration(typeName, count));
+        }
+        return result;
+    }
+
+    protected long getGeneration(String typeName, boolean count) {
+        long generation = getCounterValue(generations, typeName);
+        // both counters only grow, so the sum changes whenever either of them changes
+        return count ? generation + getCounterValue(countGenerations, typeName) : generation;
+    }
+
+    protected long getCounterValue(Map<String, AtomicLong> counters, String typeName) {
+        AtomicLong counter = counters.get(typeName);
+        return counter == null ? 0 : counter.get();
+    }
+
+    protected void incrementGeneration(ConcurrentMap<String, AtomicLong> counters, String typeName) {
+        counters.computeIfAbsent(typeName, k -> new AtomicLong()).incrementAndGet();
+    }
+
+    protected List<String> getNames(MetaClass metaClass) {
+        return Arrays.asList(metaClass.getName(), extendedEntities.getOriginalOrThisMetaClass(metaClass).getName());
+    }
+
+    protected void invalidatePrecisely(Collection<EntityChangedEventInfo> changes) {
+        Map<MetaClass, List<EntityChangedEventInfo>> changesByClass = new HashMap<>();
+        for (EntityChangedEventInfo info : changes) {
+            changesByClass.computeIfAbsent(metadata.getClass(info.getEntity()), k -> new ArrayList<>()).add(info);
+        }
+        changesByClass.forEach((metaClass, classChanges) -> {
+            log.debug("Invalidate cache for type {} by {} changed instances", metaClass.getName(), classChanges.size());
+            queryCache.invalidate(metaClass.getName(), queryKey -> isAffected(queryKey, metaClass, classChanges));
+        });
+    }
+
+    /**
+     * Returns true if any of the changed instances of {@code metaClass} can be in the result of the query before
+     * or after the change.
+     */
+    protected boolean isAffected(QueryKey queryKey, MetaClass metaClass, List<EntityChangedEventInfo> changes) {
+        QueryPredicate predicate = predicates.asMap()
+                .computeIfAbsent(queryKey.queryString, queryString -> Optional.ofNullable(QueryPredicate.parse(queryString)))
+                .orElse(null);
+        if (predicate == null) {
+            return true;
+        }
+        MetaClass queryClass = metadata.findClass(predicate.getEntityName());
+        if (queryClass == null || !(metaClass.equals(queryClass) || metaClass.getAncestors().contains(queryClass))) {
+            return true;
+        }
+        for (EntityChangedEventInfo info : changes) {
+            Object entity = info.getEntity();
+            if (info.getType() != EntityChangedEvent.Type.CREATED
+                    && predicate.canMatch(metaClass, attribute -> getOldValue(entity, info.getChanges(), attribute), queryKey)) {
+                return true;
+            }
+            if (info.getType() != EntityChangedEvent.Type.DELETED
+                    && predicate.canMatch(metaClass, attribute -> getNewValue(entity, attribute), queryKey)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Nullable
+    protected Object getOldValue(Object entity, AttributeChanges changes, String attribute) {
+        return changes.isChanged(attribute) ? changes.getOldValue(attribute) : getNewValue(entity, attribute);
+    }
+
+    @Nullable
+    protected Object getNewValue(Object entity, String attribute) {
+        // the value is not loaded lazily during the commit and cannot be loaded in a detached instance
+        return entityStates.isLoaded(entity, attribute) ? EntityValues.getValue(entity, attribute) : QueryPredicate.UNKNOWN;
+    }
+
     protected Set<String> getDescendants(Set<String> relatedTypes) {
         if (relatedTypes == null) return null;
         Set<String> newRelatedTypes = new HashSet<>();
@@ -208,4 +597,10 @@ public class QueryCacheManager {
         });
         return newRelatedTypes;
     }
+
+    protected static class TransactionChanges {
+        protected final List<EntityChangedEventInfo> changes = new ArrayList<>();
+        // names of types, including original names of extended entities, which changes are known
+        protected final Set<String> preciseTypes = new HashSet<>();
+    }
 }
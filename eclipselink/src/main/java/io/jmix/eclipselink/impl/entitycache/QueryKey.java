@@ -50,7 +50,7 @@ public class QueryKey implements Serializable {
                 getNamedParameters(jpaQuery), getPositionalParameters(jpaQuery), additionalCriteriaParameters);
     }
 
-    private static Map<String, Object> getNamedParameters(Query jpaQuery) {
+    protected static Map<String, Object> getNamedParameters(Query jpaQuery) {
         if (jpaQuery.getParameters() == null) return null;
 
         List<String> names = jpaQuery.getParameters().stream()
@@ -68,7 +68,7 @@ public class QueryKey implements Serializable {
                         LinkedHashMap::new));
     }
 
-    private static Object[] getPositionalParameters(Query jpaQuery) {
+    protected static Object[] getPositionalParameters(Query jpaQuery) {
         if (jpaQuery.getParameters() == null) return null;
 
         int max = 0;
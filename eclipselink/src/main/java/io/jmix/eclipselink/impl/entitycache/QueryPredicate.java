@@ -0,0 +1,380 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jmix.eclipselink.impl.entitycache;
+
+import io.jmix.core.metamodel.datatype.impl.EnumClass;
+import io.jmix.core.metamodel.model.MetaClass;
+import io.jmix.core.metamodel.model.MetaProperty;
+
+import javax.annotation.Nullable;
+import java.math.BigInteger;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * INTERNAL.
+ * Conditions of a cached query selecting a single entity, which are checked against attribute values of a changed
+ * instance to find out whether the instance can be in the query result.
+ * <p>
+ * Only top-level conjuncts of the WHERE clause comparing a local attribute of the query entity with a parameter or
+ * a literal are checked. Other conjuncts are considered satisfied, so the check can give false positives but never
+ * false negatives. Values are compared only if the database is guaranteed to give the same result: integer numbers,
+ * booleans, UUIDs and enums are compared exactly, strings are considered equal if they differ only in case, accents
+ * and trailing spaces because of possible collations of the database. Other values, like dates and decimals which
+ * may be rounded by the database, are considered satisfying any comparison.
+ */
+public class QueryPredicate {
+
+    /**
+     * Value of an attribute or an operand which is unknown and satisfies any condition.
+     */
+    public static final Object UNKNOWN = new Object();
+
+    protected static final Pattern QUERY_PATTERN = Pattern.compile(
+            "^\\s*select\\s+(?:distinct\\s+)?(?:count\\s*\\(\\s*(?:distinct\\s+)?)?([\\w$]+)\\s*\\)?" +
+                    "\\s+from\\s+([\\w$]+)\\s+(?:as\\s+)?([\\w$]+)" +
+                    "(?:\\s+where\\s+(.+?))?(?:\\s+order\\s+by\\s+[^()']+)?\\s*$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    protected static final String OPERAND = "(:[\\w$]+|\\?\\d+|'(?:[^']|'')*'|-?\\d+|true|false)";
+
+    protected static final Pattern COMPARISON_PATTERN = Pattern.compile(
+            "^([\\w$]+)\\.([\\w$]+)\\s*(=|<>|!=|<=|>=|<|>)\\s*" + OPERAND + "$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    protected static final Pattern NULL_CHECK_PATTERN = Pattern.compile(
+            "^([\\w$]+)\\.([\\w$]+)\\s+is\\s+(not\\s+)?null$",
+            Pattern.CASE_INSENSITIVE);
+
+    protected static final Pattern IN_PATTERN = Pattern.compile(
+            "^([\\w$]+)\\.([\\w$]+)\\s+in\\s*(?:\\(\\s*(:[\\w$]+)\\s*\\)|(:[\\w$]+))$",
+            Pattern.CASE_INSENSITIVE);
+
+    protected enum Operator {
+        EQ, NE, LT, LE, GT, GE, IN, IS_NULL, IS_NOT_NULL
+    }
+
+    protected final String entityName;
+    protected final List<Condition> conditions;
+
+    protected QueryPredicate(String entityName, List<Condition> conditions) {
+        this.entityName = entityName;
+        this.conditions = conditions;
+    }
+
+    /**
+     * Parses the query string of a {@link QueryKey}.
+     *
+     * @return predicate or null if the query is not a select of a single entity
+     */
+    @Nullable
+    public static QueryPredicate parse(String queryString) {
+        Matcher matcher = QUERY_PATTERN.matcher(queryString);
+        if (!matcher.matches()) {
+            return null;
+        }
+        String alias = matcher.group(3);
+        if (!alias.equals(matcher.group(1))) {
+            return null;
+        }
+        List<Condition> conditions = new ArrayList<>();
+        String where = matcher.group(4);
+        if (where != null) {
+            List<String> conjuncts = splitConjunction(where);
+            if (conjuncts == null) {
+                return null;
+            }
+            for (String conjunct : conjuncts) {
+                Condition condition = parseCondition(conjunct, alias);
+                if (condition != null) {
+                    conditions.add(condition);
+                }
+            }
+        }
+        return new QueryPredicate(matcher.group(2), conditions);
+    }
+
+    /**
+     * Splits the WHERE clause by top-level {@code and}.
+     *
+     * @return conjuncts or null if the clause has unbalanced parentheses or quotes
+     */
+    @Nullable
+    protected static List<String> splitConjunction(String where) {
+        List<String> conjuncts = new ArrayList<>();
+        int depth = 0;
+        boolean quoted = false;
+        boolean between = false;
+        int start = 0;
+        for (int i = 0; i < where.length(); i++) {
+            char c = where.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (quoted) {
+                continue;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                if (--depth < 0) {
+                    return null;
+                }
+            } else if (depth == 0) {
+                if (isWordAt(where, i, "or")) {
+                    // a disjunction cannot be checked by its parts, so the whole clause is considered satisfied
+                    return Collections.emptyList();
+                } else if (isWordAt(where, i, "between")) {
+                    between = true;
+                } else if (isWordAt(where, i, "and")) {
+                    if (between) {
+                        // the conjunct is not split by "and" of "between ... and ..."
+                        between = false;
+                    } else {
+                        conjuncts.add(where.substring(start, i).trim());
+                        start = i + 3;
+                    }
+                }
+            }
+        }
+        if (depth != 0 || quoted) {
+            return null;
+        }
+        conjuncts.add(where.substring(start).trim());
+        return conjuncts;
+    }
+
+    protected static boolean isWordAt(String s, int index, String word) {
+        int end = index + word.length();
+        return s.regionMatches(true, index, word, 0, word.length())
+                && (index == 0 || isDelimiter(s.charAt(index - 1)))
+                && (end == s.length() || isDelimiter(s.charAt(end)));
+    }
+
+    protected static boolean isDelimiter(char c) {
+        return Character.isWhitespace(c) || c == '(' || c == ')';
+    }
+
+    @Nullable
+    protected static Condition parseCondition(String conjunct, String alias) {
+        Matcher matcher = COMPARISON_PATTERN.matcher(conjunct);
+        if (matcher.matches() && matcher.group(1).equals(alias)) {
+            Operator operator;
+            switch (matcher.group(3)) {
+                case "=":
+                    operator = Operator.EQ;
+                    break;
+                case "<>":
+                case "!=":
+                    operator = Operator.NE;
+                    break;
+                case "<":
+                    operator = Operator.LT;
+                    break;
+                case "<=":
+                    operator = Operator.LE;
+                    break;
+                case ">":
+                    operator = Operator.GT;
+                    break;
+                default:
+                    operator = Operator.GE;
+            }
+            return new Condition(matcher.group(2), operator, matcher.group(4));
+        }
+        matcher = NULL_CHECK_PATTERN.matcher(conjunct);
+        if (matcher.matches() && matcher.group(1).equals(alias)) {
+            return new Condition(matcher.group(2), matcher.group(3) == null ? Operator.IS_NULL : Operator.IS_NOT_NULL, null);
+        }
+        matcher = IN_PATTERN.matcher(conjunct);
+        if (matcher.matches() && matcher.group(1).equals(alias)) {
+            return new Condition(matcher.group(2), Operator.IN,
+                    matcher.group(3) != null ? matcher.group(3) : matcher.group(4));
+        }
+        return null;
+    }
+
+    /**
+     * Returns the name of the selected entity.
+     */
+    public String getEntityName() {
+        return entityName;
+    }
+
+    /**
+     * Returns false if an instance with the given attribute values definitely does not satisfy the query conditions.
+     *
+     * @param metaClass       class of the instance
+     * @param attributeValues returns values of the instance attributes or {@link #UNKNOWN}
+     * @param queryKey        key of the cached query providing parameter values
+     */
+    public boolean canMatch(MetaClass metaClass, Function<String, Object> attributeValues, QueryKey queryKey) {
+        for (Condition condition : conditions) {
+            MetaProperty property = metaClass.findProperty(condition.attribute);
+            if (property == null || !(property.getRange().isDatatype() || property.getRange().isEnum())) {
+                continue;
+            }
+            Object value = attributeValues.apply(condition.attribute);
+            if (value == UNKNOWN) {
+                continue;
+            }
+            if (!condition.canMatch(value, queryKey)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    protected static class Condition {
+        protected final String attribute;
+        protected final Operator operator;
+        protected final String operand;
+
+        protected Condition(String attribute, Operator operator, @Nullable String operand) {
+            this.attribute = attribute;
+            this.operator = operator;
+            this.operand = operand;
+        }
+
+        protected boolean canMatch(@Nullable Object value, QueryKey queryKey) {
+            if (operator == Operator.IS_NULL) {
+                // empty strings are stored as nulls by some databases
+                return value == null || "".equals(value);
+            }
+            if (operator == Operator.IS_NOT_NULL) {
+                return value != null;
+            }
+            Object operandValue = getOperandValue(queryKey);
+            if (operandValue == UNKNOWN || value == null || operandValue == null) {
+                return true;
+            }
+            value = normalize(value);
+            switch (operator) {
+                case EQ:
+                    return canBeEqual(value, normalize(operandValue));
+                case NE:
+                    return canBeNotEqual(value, normalize(operandValue));
+                case IN:
+                    if (!(operandValue instanceof Collection) || ((Collection<?>) operandValue).isEmpty()) {
+                        return true;
+                    }
+                    for (Object item : (Collection<?>) operandValue) {
+                        if (item == null || canBeEqual(value, normalize(item))) {
+                            return true;
+                        }
+                    }
+                    return false;
+                default:
+                    return canCompare(value, normalize(operandValue));
+            }
+        }
+
+        protected boolean canCompare(Object value, Object operandValue) {
+            if (!isInteger(value) || !isInteger(operandValue)) {
+                return true;
+            }
+            int result = toBigInteger(value).compareTo(toBigInteger(operandValue));
+            switch (operator) {
+                case LT:
+                    return result < 0;
+                case LE:
+                    return result <= 0;
+                case GT:
+                    return result > 0;
+                default:
+                    return result >= 0;
+            }
+        }
+
+        protected Object getOperandValue(QueryKey queryKey) {
+            if (operand.startsWith(":")) {
+                Map<String, Object> parameters = queryKey.namedParameters;
+                String name = operand.substring(1);
+                return parameters != null && parameters.containsKey(name) ? parameters.get(name) : UNKNOWN;
+            }
+            if (operand.startsWith("?")) {
+                Object[] parameters = queryKey.positionalParameters;
+                int position = Integer.parseInt(operand.substring(1));
+                return parameters != null && position > 0 && position <= parameters.length ?
+                        parameters[position - 1] : UNKNOWN;
+            }
+            if (operand.startsWith("'")) {
+                return operand.substring(1, operand.length() - 1).replace("''", "'");
+            }
+            if (operand.equalsIgnoreCase("true") || operand.equalsIgnoreCase("false")) {
+                return Boolean.valueOf(operand);
+            }
+            return new BigInteger(operand);
+        }
+    }
+
+    protected static Object normalize(Object value) {
+        if (value instanceof EnumClass) {
+            return ((EnumClass<?>) value).getId();
+        }
+        if (value instanceof Character) {
+            return value.toString();
+        }
+        return value;
+    }
+
+    protected static boolean canBeEqual(Object value, Object operandValue) {
+        if (isInteger(value) && isInteger(operandValue)) {
+            return toBigInteger(value).equals(toBigInteger(operandValue));
+        }
+        if (value instanceof String && operandValue instanceof String) {
+            return foldString((String) value).equals(foldString((String) operandValue));
+        }
+        if ((value instanceof Boolean || value instanceof UUID) && value.getClass() == operandValue.getClass()) {
+            return value.equals(operandValue);
+        }
+        return true;
+    }
+
+    protected static boolean canBeNotEqual(Object value, Object operandValue) {
+        if (isInteger(value) && isInteger(operandValue)) {
+            return !toBigInteger(value).equals(toBigInteger(operandValue));
+        }
+        // equal strings are equal in any collation
+        if ((value instanceof String || value instanceof Boolean || value instanceof UUID)
+                && value.getClass() == operandValue.getClass()) {
+            return !value.equals(operandValue);
+        }
+        return true;
+    }
+
+    protected static boolean isInteger(Object value) {
+        return value instanceof Integer || value instanceof Long || value instanceof Short
+                || value instanceof Byte || value instanceof BigInteger;
+    }
+
+    protected static BigInteger toBigInteger(Object value) {
+        return value instanceof BigInteger ? (BigInteger) value : BigInteger.valueOf(((Number) value).longValue());
+    }
+
+    protected static String foldString(String value) {
+        String result = Normalizer.normalize(value, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT);
+        int end = result.length();
+        while (end > 0 && result.charAt(end - 1) == ' ') {
+            end--;
+        }
+        return result.substring(0, end);
+    }
+}
@@ -16,11 +16,16 @@
 
 package io.jmix.eclipselink.impl.entitycache;
 
+import javax.annotation.Nullable;
 import java.io.Serializable;
-import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+/**
+ * Identifiers of entities returned by a cached query. Identifiers and related types are stored compactly,
+ * see {@link CompactIdList} and {@link EntityTypeSet}.
+ */
 public class QueryResult implements Serializable {
     private static final long serialVersionUID = -4238659709136264710L;
 
@@ -28,16 +33,23 @@ public class QueryResult implements Serializable {
     protected final String type;
     protected final Set<String> relatedTypes;
     protected final RuntimeException exception;
+    protected final Map<String, Long> generations;
 
     public QueryResult(List<?> result, String type, Set<String> relatedTypes) {
         this(result, type, relatedTypes, null);
     }
 
     public QueryResult(List<?> result, String type, Set<String> relatedTypes, RuntimeException exception) {
-        this.result = Collections.unmodifiableList(result);
+        this(result, type, relatedTypes, exception, null);
+    }
+
+    public QueryResult(List<?> result, String type, Set<String> relatedTypes, RuntimeException exception,
+                       @Nullable Map<String, Long> generations) {
+        this.result = CompactIdList.of(result);
         this.type = type;
-        this.relatedTypes = relatedTypes;
+        this.relatedTypes = relatedTypes != null ? EntityTypeSet.of(relatedTypes) : null;
         this.exception = exception;
+        this.generations = generations;
     }
 
     public List getResult() {
@@ -55,4 +67,15 @@ public class QueryResult implements Serializable {
     public RuntimeException getException() {
         return exception;
     }
+
+    /**
+     * Returns generations of the related types at the moment the result was stored, or null if the query cache
+     * is not invalidated by generations.
+     *
+     * @see io.jmix.eclipselink.EclipselinkProperties#isQueryCacheGenerationInvalidation()
+     */
+    @Nullable
+    public Map<String, Long> getGenerations() {
+        return generations;
+    }
 }
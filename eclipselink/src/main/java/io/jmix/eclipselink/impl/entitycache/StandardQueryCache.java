@@ -18,7 +18,6 @@ package io.jmix.eclipselink.impl.entitycache;
 
 import com.google.common.collect.Sets;
 import io.jmix.core.CacheOperations;
-import org.apache.commons.collections4.CollectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -27,15 +26,34 @@ import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
-import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicLong;
-
+import java.util.function.Predicate;
+
+/**
+ * Query cache which stores results in the {@link #QUERY_CACHE_NAME} cache.
+ * <p>
+ * Keys of stored results are indexed by related types, so invalidation evicts only the affected keys and does not
+ * require iteration over the cache. Keys of results evicted by the cache provider itself remain in the index until
+ * the number of keys of a type doubles, then the keys absent in the cache are removed.
+ * <p>
+ * A result is stored before its key is indexed, and invalidation removes keys from the index of a type which itself
+ * is kept in place. So a result put concurrently with invalidation is either evicted or remains indexed and is
+ * evicted by the next invalidation.
+ */
 @Component("eclipselink_QueryCache")
 public class StandardQueryCache implements QueryCache {
 
+    protected static final int MIN_PRUNE_SIZE = 1024;
+
     protected Cache queries;
 
+    protected final ConcurrentMap<String, TypeKeys> keysByType = new ConcurrentHashMap<>();
+
     @Autowired
     protected CacheManager cacheManager;
     @Autowired
@@ -61,6 +79,22 @@ public class StandardQueryCache implements QueryCache {
     @Override
     public void put(QueryKey queryKey, QueryResult queryResult) {
         queries.put(queryKey, queryResult);
+
+        Set<String> relatedTypes = queryResult.getRelatedTypes();
+        if (relatedTypes != null) {
+            for (String typeName : relatedTypes) {
+                TypeKeys typeKeys = keysByType.computeIfAbsent(typeName, k -> new TypeKeys());
+                typeKeys.keys.add(queryKey);
+                if (typeKeys.keys.size() >= typeKeys.pruneSize) {
+                    prune(typeKeys);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void evict(QueryKey queryKey) {
+        queries.evictIfPresent(queryKey);
     }
 
     @Override
@@ -75,28 +109,99 @@ public class StandardQueryCache implements QueryCache {
         invalidateByTypes(typeNames);
     }
 
+    @Override
+    public void invalidate(String typeName, Predicate<QueryKey> predicate) {
+        log.debug("Invalidate cache for type {} by predicate", typeName);
+        TypeKeys typeKeys = keysByType.get(typeName);
+        if (typeKeys != null) {
+            for (Iterator<QueryKey> it = typeKeys.keys.iterator(); it.hasNext(); ) {
+                QueryKey queryKey = it.next();
+                if (predicate.test(queryKey)) {
+                    it.remove();
+                    queries.evictIfPresent(queryKey);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void invalidateCounts(Set<String> typeNames) {
+        log.debug("Invalidate count results for types {}", typeNames);
+        invalidateByTypes(typeNames, true);
+    }
+
     protected void invalidateByTypes(Set<String> typeNames) {
-        if (cacheOperations.isIterableCache(queries)) {
-            Set<QueryKey> evicted = new HashSet<>();
+        invalidateByTypes(typeNames, false);
+    }
 
-            cacheOperations.<QueryKey, QueryResult>forEach(queries, (queryKey, queryResult) -> {
-                if (CollectionUtils.containsAny(queryResult.getRelatedTypes(), typeNames)) {
-                    evicted.add(queryKey);
+    protected void invalidateByTypes(Set<String> typeNames, boolean countsOnly) {
+        for (String typeName : typeNames) {
+            if (countsOnly) {
+                TypeKeys typeKeys = keysByType.get(typeName);
+                if (typeKeys != null) {
+                    for (Iterator<QueryKey> it = typeKeys.keys.iterator(); it.hasNext(); ) {
+                        QueryKey queryKey = it.next();
+                        if (queryKey instanceof CountQueryKey) {
+                            it.remove();
+                            queries.evictIfPresent(queryKey);
+                        }
+                    }
                 }
-            });
-
-            for (QueryKey queryKey : evicted) {
-                queries.evictIfPresent(queryKey);
+            } else {
+                // keys remain in the index of other related types and are removed from there by pruning
+                TypeKeys typeKeys = keysByType.get(typeName);
+                if (typeKeys != null) {
+                    for (Iterator<QueryKey> it = typeKeys.keys.iterator(); it.hasNext(); ) {
+                        QueryKey queryKey = it.next();
+                        it.remove();
+                        queries.evictIfPresent(queryKey);
+                    }
+                }
+            }
+        }
+    }
 
+    /**
+     * Removes keys which are not in the cache anymore from the index.
+     */
+    protected void prune(TypeKeys typeKeys) {
+        synchronized (typeKeys) {
+            if (typeKeys.keys.size() < typeKeys.pruneSize) {
+                return;
             }
-        } else {
-            queries.invalidate();
+            for (Iterator<QueryKey> it = typeKeys.keys.iterator(); it.hasNext(); ) {
+                QueryKey queryKey = it.next();
+                if (!containsKey(queryKey)) {
+                    it.remove();
+                    // the result could be stored again after the check
+                    if (containsKey(queryKey)) {
+                        typeKeys.keys.add(queryKey);
+                    }
+                }
+            }
+            typeKeys.pruneSize = Math.max(typeKeys.keys.size() * 2, MIN_PRUNE_SIZE);
         }
     }
 
+    /**
+     * Checks whether the cache contains the key without affecting the eviction order of the cache provider.
+     */
+    @SuppressWarnings("unchecked")
+    protected boolean containsKey(QueryKey queryKey) {
+        Object nativeCache = queries.getNativeCache();
+        if (nativeCache instanceof Map) {
+            return ((Map<?, ?>) nativeCache).containsKey(queryKey);
+        }
+        if (nativeCache instanceof javax.cache.Cache) {
+            return ((javax.cache.Cache<Object, Object>) nativeCache).containsKey(queryKey);
+        }
+        return queries.get(queryKey) != null;
+    }
+
     @Override
     public void invalidateAll() {
         log.debug("Invalidate all cache");
+        keysByType.clear();
         queries.invalidate();
     }
 
@@ -110,4 +215,9 @@ public class StandardQueryCache implements QueryCache {
             return 0;
         }
     }
+
+    protected static class TypeKeys {
+        protected final Set<QueryKey> keys = ConcurrentHashMap.newKeySet();
+        protected volatile int pruneSize = MIN_PRUNE_SIZE;
+    }
 }
@@ -17,6 +17,7 @@
 package io.jmix.eclipselink.impl.lazyloading;
 
 import io.jmix.core.FetchPlans;
+import io.jmix.core.LoadContext;
 import io.jmix.core.Metadata;
 import io.jmix.core.MetadataTools;
 import io.jmix.core.UnconstrainedDataManager;
@@ -34,7 +35,7 @@ import org.springframework.beans.factory.BeanFactory;
 
 import java.io.Serializable;
 import java.rmi.server.ObjID;
-import java.util.Objects;
+import java.util.*;
 
 public abstract class AbstractValueHolder extends UnitOfWorkValueHolder implements ValueHolderInterface, WeavedAttributeValueHolderInterface,
         WrappingValueHolder, Cloneable, Serializable {
@@ -47,6 +48,7 @@ public abstract class AbstractValueHolder extends UnitOfWorkValueHolder implemen
     private volatile boolean isInstantiated;
     private volatile Object value;
     private LoadOptions loadOptions;
+    private transient ValueHoldersGroup group;
 
     public AbstractValueHolder(BeanFactory beanFactory,
                                ValueHolderInterface originalValueHolder,
@@ -271,9 +273,12 @@ public abstract class AbstractValueHolder extends UnitOfWorkValueHolder implemen
             if (LazyLoadingContext.isDisabled()) {
                 value = originalValueHolder.getValue();
             } else {
-                synchronized (this) {
-                    value = loadValue();
-                    afterLoadValue(value);
+                getLazyLoadingDetector().onLazyLoad(this);
+                if (!loadValuesWithSiblings()) {
+                    synchronized (this) {
+                        value = loadValue();
+                        afterLoadValue(value);
+                    }
                 }
             }
             isInstantiated = true;
@@ -285,6 +290,65 @@ public abstract class AbstractValueHolder extends UnitOfWorkValueHolder implemen
 
     protected abstract void afterLoadValue(Object value);
 
+    /**
+     * Loads values of this holder and of the given holders of the same property of other instances by one request.
+     * The values are set by {@link #setLoadedValue(Object)}.
+     *
+     * @param holders this holder followed by not loaded siblings
+     * @return false if the value of this holder has not been loaded and should be loaded by {@link #loadValue()}
+     */
+    protected boolean loadValues(List<AbstractValueHolder> holders) {
+        return false;
+    }
+
+    /**
+     * Sets the value loaded together with a sibling holder, unless the value has already been loaded.
+     */
+    protected void setLoadedValue(Object value) {
+        synchronized (this) {
+            if (!isInstantiated) {
+                this.value = value;
+                afterLoadValue(value);
+                isInstantiated = true;
+            }
+        }
+    }
+
+    protected boolean loadValuesWithSiblings() {
+        ValueHoldersGroup group = this.group;
+        if (group == null) {
+            return false;
+        }
+        List<AbstractValueHolder> holders = group.getNotLoadedSiblings(this);
+        for (AbstractValueHolder holder : holders) {
+            holder.setGroup(null);
+        }
+        return holders.size() > 1 && loadValues(holders);
+    }
+
+    /**
+     * Loads entities by IDs in batches and returns them by ID.
+     */
+    protected Map<Object, Object> loadByIds(LoadContext<?> loadContext) {
+        List<?> entities = getDataManager().loadList(loadContext);
+        Map<Object, Object> result = new HashMap<>(entities.size());
+        for (Object entity : entities) {
+            result.put(EntityValues.getId(entity), entity);
+        }
+        return result;
+    }
+
+    protected List<Object> getOwnerIds(List<AbstractValueHolder> holders) {
+        Set<Object> ids = new LinkedHashSet<>(holders.size());
+        for (AbstractValueHolder holder : holders) {
+            Object id = EntityValues.getId(holder.getOwner());
+            if (id != null) {
+                ids.add(id);
+            }
+        }
+        return new ArrayList<>(ids);
+    }
+
     @Override
     public void setValue(Object value) {
         this.value = value;
@@ -302,6 +366,14 @@ public abstract class AbstractValueHolder extends UnitOfWorkValueHolder implemen
         return loadOptions;
     }
 
+    void setGroup(ValueHoldersGroup group) {
+        this.group = group;
+    }
+
+    boolean isLoaded() {
+        return isInstantiated;
+    }
+
     public Object getOwner() {
         return owner;
     }
@@ -366,4 +438,8 @@ public abstract class AbstractValueHolder extends UnitOfWorkValueHolder implemen
     protected FetchPlans getFetchPlans() {
         return beanFactory.getBean(FetchPlans.class);
     }
+
+    protected LazyLoadingDetector getLazyLoadingDetector() {
+        return beanFactory.getBean(LazyLoadingDetector.class);
+    }
 }
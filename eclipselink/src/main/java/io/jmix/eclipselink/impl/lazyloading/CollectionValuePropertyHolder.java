@@ -59,6 +59,25 @@ public class CollectionValuePropertyHolder extends AbstractValueHolder {
         LoadContext<?> loadContext = createLoadContextByOwner(metaClass);
 
         Object reloadedOwner = getDataManager().load(loadContext);
+        return getValueFromReloadedOwner(reloadedOwner);
+    }
+
+    @Override
+    protected boolean loadValues(List<AbstractValueHolder> holders) {
+        MetaClass metaClass = getMetadata().getClass(getOwner());
+
+        Map<Object, Object> reloadedOwners = loadByIds(createLoadContextByOwners(metaClass, getOwnerIds(holders)));
+        for (AbstractValueHolder holder : holders) {
+            Object reloadedOwner = reloadedOwners.get(EntityValues.getId(holder.getOwner()));
+            if (reloadedOwner != null) {
+                CollectionValuePropertyHolder collectionHolder = (CollectionValuePropertyHolder) holder;
+                collectionHolder.setLoadedValue(collectionHolder.getValueFromReloadedOwner(reloadedOwner));
+            }
+        }
+        return isLoaded();
+    }
+
+    protected Collection<Object> getValueFromReloadedOwner(Object reloadedOwner) {
         Collection<Object> value = EntityValues.getValue(reloadedOwner, getPropertyInfo().getName());
 
         getSecurityState(getOwner()).addErasedIds(getPropertyInfo().getName(),
@@ -90,6 +109,17 @@ public class CollectionValuePropertyHolder extends AbstractValueHolder {
                 .setHints(getLoadOptions().getHints());
     }
 
+    protected LoadContext<?> createLoadContextByOwners(MetaClass metaClass, List<Object> ownerIds) {
+        return new LoadContext<>(metaClass)
+                .setIds(ownerIds)
+                .setFetchPlan(
+                        getFetchPlans().builder(metaClass.getJavaClass())
+                                .add(getPropertyInfo().getName(), builder -> builder.addFetchPlan(FetchPlan.BASE))
+                                .build())
+                .setAccessConstraints(getLoadOptions().getAccessConstraints())
+                .setHints(getLoadOptions().getHints());
+    }
+
     protected void replaceCollectionExistingReferences(Collection<Object> collection, Object entityToReplace) {
         if (collection instanceof List) {
             for (ListIterator<Object> iterator = ((List<Object>) collection).listIterator(); iterator.hasNext(); ) {
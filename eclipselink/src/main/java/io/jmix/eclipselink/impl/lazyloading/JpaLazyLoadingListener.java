@@ -24,12 +24,14 @@ import io.jmix.core.entity.EntityValues;
 import io.jmix.core.metamodel.model.MetaClass;
 import io.jmix.core.metamodel.model.MetaProperty;
 import io.jmix.core.metamodel.model.Range;
+import io.jmix.eclipselink.EclipselinkProperties;
 import org.eclipse.persistence.indirection.ValueHolderInterface;
 import org.eclipse.persistence.internal.indirection.QueryBasedValueHolder;
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Nullable;
 import javax.persistence.Basic;
 import javax.persistence.FetchType;
 import java.io.Serializable;
@@ -57,6 +59,8 @@ public class JpaLazyLoadingListener implements DataStoreEventListener {
     protected ExtendedEntities extendedEntities;
     @Autowired
     protected FetchPlans fetchPlans;
+    @Autowired
+    protected EclipselinkProperties properties;
 
     @Override
     public void afterEntityLoad(DataStoreAfterEntityLoadEvent event) {
@@ -68,12 +72,24 @@ public class JpaLazyLoadingListener implements DataStoreEventListener {
         if (fetchPlan == null) {
             fetchPlan = fetchPlanRepository.getFetchPlan(metaClass, FetchPlan.LOCAL);
         }
+        ValueHoldersGroup group = properties.isLazyLoadingBatch() ? new ValueHoldersGroup() : null;
         for (Object entity : event.getResultEntities()) {
-            processValueHolders(entity, context, fetchPlan);
+            processValueHolders(entity, context, fetchPlan, group);
         }
     }
 
     public void processValueHolders(Object entity, LoadContext<?> loadContext, FetchPlan fetchPlan) {
+        processValueHolders(entity, loadContext, fetchPlan, null);
+    }
+
+    /**
+     * Wraps value holders of not loaded references of the entity and its loaded references.
+     *
+     * @param group group to register the created value holders in to load them together with the holders
+     *              of other entities of the same load result, or null to load each holder separately
+     */
+    protected void processValueHolders(Object entity, LoadContext<?> loadContext, FetchPlan fetchPlan,
+                                       @Nullable ValueHoldersGroup group) {
         Map<Object, Set<FetchPlan>> collectedFetchPlans = new HashMap<>();
 
         if (fetchPlan != null) {
@@ -93,7 +109,9 @@ public class JpaLazyLoadingListener implements DataStoreEventListener {
                 .setAccessConstraints(loadContext.getAccessConstraints().stream()
                         .filter(c -> c instanceof InMemoryConstraint)
                         .collect(Collectors.toList()))
-                .setHints(serializableHints);
+                .setHints(serializableHints)
+                .setRootFetchPlan(loadContext.getEntityMetaClass().getName(),
+                        fetchPlan != null ? fetchPlan.getName() : null);
 
         for (Map.Entry<Object, Set<FetchPlan>> entry : collectedFetchPlans.entrySet()) {
             MetaClass metaClass = metadata.getClass(entry.getKey().getClass());
@@ -102,12 +120,18 @@ public class JpaLazyLoadingListener implements DataStoreEventListener {
                         !isPropertyContainedInFetchPlans(property, entry.getValue()) &&
                         metadataTools.getCrossDataStoreReferenceIdProperty(property.getStore().getName(), property) == null) {
                     if (!entityStates.isLoaded(entry.getKey(), property.getName())) {
+                        AbstractValueHolder valueHolder = null;
                         if (property.getRange().getCardinality().isMany()) {
-                            processCollectionValueHolder(entry.getKey(), property, loadOptions);
+                            valueHolder = processCollectionValueHolder(entry.getKey(), property, loadOptions);
                         } else if (property.getRange().getCardinality() == Range.Cardinality.ONE_TO_ONE) {
-                            processOneToOneValueHolder(entry.getKey(), property, loadOptions);
+                            valueHolder = processOneToOneValueHolder(entry.getKey(), property, loadOptions);
                         } else if (property.getRange().getCardinality() == Range.Cardinality.MANY_TO_ONE) {
-                            processManyToOneValueHolder(entry.getKey(), property, loadOptions);
+                            valueHolder = processManyToOneValueHolder(entry.getKey(), property, loadOptions);
+                        }
+                        // elements of many-to-many collections may be shared by owners and are loaded separately
+                        if (valueHolder != null && group != null
+                                && property.getRange().getCardinality() != Range.Cardinality.MANY_TO_MANY) {
+                            group.add(valueHolder);
                         }
                     }
                 }
@@ -115,7 +139,8 @@ public class JpaLazyLoadingListener implements DataStoreEventListener {
         }
     }
 
-    protected void processCollectionValueHolder(Object owner, MetaProperty property, LoadOptions loadOptions) {
+    @Nullable
+    protected AbstractValueHolder processCollectionValueHolder(Object owner, MetaProperty property, LoadOptions loadOptions) {
         Object valueHolder = getCollectionValueHolder(owner, property.getName());
         if (valueHolder != null && !(valueHolder instanceof AbstractValueHolder)) {
             AbstractValueHolder wrappedValueHolder =
@@ -124,10 +149,13 @@ public class JpaLazyLoadingListener implements DataStoreEventListener {
             wrappedValueHolder.setLoadOptions(LoadOptions.with(loadOptions));
 
             setCollectionValueHolder(owner, property.getName(), wrappedValueHolder);
+            return wrappedValueHolder;
         }
+        return null;
     }
 
-    protected void processOneToOneValueHolder(Object owner, MetaProperty property, LoadOptions loadOptions) {
+    @Nullable
+    protected AbstractValueHolder processOneToOneValueHolder(Object owner, MetaProperty property, LoadOptions loadOptions) {
         Object originalValueHolder = getSingleValueHolder(owner, property.getName());
 
         if (originalValueHolder != null && !(originalValueHolder instanceof AbstractValueHolder)) {
@@ -153,10 +181,13 @@ public class JpaLazyLoadingListener implements DataStoreEventListener {
             }
 
             setSingleValueHolder(owner, property.getName(), wrappedValueHolder);
+            return wrappedValueHolder;
         }
+        return null;
     }
 
-    protected void processManyToOneValueHolder(Object owner, MetaProperty property, LoadOptions loadOptions) {
+    @Nullable
+    protected AbstractValueHolder processManyToOneValueHolder(Object owner, MetaProperty property, LoadOptions loadOptions) {
         Object originalValueHolder = getSingleValueHolder(owner, property.getName());
 
         if (originalValueHolder != null && !(originalValueHolder instanceof AbstractValueHolder)) {
@@ -171,8 +202,10 @@ public class JpaLazyLoadingListener implements DataStoreEventListener {
                 wrappedValueHolder.setLoadOptions(LoadOptions.with(loadOptions));
 
                 setSingleValueHolder(owner, property.getName(), wrappedValueHolder);
+                return wrappedValueHolder;
             }
         }
+        return null;
     }
 
     protected void collectFetchPlans(Object instance, FetchPlan fetchPlan, Map<Object, Set<FetchPlan>> collectedFetchPlans) {
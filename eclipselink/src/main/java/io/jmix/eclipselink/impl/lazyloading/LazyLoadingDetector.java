@@ -0,0 +1,213 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jmix.eclipselink.impl.lazyloading;
+
+import io.jmix.core.DevelopmentException;
+import io.jmix.core.Metadata;
+import io.jmix.core.metamodel.model.MetaClass;
+import io.jmix.eclipselink.EclipselinkProperties;
+import io.jmix.eclipselink.impl.PersistenceMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Detects the "N+1 queries" problem: an attribute which is not included in the fetch plan and is loaded lazily
+ * for many instances one by one.
+ * <p>
+ * Lazy loads are counted by owner entity and attribute within a scope. The scope is the innermost scope opened by
+ * {@link #openScope(String)} in the current thread, otherwise the current transaction, otherwise a series of lazy
+ * loads in the current thread separated by no more than {@link EclipselinkProperties#getLazyLoadingDetectionWindowMs()}.
+ * When the number of lazy loads of an attribute reaches {@link EclipselinkProperties#getLazyLoadingDetectionThreshold()},
+ * a warning with the stack trace is logged or {@link DevelopmentException} is thrown if
+ * {@link EclipselinkProperties#isLazyLoadingDetectionThrowException()} is set.
+ * <p>
+ * Lazy loads are also counted by the {@code jmix.data.lazy.loads} metric, and exceeded thresholds by the
+ * {@code jmix.data.lazy.loads.excessive} metric.
+ */
+@Component("eclipselink_LazyLoadingDetector")
+public class LazyLoadingDetector {
+
+    private static final Logger log = LoggerFactory.getLogger(LazyLoadingDetector.class);
+
+    @Autowired
+    protected EclipselinkProperties properties;
+
+    @Autowired
+    protected Metadata metadata;
+
+    @Autowired
+    protected PersistenceMetrics persistenceMetrics;
+
+    protected final ThreadLocal<Deque<DetectionScope>> explicitScopes = new ThreadLocal<>();
+
+    protected final ThreadLocal<DetectionScope> threadScope = new ThreadLocal<>();
+
+    /**
+     * Returns true if lazy loads are counted.
+     */
+    public boolean isEnabled() {
+        return properties.isLazyLoadingDetection();
+    }
+
+    /**
+     * Opens a scope of counting lazy loads in the current thread, for example for processing of a request.
+     * The scope must be closed in the same thread:
+     * <pre>
+     * try (LazyLoadingDetector.Scope scope = lazyLoadingDetector.openScope("Order report")) {
+     *     // ...
+     * }
+     * </pre>
+     *
+     * @param description description of the scope used in reports
+     */
+    public Scope openScope(String description) {
+        Deque<DetectionScope> scopes = explicitScopes.get();
+        if (scopes == null) {
+            scopes = new ArrayDeque<>();
+            explicitScopes.set(scopes);
+        }
+        DetectionScope scope = new DetectionScope(description);
+        scopes.push(scope);
+        return () -> {
+            Deque<DetectionScope> currentScopes = explicitScopes.get();
+            if (currentScopes != null) {
+                currentScopes.remove(scope);
+                if (currentScopes.isEmpty()) {
+                    explicitScopes.remove();
+                }
+            }
+        };
+    }
+
+    /**
+     * Invoked by a value holder before loading the attribute value.
+     */
+    public void onLazyLoad(AbstractValueHolder valueHolder) {
+        if (!isEnabled()) {
+            return;
+        }
+        MetaClass metaClass = metadata.getClass(valueHolder.getOwner());
+        String property = valueHolder.getPropertyInfo().getName();
+        String storeName = metaClass.getStore().getName();
+
+        persistenceMetrics.increment(PersistenceMetrics.Count.LAZY_LOADS, storeName, metaClass.getName());
+
+        DetectionScope scope = getCurrentScope();
+        int count = scope.increment(metaClass.getName() + "." + property);
+        if (count == properties.getLazyLoadingDetectionThreshold()) {
+            persistenceMetrics.increment(PersistenceMetrics.Count.EXCESSIVE_LAZY_LOADS, storeName, metaClass.getName());
+            report(metaClass, property, count, scope, valueHolder.getLoadOptions());
+        }
+    }
+
+    protected void report(MetaClass metaClass, String property, int count, DetectionScope scope,
+                          @Nullable LoadOptions loadOptions) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Attribute ").append(metaClass.getName()).append('.').append(property)
+                .append(" has been lazily loaded ").append(count).append(" times in ").append(scope.description)
+                .append(". ");
+        String rootEntityName = loadOptions != null ? loadOptions.getRootEntityName() : null;
+        if (rootEntityName != null) {
+            String fetchPlanName = loadOptions.getFetchPlanName();
+            sb.append("Consider adding it to the fetch plan ")
+                    .append(fetchPlanName != null && !fetchPlanName.isEmpty() ? "'" + fetchPlanName + "' " : "")
+                    .append("used to load ").append(rootEntityName).append('.');
+        } else {
+            sb.append("Consider adding it to the fetch plan used to load ").append(metaClass.getName()).append('.');
+        }
+        String message = sb.toString();
+
+        if (properties.isLazyLoadingDetectionThrowException()) {
+            throw new DevelopmentException(message);
+        }
+        log.warn(message, new LazyLoadingStackTrace());
+    }
+
+    protected DetectionScope getCurrentScope() {
+        Deque<DetectionScope> scopes = explicitScopes.get();
+        if (scopes != null && !scopes.isEmpty()) {
+            return scopes.peek();
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            DetectionScope scope = (DetectionScope) TransactionSynchronizationManager.getResource(this);
+            if (scope == null) {
+                String txName = TransactionSynchronizationManager.getCurrentTransactionName();
+                scope = new DetectionScope("transaction" + (txName != null ? " " + txName : ""));
+                TransactionSynchronizationManager.bindResource(this, scope);
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        TransactionSynchronizationManager.unbindResourceIfPossible(LazyLoadingDetector.this);
+                    }
+                });
+            }
+            return scope;
+        }
+
+        long now = System.currentTimeMillis();
+        DetectionScope scope = threadScope.get();
+        if (scope == null || now - scope.lastAccessTime > properties.getLazyLoadingDetectionWindowMs()) {
+            scope = new DetectionScope("thread " + Thread.currentThread().getName());
+            threadScope.set(scope);
+        }
+        scope.lastAccessTime = now;
+        return scope;
+    }
+
+    /**
+     * Scope of counting lazy loads opened by {@link #openScope(String)}.
+     */
+    public interface Scope extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+
+    protected static class DetectionScope {
+        private final String description;
+        private final Map<String, Integer> counts = new HashMap<>();
+        private long lastAccessTime;
+
+        public DetectionScope(String description) {
+            this.description = description;
+        }
+
+        // a scope is used by one thread, or by threads of one transaction one at a time
+        public synchronized int increment(String key) {
+            return counts.merge(key, 1, Integer::sum);
+        }
+    }
+
+    protected static class LazyLoadingStackTrace extends Exception {
+        private static final long serialVersionUID = -3052345916235418765L;
+
+        public LazyLoadingStackTrace() {
+            super("Stack trace of the lazy loading");
+        }
+    }
+}
@@ -18,6 +18,7 @@ package io.jmix.eclipselink.impl.lazyloading;
 
 import io.jmix.core.constraint.AccessConstraint;
 
+import javax.annotation.Nullable;
 import java.io.Serializable;
 import java.util.Collections;
 import java.util.List;
@@ -28,6 +29,8 @@ class LoadOptions implements Serializable {
 
     protected Map<String, Serializable> hints;
     protected transient List<AccessConstraint<?>> accessConstraints;
+    protected String rootEntityName;
+    protected String fetchPlanName;
 
     public static LoadOptions with() {
         return new LoadOptions();
@@ -36,7 +39,8 @@ class LoadOptions implements Serializable {
     public static LoadOptions with(LoadOptions srcOptions) {
         return with()
                 .setHints(srcOptions.getHints())
-                .setAccessConstraints(srcOptions.getAccessConstraints());
+                .setAccessConstraints(srcOptions.getAccessConstraints())
+                .setRootFetchPlan(srcOptions.getRootEntityName(), srcOptions.getFetchPlanName());
     }
 
     private LoadOptions() {
@@ -59,4 +63,26 @@ class LoadOptions implements Serializable {
         this.accessConstraints = accessConstraints;
         return this;
     }
+
+    /**
+     * Returns the name of the entity loaded by {@link io.jmix.core.DataManager} before lazy loading.
+     */
+    @Nullable
+    public String getRootEntityName() {
+        return rootEntityName;
+    }
+
+    /**
+     * Returns the name of the fetch plan the root entity was loaded with.
+     */
+    @Nullable
+    public String getFetchPlanName() {
+        return fetchPlanName;
+    }
+
+    public LoadOptions setRootFetchPlan(@Nullable String rootEntityName, @Nullable String fetchPlanName) {
+        this.rootEntityName = rootEntityName;
+        this.fetchPlanName = fetchPlanName;
+        return this;
+    }
 }
@@ -17,6 +17,7 @@
 package io.jmix.eclipselink.impl.lazyloading;
 
 import io.jmix.core.FetchPlan;
+import io.jmix.core.FetchPlanBuilder;
 import io.jmix.core.LoadContext;
 import io.jmix.core.entity.EntityValues;
 import io.jmix.core.impl.SerializationContext;
@@ -27,6 +28,8 @@ import org.eclipse.persistence.indirection.ValueHolderInterface;
 import org.springframework.beans.factory.BeanFactory;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 import static io.jmix.core.entity.EntitySystemAccess.getSecurityState;
@@ -49,14 +52,7 @@ public class SingleValueMappedByPropertyHolder extends AbstractSingleValueHolder
             LoadContext<?> loadContext = createLoadContextByOwner(metaClass);
 
             Object reloadedOwner = getDataManager().load(loadContext);
-            Object value = EntityValues.getValue(reloadedOwner, getPropertyInfo().getName());
-
-            if (value == null) {
-                getSecurityState(getOwner()).addErasedIds(getPropertyInfo().getName(),
-                        getSecurityState(reloadedOwner).getErasedIds(getPropertyInfo().getName()));
-            }
-
-            return value;
+            return getValueFromReloadedOwner(reloadedOwner);
         } else {
             MetaClass metaClass = getMetadata().getClass(getPropertyInfo().getJavaType());
             String primaryKeyName = getMetadataTools().getPrimaryKeyName(metaClass);
@@ -67,12 +63,50 @@ public class SingleValueMappedByPropertyHolder extends AbstractSingleValueHolder
         }
     }
 
+    @Override
+    protected boolean loadValues(List<AbstractValueHolder> holders) {
+        MetaClass metaClass = getMetadata().getClass(getOwner());
+
+        Map<Object, Object> reloadedOwners = loadByIds(createLoadContextByOwners(metaClass, getOwnerIds(holders)));
+        for (AbstractValueHolder holder : holders) {
+            Object reloadedOwner = reloadedOwners.get(EntityValues.getId(holder.getOwner()));
+            if (reloadedOwner != null) {
+                SingleValueMappedByPropertyHolder mappedByHolder = (SingleValueMappedByPropertyHolder) holder;
+                mappedByHolder.setLoadedValue(mappedByHolder.getValueFromReloadedOwner(reloadedOwner));
+            }
+        }
+        return isLoaded();
+    }
+
+    protected Object getValueFromReloadedOwner(Object reloadedOwner) {
+        Object value = EntityValues.getValue(reloadedOwner, getPropertyInfo().getName());
+
+        if (value == null) {
+            getSecurityState(getOwner()).addErasedIds(getPropertyInfo().getName(),
+                    getSecurityState(reloadedOwner).getErasedIds(getPropertyInfo().getName()));
+        }
+
+        return value;
+    }
+
     protected LoadContext<?> createLoadContextByOwner(MetaClass metaClass) {
         return new LoadContext<>(metaClass)
                 .setId(Objects.requireNonNull(EntityValues.getId(getOwner())))
                 .setFetchPlan(
                         getFetchPlans().builder(metaClass.getJavaClass())
-                                .add(getPropertyInfo().getName(), builder -> builder.addFetchPlan(FetchPlan.BASE))
+                                .add(getPropertyInfo().getName(), this::buildValueFetchPlan)
+                                .build())
+                .setAccessConstraints(getLoadOptions().getAccessConstraints())
+                .setHints(getLoadOptions().getHints())
+                .setHint(PersistenceHints.SOFT_DELETION, false);
+    }
+
+    protected LoadContext<?> createLoadContextByOwners(MetaClass metaClass, List<Object> ownerIds) {
+        return new LoadContext<>(metaClass)
+                .setIds(ownerIds)
+                .setFetchPlan(
+                        getFetchPlans().builder(metaClass.getJavaClass())
+                                .add(getPropertyInfo().getName(), this::buildValueFetchPlan)
                                 .build())
                 .setAccessConstraints(getLoadOptions().getAccessConstraints())
                 .setHints(getLoadOptions().getHints())
@@ -80,7 +114,11 @@ public class SingleValueMappedByPropertyHolder extends AbstractSingleValueHolder
     }
 
     protected LoadContext<?> createLoadContextByInverseProperty(MetaClass metaClass, String primaryKeyName) {
+        FetchPlanBuilder fetchPlanBuilder = getFetchPlans().builder(metaClass.getJavaClass());
+        buildValueFetchPlan(fetchPlanBuilder);
+
         LoadContext<?> loadContext = new LoadContext<>(metaClass)
+                .setFetchPlan(fetchPlanBuilder.build())
                 .setHints(getLoadOptions().getHints())
                 .setHint(PersistenceHints.SOFT_DELETION, false);
         loadContext.setQueryString(String.format("select e from %s e where e.%s.%s = :entityId", metaClass.getName(),
@@ -89,6 +127,14 @@ public class SingleValueMappedByPropertyHolder extends AbstractSingleValueHolder
         return loadContext;
     }
 
+    /**
+     * Defines the fetch plan of the loaded value, the same whether the value is loaded alone by the inverse
+     * property or together with its owner.
+     */
+    protected void buildValueFetchPlan(FetchPlanBuilder builder) {
+        builder.addFetchPlan(FetchPlan.BASE);
+    }
+
     private void readObject(java.io.ObjectInputStream in) throws IOException, ClassNotFoundException {
         in.defaultReadObject();
         beanFactory = SerializationContext.getThreadLocalBeanFactory();
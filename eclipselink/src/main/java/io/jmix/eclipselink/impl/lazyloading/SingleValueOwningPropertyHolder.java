@@ -26,7 +26,7 @@ import org.eclipse.persistence.indirection.ValueHolderInterface;
 import org.springframework.beans.factory.BeanFactory;
 
 import java.io.IOException;
-import java.util.UUID;
+import java.util.*;
 
 import static io.jmix.core.entity.EntitySystemAccess.getSecurityState;
 
@@ -60,10 +60,46 @@ public class SingleValueOwningPropertyHolder extends AbstractSingleValueHolder {
 
         Object value = getDataManager().load(loadContext);
 
+        return processLoadedValue(value);
+    }
+
+    @Override
+    protected boolean loadValues(List<AbstractValueHolder> holders) {
+        MetaClass metaClass = getMetadata().getClass(getPropertyInfo().getJavaType());
+        LoadOptions loadOptions = getLoadOptions();
+
+        Set<Object> ids = new LinkedHashSet<>(holders.size());
+        for (AbstractValueHolder holder : holders) {
+            Object id = ((SingleValueOwningPropertyHolder) holder).getEntityId();
+            if (id != null) {
+                ids.add(id);
+            }
+        }
+        if (ids.size() <= 1) {
+            return false;
+        }
+
+        LoadContext<?> loadContext = new LoadContext<>(metaClass)
+                .setIds(new ArrayList<>(ids))
+                .setHint(PersistenceHints.SOFT_DELETION, false)
+                .setHints(loadOptions.getHints())
+                .setAccessConstraints(loadOptions.getAccessConstraints());
+
+        Map<Object, Object> values = loadByIds(loadContext);
+        for (AbstractValueHolder holder : holders) {
+            SingleValueOwningPropertyHolder owningHolder = (SingleValueOwningPropertyHolder) holder;
+            Object id = owningHolder.getEntityId();
+            if (id != null) {
+                owningHolder.setLoadedValue(owningHolder.processLoadedValue(values.get(id)));
+            }
+        }
+        return isLoaded();
+    }
+
+    protected Object processLoadedValue(Object value) {
         if (value == null) {
             getSecurityState(getOwner()).addErasedId(getPropertyInfo().getName(), getEntityId());
         }
-
         return value;
     }
 
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.jmix.eclipselink.impl.lazyloading;
+
+import java.lang.ref.WeakReference;
+import java.util.*;
+
+/**
+ * Value holders created for one load result. Holders of the same property of the same entity class are siblings
+ * and are loaded together by the first lazy access to any of them.
+ * <p>
+ * Siblings are referenced weakly, so an entity kept by the application does not keep the rest of the load result
+ * reachable through the group.
+ */
+class ValueHoldersGroup {
+
+    private final Map<String, List<WeakReference<AbstractValueHolder>>> holders = new HashMap<>();
+
+    synchronized void add(AbstractValueHolder holder) {
+        holders.computeIfAbsent(getKey(holder), k -> new ArrayList<>()).add(new WeakReference<>(holder));
+        holder.setGroup(this);
+    }
+
+    /**
+     * Returns the given holder followed by its siblings which are not loaded yet and removes all of them from
+     * the group, because they are loaded by the caller. Loaded and garbage collected holders are removed too.
+     */
+    synchronized List<AbstractValueHolder> getNotLoadedSiblings(AbstractValueHolder holder) {
+        String key = getKey(holder);
+        List<WeakReference<AbstractValueHolder>> siblings = holders.remove(key);
+        if (siblings == null) {
+            return Collections.singletonList(holder);
+        }
+        List<AbstractValueHolder> result = new ArrayList<>(siblings.size());
+        result.add(holder);
+        for (WeakReference<AbstractValueHolder> reference : siblings) {
+            AbstractValueHolder sibling = reference.get();
+            if (sibling != null && sibling != holder && !sibling.isLoaded()) {
+                result.add(sibling);
+            }
+        }
+        return result;
+    }
+
+    private String getKey(AbstractValueHolder holder) {
+        return holder.getOwner().getClass().getName() + "." + holder.getPropertyInfo().getName();
+    }
+}
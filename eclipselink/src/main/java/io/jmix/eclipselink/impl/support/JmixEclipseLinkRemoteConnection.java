@@ -84,7 +84,7 @@ public class JmixEclipseLinkRemoteConnection extends BroadcastRemoteConnection {
         }
 
         if (queryCacheManager.isEnabled()) {
-            invalidateQueryCache(command);
+            invalidateQueryCache(command, true);
         }
 
         if (channelSupplier != null) {
@@ -131,6 +131,13 @@ public class JmixEclipseLinkRemoteConnection extends BroadcastRemoteConnection {
     }
 
     protected void invalidateQueryCache(Object command) {
+        invalidateQueryCache(command, false);
+    }
+
+    /**
+     * @param local whether the command is executed by the current node when committing a transaction
+     */
+    protected void invalidateQueryCache(Object command, boolean local) {
         if (command instanceof MergeChangeSetCommand) {
             MergeChangeSetCommand changeSetCommand = (MergeChangeSetCommand) command;
             UnitOfWorkChangeSet changeSet = changeSetCommand.getChangeSet(null);
@@ -143,7 +150,11 @@ public class JmixEclipseLinkRemoteConnection extends BroadcastRemoteConnection {
                         typeNames.add(metaClass.getName());
                     }
                 });
-                queryCacheManager.invalidate(typeNames);
+                if (local) {
+                    queryCacheManager.invalidateCommitted(typeNames);
+                } else {
+                    queryCacheManager.invalidate(typeNames);
+                }
             }
         }
     }
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package data_manager
+
+import io.jmix.core.DataManager
+import io.jmix.core.LoadContext
+import io.jmix.core.Metadata
+import io.jmix.eclipselink.impl.entitycache.QueryCacheManager
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.test.context.TestPropertySource
+import test_support.DataSpec
+import test_support.entity.sales.Customer
+
+import javax.persistence.EntityManager
+import javax.persistence.PersistenceContext
+
+@TestPropertySource(properties = ['jmix.eclipselink.countCacheEnabled=true'])
+class DataManagerCountCacheTest extends DataSpec {
+
+    @Autowired
+    DataManager dataManager
+
+    @Autowired
+    Metadata metadata
+
+    @Autowired
+    QueryCacheManager queryCacheManager
+
+    @PersistenceContext
+    EntityManager entityManager
+
+    @Override
+    void setup() {
+        queryCacheManager.invalidateAll()
+        for (i in 1..3) {
+            dataManager.save(new Customer(name: "cust$i"))
+        }
+    }
+
+    def "count is taken from a not full page and invalidated on changes"() {
+        def context = createLoadContext()
+        context.getQuery().setCacheable(true)
+
+        when:
+        def customers = dataManager.loadList(context)
+        insertCustomerBypassingJpa()
+
+        then: "the total is known from the not full page"
+        customers.size() == 3
+        dataManager.getCount(context) == 3
+
+        when:
+        dataManager.save(new Customer(name: 'cust5'))
+
+        then:
+        dataManager.getCount(context) == 5
+    }
+
+    def "count is not taken from a not full page of a query which is not cacheable"() {
+        def context = createLoadContext()
+
+        when:
+        def customers = dataManager.loadList(context)
+        insertCustomerBypassingJpa()
+
+        then:
+        customers.size() == 3
+        dataManager.getCount(context) == 4
+    }
+
+    def "count is cached until changes"() {
+        def context = createLoadContext()
+        context.getQuery().setMaxResults(2)
+
+        when:
+        long count1 = dataManager.getCount(context)
+        insertCustomerBypassingJpa()
+        long count2 = dataManager.getCount(context)
+
+        then:
+        count1 == 3
+        count2 == 3
+
+        when:
+        def removed = dataManager.load(Customer).query('select c from sales_Customer c where c.name in :names')
+                .parameter('names', ['cust1', 'cust2']).list()
+        dataManager.remove(*removed)
+
+        then: "the fresh count includes the row inserted bypassing JPA"
+        dataManager.getCount(context) == 2
+    }
+
+    def "count is invalidated only by changed instances"() {
+        def context = createLoadContext()
+        context.getQuery().setMaxResults(2)
+
+        when: "instances are only loaded in a read-write transaction"
+        long count1 = dataManager.getCount(context)
+        insertCustomerBypassingJpa()
+        transaction.executeWithoutResult {
+            entityManager.createQuery('select c from sales_Customer c').getResultList()
+        }
+
+        then:
+        count1 == 3
+        dataManager.getCount(context) == 3
+
+        when: "a loaded instance is changed"
+        transaction.executeWithoutResult {
+            Customer customer = entityManager.createQuery('select c from sales_Customer c where c.name = :name')
+                    .setParameter('name', 'cust1').getSingleResult()
+            customer.name = 'cust1a'
+        }
+
+        then:
+        dataManager.getCount(context) == 4
+    }
+
+    private LoadContext<Customer> createLoadContext() {
+        LoadContext<Customer> context = new LoadContext<>(metadata.getClass(Customer))
+        context.setQuery(new LoadContext.Query('select c from sales_Customer c where c.name like :name')
+                .setParameter('name', 'cust%')
+                .setMaxResults(10))
+        return context
+    }
+
+    private void insertCustomerBypassingJpa() {
+        jdbc.update("insert into SALES_CUSTOMER (ID, VERSION, NAME) values (?, 1, 'cust4')", UUID.randomUUID())
+    }
+}
@@ -128,6 +128,24 @@ class DataManagerTest extends DataSpec {
         list == [entity1, entity2]
     }
 
+    def "load by collection of composite ids in several batches"() {
+
+        def ids = (1..250).collect { new TestEntityKey(tenant: it % 3, entityId: it) }
+        dataManager.save(*ids.collect { new TestCompositeKeyEntity(id: it, name: "e$it.entityId") })
+
+        def requestedIds = ids.reverse()
+
+        when:
+
+        def list = dataManager.load(TestCompositeKeyEntity)
+                .ids(requestedIds)
+                .list()
+
+        then:
+
+        list.collect { it.id } == requestedIds
+    }
+
     def "load by null id"() {
 
         when:
@@ -217,6 +235,36 @@ class DataManagerTest extends DataSpec {
         result[0].getValue('id') == entity2.id
     }
 
+    def "load key-value entity with condition and sort"() {
+        def product1 = dataManager.create(Product)
+        product1.name = 'p1'
+        product1.quantity = 100
+
+        def product2 = dataManager.create(Product)
+        product2.name = 'p2'
+        product2.quantity = 200
+
+        def product3 = dataManager.create(Product)
+        product3.name = 'p3'
+        product3.quantity = 100
+
+        dataManager.save(product1, product2, product3)
+
+        when:
+
+        def context = ValueLoadContext.create()
+        context.setProperties(['name', 'quantity'])
+                .setQueryString('select e.name, e.quantity from sales_Product e')
+                .setCondition(PropertyCondition.equal('quantity', 100))
+                .setSort(Sort.by(Sort.Direction.DESC, 'name'))
+
+        def result = dataManager.loadValues(context)
+
+        then:
+
+        result*.getValue('name') == ['p3', 'p1']
+    }
+
     def "remove"() {
         def entity1 = dataManager.create(TestAppEntity)
         entity1.name = 'entityA'
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package data_stores
+
+import io.jmix.eclipselink.impl.dbms.MysqlDbmsFeatures
+import io.jmix.eclipselink.impl.dbms.PostgresqlDbmsFeatures
+import io.jmix.eclipselink.impl.dbms.SqlServerDbmsFeatures
+import org.springframework.dao.DataAccessException
+import org.springframework.jdbc.UncategorizedSQLException
+import org.springframework.jdbc.core.ConnectionCallback
+import org.springframework.jdbc.core.JdbcTemplate
+import spock.lang.Specification
+
+import java.sql.Connection
+import java.sql.ResultSet
+import java.sql.SQLException
+import java.sql.Savepoint
+import java.sql.Statement
+
+class DbmsRowCountEstimateTest extends Specification {
+
+    def "PostgreSQL uses table statistics for not filtered queries"() {
+        def jdbcTemplate = new RecordingJdbcTemplate([5L])
+
+        expect:
+        new PostgresqlDbmsFeatures().estimateRowCount(jdbcTemplate, 'SELECT ID FROM SALES_CUSTOMER', 'SALES_CUSTOMER', false) == 5
+        jdbcTemplate.statements == ['select cast(reltuples as bigint) from pg_class where oid = to_regclass(?)']
+        jdbcTemplate.arguments == [['SALES_CUSTOMER']]
+    }
+
+    def "PostgreSQL returns no estimate for a table which has never been analyzed"() {
+        expect:
+        new PostgresqlDbmsFeatures().estimateRowCount(new RecordingJdbcTemplate([-1L]), null, 'SALES_CUSTOMER', false) == null
+    }
+
+    def "PostgreSQL explains filtered queries without parameters under a savepoint"() {
+        def savepoint = Stub(Savepoint)
+        def resultSet = Stub(ResultSet) {
+            next() >> true
+            getString(1) >> 'Seq Scan on sales_customer t0  (cost=0.00..1.05 rows=3 width=72)'
+        }
+        def statement = Mock(Statement)
+        def connection = Mock(Connection)
+        def jdbcTemplate = new RecordingJdbcTemplate([])
+        jdbcTemplate.connection = connection
+
+        when:
+        def count = new PostgresqlDbmsFeatures().estimateRowCount(jdbcTemplate,
+                'SELECT ID FROM SALES_CUSTOMER WHERE (DELETE_TS IS NULL)', 'SALES_CUSTOMER', true)
+
+        then:
+        1 * connection.getAutoCommit() >> false
+        1 * connection.setSavepoint() >> savepoint
+        1 * connection.createStatement() >> statement
+        1 * statement.executeQuery('explain SELECT ID FROM SALES_CUSTOMER WHERE (DELETE_TS IS NULL)') >> resultSet
+        1 * connection.releaseSavepoint(savepoint)
+        0 * connection.rollback(_)
+        count == 3
+    }
+
+    def "PostgreSQL rolls back to the savepoint if EXPLAIN fails"() {
+        def savepoint = Stub(Savepoint)
+        def statement = Stub(Statement) {
+            executeQuery(_) >> { throw new SQLException('syntax error') }
+        }
+        def connection = Mock(Connection)
+        def jdbcTemplate = new RecordingJdbcTemplate([])
+        jdbcTemplate.connection = connection
+
+        when:
+        new PostgresqlDbmsFeatures().estimateRowCount(jdbcTemplate, 'SELECT ID FROM SALES_CUSTOMER WHERE', 'SALES_CUSTOMER', true)
+
+        then:
+        1 * connection.getAutoCommit() >> false
+        1 * connection.setSavepoint() >> savepoint
+        1 * connection.createStatement() >> statement
+        1 * connection.rollback(savepoint)
+        0 * connection.releaseSavepoint(_)
+        thrown(DataAccessException)
+    }
+
+    def "PostgreSQL does not execute filtered queries with parameters"() {
+        def jdbcTemplate = new RecordingJdbcTemplate([])
+
+        expect:
+        new PostgresqlDbmsFeatures().estimateRowCount(jdbcTemplate, null, 'SALES_CUSTOMER', true) == null
+        jdbcTemplate.statements.isEmpty()
+    }
+
+    def "MySQL and SQL Server estimate only not filtered queries"() {
+        def jdbcTemplate = new RecordingJdbcTemplate([7L])
+
+        expect:
+        new MysqlDbmsFeatures().estimateRowCount(jdbcTemplate, 'SELECT ID FROM SALES_CUSTOMER', 'SALES_CUSTOMER', true) == null
+        new SqlServerDbmsFeatures().estimateRowCount(jdbcTemplate, 'SELECT ID FROM SALES_CUSTOMER', 'SALES_CUSTOMER', true) == null
+        jdbcTemplate.statements.isEmpty()
+
+        new MysqlDbmsFeatures().estimateRowCount(jdbcTemplate, null, 'SALES_CUSTOMER', false) == 7
+        new SqlServerDbmsFeatures().estimateRowCount(jdbcTemplate, null, 'SALES_CUSTOMER', false) == 7
+        jdbcTemplate.statements.size() == 2
+    }
+
+    static class RecordingJdbcTemplate extends JdbcTemplate {
+
+        List<String> statements = []
+        List<List<Object>> arguments = []
+        List<Object> results
+        Connection connection
+
+        RecordingJdbcTemplate(List<Object> results) {
+            this.results = results
+        }
+
+        @Override
+        <T> T execute(ConnectionCallback<T> action) {
+            try {
+                return action.doInConnection(connection)
+            } catch (SQLException e) {
+                throw new UncategorizedSQLException('execute', null, e)
+            }
+        }
+
+        @Override
+        <T> List<T> queryForList(String sql, Class<T> elementType) {
+            return queryForList(sql, elementType, new Object[0])
+        }
+
+        @Override
+        <T> List<T> queryForList(String sql, Class<T> elementType, Object... args) {
+            statements.add(sql)
+            arguments.add(args.toList())
+            return (List<T>) results
+        }
+
+        @Override
+        <T> T queryForObject(String sql, Class<T> requiredType, Object... args) {
+            statements.add(sql)
+            arguments.add(args.toList())
+            return (T) results[0]
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package data_stores
+
+import io.jmix.eclipselink.impl.IdBatchLoadExecutor
+import org.springframework.beans.factory.annotation.Autowired
+import test_support.DataSpec
+
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+
+class IdBatchLoadExecutorTest extends DataSpec {
+
+    static final String STORE = 'idBatchLoadExecutorTest'
+
+    @Autowired
+    IdBatchLoadExecutor idBatchLoadExecutor
+
+    ExecutorService originalExecutor
+
+    ExecutorService singleThreadExecutor = Executors.newSingleThreadExecutor()
+
+    @Override
+    void setup() {
+        originalExecutor = idBatchLoadExecutor.executor
+        // batches wait in the queue while the first one is running
+        idBatchLoadExecutor.executor = singleThreadExecutor
+    }
+
+    @Override
+    void cleanup() {
+        idBatchLoadExecutor.executor = originalExecutor
+        singleThreadExecutor.shutdownNow()
+        idBatchLoadExecutor.storePermits.remove(STORE)
+    }
+
+    def "permits of queued batches are released when a batch fails"() {
+        List<Callable<Integer>> tasks = [
+                { Thread.sleep(200); throw new IllegalStateException('batch failed') } as Callable<Integer>,
+                { 1 } as Callable<Integer>,
+                { 2 } as Callable<Integer>
+        ]
+
+        when:
+        idBatchLoadExecutor.executeAll(STORE, tasks)
+
+        then:
+        thrown(IllegalStateException)
+
+        when:
+        singleThreadExecutor.submit({} as Runnable).get()
+
+        then: "all permits are available"
+        idBatchLoadExecutor.storePermits[STORE].availablePermits() == idBatchLoadExecutor.properties.idBatchLoadingMaxConnections
+
+        and: "the next batches are executed"
+        idBatchLoadExecutor.executeAll(STORE, [{ 1 } as Callable<Integer>, { 2 } as Callable<Integer>]) == [1, 2]
+    }
+}
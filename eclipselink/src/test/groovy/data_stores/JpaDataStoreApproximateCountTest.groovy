@@ -0,0 +1,100 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package data_stores
+
+import io.jmix.core.DataManager
+import io.jmix.core.LoadContext
+import io.jmix.core.Metadata
+import io.jmix.core.Stores
+import io.jmix.core.impl.DataStoreFactory
+import io.jmix.data.PersistenceHints
+import io.jmix.data.persistence.DbmsFeatures
+import io.jmix.data.persistence.DbmsSpecifics
+import io.jmix.eclipselink.impl.JpaDataStore
+import org.springframework.beans.factory.annotation.Autowired
+import test_support.DataSpec
+import test_support.entity.sales.Customer
+
+class JpaDataStoreApproximateCountTest extends DataSpec {
+
+    @Autowired
+    DataManager dataManager
+
+    @Autowired
+    DataStoreFactory dataStoreFactory
+
+    @Autowired
+    Metadata metadata
+
+    def "exact count is returned if DBMS cannot estimate it"() {
+        for (i in 1..3) {
+            dataManager.save(new Customer(name: "cust$i"))
+        }
+
+        LoadContext<Customer> context = new LoadContext<>(metadata.getClass(Customer))
+        context.setQuery(new LoadContext.Query('select c from sales_Customer c where c.name like :name')
+                .setParameter('name', 'cust%')
+                .setMaxResults(2))
+        context.setHint(PersistenceHints.APPROXIMATE_COUNT, true)
+
+        when:
+        long count = dataStoreFactory.get(Stores.MAIN).getCount(context)
+        def countEstimate = (dataStoreFactory.get(Stores.MAIN) as JpaDataStore).getCountEstimate(context)
+
+        then:
+        count == 3
+        countEstimate.count == 3
+        !countEstimate.estimated
+    }
+
+    def "estimate is requested for the SQL generated for the query"() {
+        JpaDataStore dataStore = dataStoreFactory.get(Stores.MAIN) as JpaDataStore
+        DbmsSpecifics originalDbmsSpecifics = dataStore.dbmsSpecifics
+        DbmsFeatures dbmsFeatures = Mock(DbmsFeatures)
+        dataStore.dbmsSpecifics = Stub(DbmsSpecifics) {
+            getDbmsFeatures(_) >> dbmsFeatures
+            getDbmsFeatures() >> dbmsFeatures
+        }
+
+        LoadContext<Customer> parameterizedContext = new LoadContext<>(metadata.getClass(Customer))
+        parameterizedContext.setQuery(new LoadContext.Query('select c from sales_Customer c where c.name like :name')
+                .setParameter('name', 'cust%'))
+        parameterizedContext.setHint(PersistenceHints.APPROXIMATE_COUNT, true)
+
+        LoadContext<Customer> context = new LoadContext<>(metadata.getClass(Customer))
+        context.setQuery(new LoadContext.Query('select c from sales_Customer c'))
+        context.setHint(PersistenceHints.APPROXIMATE_COUNT, true)
+
+        when: "the query has parameters"
+        def count1 = dataStore.getCountEstimate(parameterizedContext)
+
+        then: "the SQL is not passed to the DBMS"
+        1 * dbmsFeatures.estimateRowCount(_, null, 'SALES_CUSTOMER', true) >> 10L
+        count1.count == 10
+        count1.estimated
+
+        when: "the query has no conditions in JPQL"
+        long count2 = dataStore.getCount(context)
+
+        then: "the soft deletion condition makes it filtered"
+        1 * dbmsFeatures.estimateRowCount(_, { it.toUpperCase().contains('DELETE_TS IS NULL') }, 'SALES_CUSTOMER', true) >> 20L
+        count2 == 20
+
+        cleanup:
+        dataStore.dbmsSpecifics = originalDbmsSpecifics
+    }
+}
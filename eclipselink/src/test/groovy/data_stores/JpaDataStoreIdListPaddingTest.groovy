@@ -0,0 +1,69 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package data_stores
+
+import io.jmix.core.DataManager
+import io.jmix.core.Stores
+import io.jmix.core.impl.DataStoreFactory
+import io.jmix.eclipselink.impl.JpaDataStore
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.test.context.TestPropertySource
+import test_support.DataSpec
+import test_support.entity.sales.Customer
+
+@TestPropertySource(properties = ['jmix.eclipselink.idListPadding=true'])
+class JpaDataStoreIdListPaddingTest extends DataSpec {
+
+    @Autowired
+    DataManager dataManager
+
+    @Autowired
+    DataStoreFactory dataStoreFactory
+
+    def "ID list is padded to the nearest size"(int size, int maxSize, int paddedSize) {
+        JpaDataStore dataStore = dataStoreFactory.get(Stores.MAIN) as JpaDataStore
+        List<Object> ids = (1..size).collect { it }
+
+        when:
+        List<Object> padded = dataStore.padIdList(ids, maxSize)
+
+        then:
+        padded.size() == paddedSize
+        padded.subList(0, size) == ids
+        padded.subList(size, paddedSize).every { it == size }
+
+        where:
+        size | maxSize           | paddedSize
+        1    | Integer.MAX_VALUE | 1
+        3    | Integer.MAX_VALUE | 8
+        100  | Integer.MAX_VALUE | 128
+        600  | 1000              | 1000
+        1100 | Integer.MAX_VALUE | 1536
+        20   | 25                | 25
+    }
+
+    def "padded IDs do not duplicate loaded entities"() {
+        List<Customer> customers = (1..3).collect { dataManager.save(new Customer(name: "cust$it")) }
+
+        when:
+        List<Customer> loaded = dataManager.load(Customer).ids(customers*.id).list()
+
+        then:
+        loaded.size() == 3
+        loaded as Set == customers as Set
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package data_stores
+
+import io.jmix.core.DataManager
+import io.jmix.core.Stores
+import io.jmix.eclipselink.impl.PersistenceMetrics
+import io.micrometer.core.instrument.MeterRegistry
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.context.annotation.Bean
+import org.springframework.context.annotation.Configuration
+import org.springframework.test.context.ContextConfiguration
+import test_support.DataSpec
+import test_support.entity.sales.Product
+
+@ContextConfiguration(classes = MetricsConfiguration)
+class JpaDataStoreMetricsTest extends DataSpec {
+
+    @Autowired
+    DataManager dataManager
+
+    @Autowired
+    MeterRegistry meterRegistry
+
+    @Autowired
+    PersistenceMetrics persistenceMetrics
+
+    def "stages of load and save are timed"() {
+        def product = dataManager.create(Product)
+        product.name = 'p1'
+        product.quantity = 100
+
+        when:
+        dataManager.save(product)
+        dataManager.load(Product).all().list()
+
+        then:
+        persistenceMetrics.enabled
+
+        ['query-building', 'access-constraints', 'query-transformation', 'query-execution', 'fetching', 'detaching']
+                .every { stageTimer(it, 'sales_Product').count() > 0 }
+
+        ['flush-processing', 'flush', 'entity-changed-events-collecting', 'entity-changed-events-publishing']
+                .every { stageTimer(it, '').count() > 0 }
+
+        and: "each stage of the save is recorded once"
+        stageTimer('flush-processing', '').count() == 1
+        stageTimer('flush', '').count() == 1
+
+        meterRegistry.get('jmix.data.saved.entities').tag('entity', 'sales_Product').summary().totalAmount() == 1
+        meterRegistry.get('jmix.data.loaded.entities').tag('entity', 'sales_Product').summary().count() > 0
+    }
+
+    private def stageTimer(String stage, String entityName) {
+        meterRegistry.get(PersistenceMetrics.STAGE_TIMER)
+                .tag(PersistenceMetrics.STAGE_TAG, stage)
+                .tag(PersistenceMetrics.STORE_TAG, Stores.MAIN)
+                .tag(PersistenceMetrics.ENTITY_TAG, entityName)
+                .timer()
+    }
+
+    @Configuration
+    static class MetricsConfiguration {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry()
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package data_stores
+
+import io.jmix.core.DataManager
+import io.jmix.core.EntityStates
+import io.jmix.core.LoadContext
+import io.jmix.core.Metadata
+import io.jmix.core.Stores
+import io.jmix.core.impl.DataStoreFactory
+import io.jmix.data.persistence.DbmsFeatures
+import io.jmix.data.persistence.DbmsSpecifics
+import io.jmix.eclipselink.impl.JpaDataStore
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.test.context.TestPropertySource
+import test_support.DataSpec
+import test_support.entity.sales.Customer
+
+@TestPropertySource(properties = ['jmix.eclipselink.parallelIdBatchLoading=true'])
+class JpaDataStoreParallelIdBatchesTest extends DataSpec {
+
+    @Autowired
+    DataManager dataManager
+
+    @Autowired
+    DataStoreFactory dataStoreFactory
+
+    @Autowired
+    Metadata metadata
+
+    @Autowired
+    EntityStates entityStates
+
+    JpaDataStore dataStore
+
+    DbmsSpecifics originalDbmsSpecifics
+
+    @Override
+    void setup() {
+        dataStore = dataStoreFactory.get(Stores.MAIN) as JpaDataStore
+        originalDbmsSpecifics = dataStore.dbmsSpecifics
+
+        DbmsFeatures dbmsFeatures = Stub(DbmsFeatures) {
+            getMaxIdsBatchSize() >> 1
+        }
+        dataStore.dbmsSpecifics = Stub(DbmsSpecifics) {
+            getDbmsFeatures(_) >> dbmsFeatures
+            getDbmsFeatures() >> dbmsFeatures
+        }
+    }
+
+    @Override
+    void cleanup() {
+        dataStore.dbmsSpecifics = originalDbmsSpecifics
+    }
+
+    def "batches are merged in the order of requested IDs"() {
+        List<Customer> customers = (1..5).collect { dataManager.save(new Customer(name: "cust$it")) }
+        List<Object> ids = [customers[3].id, customers[0].id, customers[4].id, customers[2].id]
+
+        LoadContext<Customer> context = new LoadContext<>(metadata.getClass(Customer))
+        context.setIds(ids)
+
+        when:
+        List<Customer> loaded = dataStore.loadList(context)
+
+        then:
+        loaded.collect { it.id } == ids
+        loaded.every { entityStates.isDetached(it) }
+    }
+}
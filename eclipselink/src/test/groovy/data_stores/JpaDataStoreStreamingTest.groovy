@@ -0,0 +1,112 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package data_stores
+
+import io.jmix.core.DataManager
+import io.jmix.core.EntityStates
+import io.jmix.core.LoadContext
+import io.jmix.core.Metadata
+import io.jmix.core.Stores
+import io.jmix.core.impl.DataStoreFactory
+import io.jmix.eclipselink.impl.JpaDataStore
+import io.jmix.data.StoreAwareLocator
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.test.context.TestPropertySource
+import test_support.DataSpec
+import test_support.entity.sales.Customer
+import test_support.listeners.TestCustomerListener
+
+@TestPropertySource(properties = ['jmix.eclipselink.streamingFetchSize=2'])
+class JpaDataStoreStreamingTest extends DataSpec {
+
+    @Autowired
+    DataManager dataManager
+
+    @Autowired
+    DataStoreFactory dataStoreFactory
+
+    @Autowired
+    Metadata metadata
+
+    @Autowired
+    EntityStates entityStates
+
+    @Autowired
+    StoreAwareLocator storeAwareLocator
+
+    @Autowired
+    TestCustomerListener customerListener
+
+    @Override
+    void cleanup() {
+        customerListener.loadingConsumer = null
+    }
+
+    def "entities are passed to consumer detached"() {
+        for (i in 1..5) {
+            dataManager.save(new Customer(name: "cust$i"))
+        }
+
+        JpaDataStore dataStore = dataStoreFactory.get(Stores.MAIN) as JpaDataStore
+
+        LoadContext<Customer> context = new LoadContext<>(metadata.getClass(Customer))
+        context.setQuery(new LoadContext.Query('select c from sales_Customer c where c.name like :name order by c.name')
+                .setParameter('name', 'cust%'))
+
+        when:
+        List<Customer> customers = []
+        dataStore.loadList(context, { Customer c -> customers.add(c) })
+
+        then:
+        customers.collect { it.name } == ['cust1', 'cust2', 'cust3', 'cust4', 'cust5']
+        customers.every { entityStates.isDetached(it) }
+    }
+
+    def "entities are processed in chunks of the streaming fetch size"() {
+        for (i in 1..5) {
+            dataManager.save(new Customer(name: "cust$i"))
+        }
+
+        JpaDataStore dataStore = dataStoreFactory.get(Stores.MAIN) as JpaDataStore
+
+        LoadContext<Customer> context = new LoadContext<>(metadata.getClass(Customer))
+        context.setQuery(new LoadContext.Query('select c from sales_Customer c where c.name like :name order by c.name')
+                .setParameter('name', 'cust%'))
+
+        List<String> events = []
+        List<Customer> consumed = []
+        customerListener.loadingConsumer = { Customer c ->
+            assert entityStates.isDetached(c)
+            events.add("loaded $c.name")
+        }
+
+        when:
+        dataStore.loadList(context, { Customer c ->
+            def em = storeAwareLocator.getEntityManager(Stores.MAIN)
+            consumed.add(c)
+            assert consumed.every { entityStates.isDetached(it) && !em.contains(it) }
+            events.add("consumed $c.name")
+        })
+
+        then: "each chunk is detached and loaded before it is passed to the consumer"
+        events == [
+                'loaded cust1', 'loaded cust2', 'consumed cust1', 'consumed cust2',
+                'loaded cust3', 'loaded cust4', 'consumed cust3', 'consumed cust4',
+                'loaded cust5', 'consumed cust5'
+        ]
+    }
+}
@@ -20,6 +20,7 @@ import io.jmix.core.DataManager
 import io.jmix.core.EntityStates
 import io.jmix.core.FetchPlans
 import io.jmix.core.SaveContext
+import io.jmix.data.impl.EntityFetcher
 import io.jmix.eclipselink.impl.JmixEntityFetchGroup
 import org.eclipse.persistence.queries.FetchGroupTracker
 import org.springframework.beans.factory.annotation.Autowired
@@ -33,6 +34,9 @@ import test_support.entity.sales.Order
 import test_support.entity.sales.OrderLine
 import test_support.entity.sales.Status
 
+import javax.persistence.EntityManager
+import javax.persistence.PersistenceContext
+
 class EntityFetcherTest extends DataSpec {
 
     @Autowired
@@ -41,7 +45,10 @@ class EntityFetcherTest extends DataSpec {
     DataManager dataManager
     @Autowired
     FetchPlans fetchPlans
-
+    @Autowired
+    EntityFetcher entityFetcher
+    @PersistenceContext
+    EntityManager entityManager
 
     private Order order;
     private OrderLine orderLine;
@@ -168,4 +175,30 @@ class EntityFetcherTest extends DataSpec {
         employee.position.defaultUnit.title != null
         employee.position.defaultUnit.address != null
     }
+
+    def "detached references of several instances are reloaded together"() {
+        def customers = (1..3).collect { new Customer(name: "c$it") }
+        def orders = customers.collect { new Order(number: it.name, customer: it) }
+        def lines = orders.collect { new OrderLine(order: it, quantity: 1) }
+        def saved = dataManager.save(*customers, *orders, *lines)
+        def detachedOrders = orders.collect { saved.get(it) }
+
+        def fetchPlan = fetchPlans.builder(OrderLine).add('order.customer.name').build()
+
+        when:
+        List<OrderLine> fetched = transaction.execute { status ->
+            def managedLines = lines.collect { entityManager.find(OrderLine, it.id) }
+            managedLines.eachWithIndex { OrderLine line, int i -> line.order = detachedOrders[i] }
+
+            entityFetcher.fetchAll(managedLines, [fetchPlan])
+
+            assert managedLines.every { entityStates.isManaged(it.order) && entityStates.isManaged(it.order.customer) }
+            status.setRollbackOnly()
+            managedLines
+        }
+
+        then:
+        fetched*.order*.number == ['c1', 'c2', 'c3']
+        fetched*.order*.customer*.name == ['c1', 'c2', 'c3']
+    }
 }
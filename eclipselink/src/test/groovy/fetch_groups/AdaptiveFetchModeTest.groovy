@@ -0,0 +1,169 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fetch_groups
+
+import io.jmix.core.DataManager
+import io.jmix.core.FetchMode
+import io.jmix.core.FetchPlan
+import io.jmix.core.FetchPlans
+import io.jmix.eclipselink.impl.FetchGroupManager
+import io.jmix.eclipselink.impl.FetchModeStatistics
+import org.eclipse.persistence.config.QueryHints
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.test.context.TestPropertySource
+import test_support.DataSpec
+import test_support.entity.sales.Customer
+import test_support.entity.sales.Order
+import test_support.entity.sales.OrderLineA
+
+@TestPropertySource(properties = [
+        'jmix.eclipselink.adaptiveFetchMode=true',
+        'jmix.eclipselink.adaptiveFetchModeWarmup=2',
+        'jmix.eclipselink.pinnedFetchModes[sales_Order.customer]=BATCH'
+])
+class AdaptiveFetchModeTest extends DataSpec {
+
+    static final String QUERY = 'select o from sales_Order o'
+    static final String CUSTOMER_QUERY = 'select c from sales_Customer c'
+
+    @Autowired
+    DataManager dataManager
+
+    @Autowired
+    FetchGroupManager fetchGroupManager
+
+    @Autowired
+    FetchModeStatistics fetchModeStatistics
+
+    @Autowired
+    FetchPlans fetchPlans
+
+    def "pinned fetch mode replaces AUTO"() {
+        def fetchPlan = fetchPlans.builder(Order)
+                .addFetchPlan(FetchPlan.BASE)
+                .add('customer', FetchPlan.BASE)
+                .build()
+
+        when:
+        def description = fetchGroupManager.calculateFetchGroup(QUERY, fetchPlan, false, false, false)
+
+        then:
+        description.hints['o.customer'] == QueryHints.BATCH
+    }
+
+    def "collections with small fan-out are joined after warm-up"() {
+        fetchModeStatistics.reset()
+
+        def orders = (0..2).collect { new Order(number: "$it") }
+        def lines = orders.collectMany { order ->
+            (0..<(order.number as int)).collect { new OrderLineA(order: order, quantity: 1) }
+        }
+        dataManager.save(*orders, *lines)
+
+        def fetchPlan = fetchPlans.builder(Order)
+                .addFetchPlan(FetchPlan.BASE)
+                .add('orderLines', FetchPlan.BASE)
+                .build()
+
+        expect:
+        fetchGroupManager.calculateFetchGroup(QUERY, fetchPlan, false, false, false).hints['o.orderLines'] == QueryHints.BATCH
+
+        when:
+        2.times {
+            dataManager.load(Order).query(QUERY).fetchPlan(fetchPlan).list()
+        }
+
+        then:
+        fetchModeStatistics.decisions['sales_Order.orderLines'] == FetchMode.JOIN
+        fetchGroupManager.calculateFetchGroup(QUERY, fetchPlan, false, false, false).hints['o.orderLines'] == QueryHints.LEFT_FETCH
+
+        and: "paged queries keep batches for collections"
+        fetchGroupManager.calculateFetchGroup(QUERY, fetchPlan, false, false, true).hints['o.orderLines'] == QueryHints.BATCH
+
+        when:
+        def loaded = dataManager.load(Order).query(QUERY).fetchPlan(fetchPlan).list()
+
+        then: "joined collections do not multiply the root entities"
+        loaded.size() == 3
+        loaded*.id.toSet() == orders*.id.toSet()
+        loaded.sort { it.number }*.orderLines*.size() == [0, 1, 2]
+    }
+
+    def "results from the query cache are not recorded"() {
+        fetchModeStatistics.reset()
+
+        dataManager.save(new Order(number: '1'))
+
+        def fetchPlan = fetchPlans.builder(Order)
+                .addFetchPlan(FetchPlan.BASE)
+                .add('orderLines', FetchPlan.BASE)
+                .build()
+
+        when:
+        3.times {
+            dataManager.load(Order).query(QUERY).fetchPlan(fetchPlan).cacheable(true).list()
+        }
+
+        then:
+        fetchModeStatistics.entityStatistics['sales_Order'].loads == 1
+        fetchModeStatistics.decisions['sales_Order.orderLines'] == null
+    }
+
+    def "decisions for an entity do not invalidate fetch groups of other entities"() {
+        fetchModeStatistics.reset()
+
+        def order = new Order(number: '1')
+        dataManager.save(order, new OrderLineA(order: order, quantity: 1))
+
+        def orderFetchPlan = fetchPlans.builder(Order)
+                .addFetchPlan(FetchPlan.BASE)
+                .add('orderLines', FetchPlan.BASE)
+                .build()
+        def customerFetchPlan = fetchPlans.builder(Customer).addFetchPlan(FetchPlan.BASE).build()
+        def customerDescription = fetchGroupManager.calculateFetchGroup(CUSTOMER_QUERY, customerFetchPlan, false, false, false)
+
+        when:
+        2.times {
+            dataManager.load(Order).query(QUERY).fetchPlan(orderFetchPlan).list()
+        }
+
+        then:
+        fetchModeStatistics.decisions['sales_Order.orderLines'] == FetchMode.JOIN
+        fetchGroupManager.calculateFetchGroup(CUSTOMER_QUERY, customerFetchPlan, false, false, false).is(customerDescription)
+    }
+
+    def "attributes are examined in a sample of loads after warm-up"() {
+        fetchModeStatistics.reset()
+
+        def order = new Order(number: '1')
+        dataManager.save(order, new OrderLineA(order: order, quantity: 1))
+
+        def fetchPlan = fetchPlans.builder(Order)
+                .addFetchPlan(FetchPlan.BASE)
+                .add('orderLines', FetchPlan.BASE)
+                .build()
+
+        when:
+        18.times {
+            dataManager.load(Order).query(QUERY).fetchPlan(fetchPlan).list()
+        }
+
+        then: "2 loads of the warm-up and the 16th load"
+        fetchModeStatistics.entityStatistics['sales_Order'].loads == 18
+        fetchModeStatistics.propertyStatistics['sales_Order.orderLines'].loads == 3
+    }
+}
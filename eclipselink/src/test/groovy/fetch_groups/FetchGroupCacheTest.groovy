@@ -0,0 +1,65 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fetch_groups
+
+import io.jmix.core.FetchMode
+import io.jmix.core.FetchPlan
+import io.jmix.core.FetchPlans
+import io.jmix.eclipselink.impl.FetchGroupManager
+import org.springframework.beans.factory.annotation.Autowired
+import test_support.DataSpec
+import test_support.entity.sales.Order
+
+class FetchGroupCacheTest extends DataSpec {
+
+    static final String QUERY = 'select o from sales_Order o where o.number = :number'
+
+    @Autowired
+    FetchGroupManager fetchGroupManager
+
+    @Autowired
+    FetchPlans fetchPlans
+
+    def "description is shared by fetch plans of the same structure"() {
+        when:
+        def description1 = fetchGroupManager.calculateFetchGroup(QUERY, createFetchPlan(FetchMode.AUTO), false, true)
+        def description2 = fetchGroupManager.calculateFetchGroup(QUERY, createFetchPlan(FetchMode.AUTO), false, true)
+
+        then:
+        description1.is(description2)
+        description1.getAttributeGroup(true).is(description2.getAttributeGroup(true))
+        description1.attributes.contains('customer.name')
+    }
+
+    def "description depends on fetch modes, query and result type"() {
+        def description = fetchGroupManager.calculateFetchGroup(QUERY, createFetchPlan(FetchMode.AUTO), false, true)
+
+        expect:
+        !description.is(fetchGroupManager.calculateFetchGroup(QUERY, createFetchPlan(FetchMode.BATCH), false, true))
+        !description.is(fetchGroupManager.calculateFetchGroup(QUERY, createFetchPlan(FetchMode.AUTO), true, true))
+        !description.is(fetchGroupManager.calculateFetchGroup(
+                'select o from sales_Order o where o.customer is null', createFetchPlan(FetchMode.AUTO), false, true))
+    }
+
+    private FetchPlan createFetchPlan(FetchMode customerFetchMode) {
+        return fetchPlans.builder(Order)
+                .addFetchPlan(FetchPlan.BASE)
+                .add('customer', FetchPlan.BASE, customerFetchMode)
+                .partial()
+                .build()
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jpql_macros
+
+import io.jmix.data.impl.QueryMacroExpander
+import io.jmix.data.impl.querymacro.EnumQueryMacroHandler
+import io.jmix.data.impl.querymacro.TimeBetweenQueryMacroHandler
+import io.jmix.data.impl.querymacro.TimeTodayQueryMacroHandler
+import org.springframework.beans.factory.annotation.Autowired
+import test_support.DataSpec
+
+class QueryMacroExpanderTest extends DataSpec {
+
+    @Autowired
+    QueryMacroExpander macroExpander
+
+    def "macro names are found in one scan"() {
+        expect:
+        macroExpander.findMacroNames('select e from test_Foo e') == [] as Set
+        macroExpander.findMacroNames('select e from test_Foo e where @between(e.date, now, now + 1, day) and @today(e.date) or @between(e.date2, now - 1, now, day)') ==
+                ['between', 'today'] as Set
+    }
+
+    def "handlers are created only for macros in the query"() {
+        when:
+        def handlers = macroExpander.createHandlers('select e from test_Foo e where @today(e.date) and e.status = @enum(test.Status.OK)')
+
+        then:
+        handlers.collect { it.class } as Set == [TimeTodayQueryMacroHandler, EnumQueryMacroHandler] as Set
+
+        when:
+        def noHandlers = macroExpander.createHandlers('select e from test_Foo e where e.email = :email')
+
+        then:
+        noHandlers.isEmpty()
+    }
+
+    def "handlers are new instances for each query"() {
+        def query = 'select e from test_Foo e where @between(e.date, now, now + 1, day)'
+
+        when:
+        def handlers1 = macroExpander.createHandlers(query)
+        def handlers2 = macroExpander.createHandlers(query)
+
+        then:
+        handlers1.size() == 1
+        handlers1[0] instanceof TimeBetweenQueryMacroHandler
+        !handlers1[0].is(handlers2[0])
+    }
+}
@@ -18,6 +18,8 @@ package jpql_sort
 
 import io.jmix.core.Metadata
 import io.jmix.core.Sort
+import io.jmix.core.querycondition.PropertyCondition
+import io.jmix.data.KeysetPosition
 import io.jmix.data.impl.JpqlQueryBuilder
 import io.jmix.data.persistence.JpqlSortExpressionProvider
 import org.springframework.beans.factory.BeanFactory
@@ -135,6 +137,130 @@ class QuerySortTest extends DataSpec {
         ((TestJpqlSortExpressionProvider) sortExpressionProvider).resetToUpperPaths()
     }
 
+    def "sort combined with condition"() {
+
+        JpqlQueryBuilder queryBuilder
+
+        when:
+
+        queryBuilder = beanFactory.getBean(JpqlQueryBuilder)
+        queryBuilder.setQueryString('select u from sec$User u')
+                .setQueryParameters([:])
+                .setCondition(PropertyCondition.equal('login', 'admin'))
+                .setSort(Sort.by('name'))
+                .setEntityName('sec$User')
+
+        def resultQuery = queryBuilder.getResultQueryString()
+
+        then:
+
+        resultQuery.startsWith('select u from sec$User u where')
+        resultQuery.contains('u.login = :')
+        resultQuery.endsWith('order by u.name, u.id')
+        queryBuilder.getResultParameters().size() == 1
+    }
+
+    def "keyset pagination"() {
+
+        JpqlQueryBuilder queryBuilder
+
+        when:
+
+        def lastId = UUID.randomUUID()
+        queryBuilder = beanFactory.getBean(JpqlQueryBuilder)
+        queryBuilder.setQueryString('select c from cars_Colour c')
+                .setQueryParameters([:])
+                .setSort(Sort.by('name'))
+                .setKeysetPosition(KeysetPosition.after('red', lastId))
+                .setEntityName('cars_Colour')
+
+        then:
+
+        def resultQuery = queryBuilder.getResultQueryString()
+        resultQuery.startsWith('select c from cars_Colour c where')
+        resultQuery.contains('c.name >= :_keyset0')
+        resultQuery.contains('c.name = :_keyset0 and c.id > :_keyset1')
+        resultQuery.endsWith('order by c.name, c.id')
+        queryBuilder.getResultParameters() == [_keyset0: 'red', _keyset1: lastId]
+
+        when: "no sort is specified"
+
+        queryBuilder = beanFactory.getBean(JpqlQueryBuilder)
+        queryBuilder.setQueryString('select u from sec$User u')
+                .setQueryParameters([:])
+                .setKeysetPosition(KeysetPosition.after(lastId))
+                .setEntityName('sec$User')
+
+        then:
+
+        queryBuilder.getResultQueryString().contains('where u.id > :_keyset0')
+        queryBuilder.getResultQueryString().endsWith('order by u.id')
+
+        when: "position does not match the sort"
+
+        queryBuilder = beanFactory.getBean(JpqlQueryBuilder)
+        queryBuilder.setQueryString('select c from cars_Colour c')
+                .setQueryParameters([:])
+                .setSort(Sort.by('name'))
+                .setKeysetPosition(KeysetPosition.after(lastId))
+                .setEntityName('cars_Colour')
+        queryBuilder.getResultQueryString()
+
+        then:
+
+        thrown(IllegalArgumentException)
+    }
+
+    def "keyset pagination is rejected for sort keys which the condition cannot compare"() {
+
+        when: "nullable property"
+
+        keysetQueryBuilder('sec$User', Sort.by('name'), 'Smith').getResultQueryString()
+
+        then:
+
+        thrown(IllegalArgumentException)
+
+        when: "property of a reference"
+
+        keysetQueryBuilder('sales_Order', Sort.by('customer.name'), 'Smith').getResultQueryString()
+
+        then:
+
+        thrown(IllegalArgumentException)
+
+        when: "expression modified by the sort expression provider"
+
+        ((TestJpqlSortExpressionProvider) sortExpressionProvider).addToUpperPath(metadata.getClass('cars_Colour').getPropertyPath('name'))
+        keysetQueryBuilder('cars_Colour', Sort.by('name'), 'red').getResultQueryString()
+
+        then:
+
+        thrown(IllegalArgumentException)
+
+        when: "properties sorted in different directions"
+
+        ((TestJpqlSortExpressionProvider) sortExpressionProvider).resetToUpperPaths()
+        keysetQueryBuilder('cars_Colour', Sort.by(Sort.Order.asc('name'), Sort.Order.desc('id')), 'red').getResultQueryString()
+
+        then:
+
+        thrown(IllegalArgumentException)
+
+        cleanup:
+        ((TestJpqlSortExpressionProvider) sortExpressionProvider).resetToUpperPaths()
+    }
+
+    private JpqlQueryBuilder keysetQueryBuilder(String entityName, Sort sort, Object value) {
+        JpqlQueryBuilder queryBuilder = beanFactory.getBean(JpqlQueryBuilder)
+        queryBuilder.setQueryString("select e from $entityName e")
+                .setQueryParameters([:])
+                .setSort(sort)
+                .setKeysetPosition(KeysetPosition.after(value, UUID.randomUUID()))
+                .setEntityName(entityName)
+        return queryBuilder
+    }
+
     def "sort by multiple properties in different directions is not supported"() {
 
         JpqlQueryBuilder queryBuilder
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jpql_transform
+
+import io.jmix.data.impl.JpqlQueryBuilder
+import io.jmix.eclipselink.impl.dbms.PostgresqlDbmsFeatures
+import org.springframework.beans.factory.BeanFactory
+import org.springframework.beans.factory.annotation.Autowired
+import test_support.DataSpec
+
+class JpqlQueryBuilderIdsTest extends DataSpec {
+
+    @Autowired
+    BeanFactory beanFactory
+
+    @Autowired
+    PostgresqlDbmsFeatures postgresqlDbmsFeatures
+
+    def "IDs are matched by the IN operator by default"() {
+        def ids = [UUID.randomUUID(), UUID.randomUUID()]
+
+        when:
+        def queryBuilder = createQueryBuilder(ids)
+
+        then:
+        queryBuilder.getResultQueryString() == 'select e from sales_Customer e where e.id in :entityIds'
+        queryBuilder.getResultParameters() == [entityIds: ids]
+    }
+
+    private JpqlQueryBuilder createQueryBuilder(List<Object> ids) {
+        JpqlQueryBuilder queryBuilder = beanFactory.getBean(JpqlQueryBuilder)
+        queryBuilder.setIds(ids)
+                .setEntityName('sales_Customer')
+                .setDbmsFeatures(postgresqlDbmsFeatures)
+        return queryBuilder
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jpql_transform
+
+import io.jmix.core.Metadata
+import io.jmix.core.Sort
+import io.jmix.core.querycondition.PropertyCondition
+import io.jmix.data.impl.JpqlQueryBuilder
+import io.jmix.data.impl.JpqlQueryTemplateCache
+import io.jmix.data.persistence.JpqlSortExpressionProvider
+import org.springframework.beans.factory.BeanFactory
+import org.springframework.beans.factory.annotation.Autowired
+import test_support.DataSpec
+import test_support.TestJpqlSortExpressionProvider
+
+class JpqlQueryTemplateCacheTest extends DataSpec {
+
+    @Autowired
+    BeanFactory beanFactory
+
+    @Autowired
+    JpqlQueryTemplateCache queryTemplateCache
+
+    @Autowired
+    JpqlSortExpressionProvider sortExpressionProvider
+
+    @Autowired
+    Metadata metadata
+
+    @Override
+    void setup() {
+        queryTemplateCache.invalidateAll()
+    }
+
+    def "result query is reused for the same condition structure"() {
+        def condition = PropertyCondition.createWithParameterName('login', PropertyCondition.Operation.CONTAINS, 'login')
+
+        when:
+        long misses = queryTemplateCache.missCount
+        long hits = queryTemplateCache.hitCount
+
+        def builder1 = createQueryBuilder(condition, [login: 'adm'])
+        def builder2 = createQueryBuilder(condition, [login: 'usr'])
+
+        then:
+        builder1.getResultQueryString() == builder2.getResultQueryString()
+        builder1.getResultQueryString().contains(':login')
+        builder1.getResultParameters()['login'] == '(?i)%adm%'
+        builder2.getResultParameters()['login'] == '(?i)%usr%'
+        queryTemplateCache.missCount == misses + 1
+        queryTemplateCache.hitCount == hits + 1
+
+        when: "the parameter is not set"
+        def builder3 = createQueryBuilder(condition, [login: null])
+
+        then:
+        builder3.getResultQueryString() == 'select u from sec$User u order by u.name, u.id'
+        queryTemplateCache.missCount == misses + 2
+    }
+
+    def "sort expressions are resolved only if the result query is not cached"() {
+        def sortExpressionProvider = (TestJpqlSortExpressionProvider) sortExpressionProvider
+
+        when:
+        long misses = queryTemplateCache.missCount
+        def query1 = createSortQueryBuilder().getResultQueryString()
+        sortExpressionProvider.addToUpperPath(metadata.getClass('sales_Order').getPropertyPath('number'))
+        def query2 = createSortQueryBuilder().getResultQueryString()
+
+        then: "the cached query is reused for the same sort orders"
+        query1 == 'select e from sales_Order e order by e.number, e.id'
+        query2 == query1
+        queryTemplateCache.missCount == misses + 1
+
+        when:
+        queryTemplateCache.invalidateAll()
+        def query3 = createSortQueryBuilder().getResultQueryString()
+
+        then:
+        query3 == 'select e from sales_Order e order by upper( e.number) asc nulls first, e.id'
+
+        cleanup:
+        sortExpressionProvider.resetToUpperPaths()
+    }
+
+    private JpqlQueryBuilder createSortQueryBuilder() {
+        JpqlQueryBuilder queryBuilder = beanFactory.getBean(JpqlQueryBuilder)
+        queryBuilder.setQueryString('select e from sales_Order e')
+                .setQueryParameters([:])
+                .setSort(Sort.by('number'))
+                .setEntityName('sales_Order')
+        return queryBuilder
+    }
+
+    private JpqlQueryBuilder createQueryBuilder(PropertyCondition condition, Map<String, Object> parameters) {
+        JpqlQueryBuilder queryBuilder = beanFactory.getBean(JpqlQueryBuilder)
+        queryBuilder.setQueryString('select u from sec$User u')
+                .setQueryParameters(new HashMap<>(parameters))
+                .setCondition(condition)
+                .setSort(Sort.by('name'))
+                .setEntityName('sec$User')
+        return queryBuilder
+    }
+}
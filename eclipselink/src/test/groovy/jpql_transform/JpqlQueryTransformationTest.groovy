@@ -17,6 +17,7 @@
 package jpql_transform
 
 import io.jmix.data.impl.jpql.DomainModel
+import io.jmix.data.impl.jpql.QueryParserAstBased
 import io.jmix.data.impl.jpql.model.EntityBuilder
 import io.jmix.data.impl.jpql.transform.QueryTransformerAstBased
 import spock.lang.Specification
@@ -119,4 +120,52 @@ class JpqlQueryTransformationTest extends Specification {
         then:
         result == 'select c from sec$GroupHierarchy h join h.parent.constraints c where 2 = 2'
     }
+
+    def "transformation of a cached parser tree does not change the parser"() {
+
+        def query = 'select c from sec$GroupHierarchy h join h.parent.constraints c where concat(h.group, h.createdBy) = :par1'
+        def parser = new QueryParserAstBased(domainModel, query)
+
+        when:
+
+        def transformer = new QueryTransformerAstBased(domainModel, query, parser)
+        transformer.handleCaseInsensitiveParam("par1")
+        transformer.addWhere("{E}.createdBy is not null")
+        def result = transformer.getResult()
+
+        then:
+
+        result.contains('lower ( h.createdBy)')
+        result.contains('h.createdBy is not null')
+
+        when:
+
+        transformer = new QueryTransformerAstBased(domainModel, query, parser)
+        result = transformer.getResult()
+
+        then:
+
+        result == new QueryTransformerAstBased(domainModel, query).getResult()
+        parser.getParamNames() == ['par1'] as Set
+        parser.getEntityAlias() == 'h'
+    }
+
+    def "parser of a transformed query reflects the transformations"() {
+
+        def query = 'select h from sec$GroupHierarchy h where h.group = :par1'
+        def transformer = new QueryTransformerAstBased(domainModel, query)
+
+        when:
+
+        transformer.replaceEntityName('sec$Constraint')
+        transformer.addWhere('{E}.group.createdBy = :par2')
+        def parser = transformer.getParser()
+
+        then:
+
+        parser.getEntityName() == 'sec$Constraint'
+        parser.getEntityAlias() == 'h'
+        parser.getParamNames() == ['par1', 'par2'] as Set
+        transformer.getResult().startsWith('select h from sec$Constraint h where')
+    }
 }
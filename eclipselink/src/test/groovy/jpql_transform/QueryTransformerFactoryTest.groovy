@@ -0,0 +1,79 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jpql_transform
+
+import io.jmix.data.QueryTransformer
+import io.jmix.data.QueryTransformerFactory
+import io.jmix.data.impl.jpql.JpqlSyntaxException
+import org.springframework.beans.factory.annotation.Autowired
+import test_support.DataSpec
+
+class QueryTransformerFactoryTest extends DataSpec {
+
+    @Autowired
+    QueryTransformerFactory queryTransformerFactory
+
+    def "parsers of valid queries are cached"() {
+        def query = 'select c from sales_Customer c where c.name = :name'
+
+        expect:
+        queryTransformerFactory.parser(query).is(queryTransformerFactory.parser(query))
+    }
+
+    def "parsers of invalid queries are not cached"() {
+        def query = 'select c from sales_Customer c where c.name = = :name'
+
+        when:
+        def parser = queryTransformerFactory.parser(query)
+
+        then:
+        !parser.is(queryTransformerFactory.parser(query))
+
+        when:
+        parser.getParamNames()
+
+        then:
+        thrown(JpqlSyntaxException)
+    }
+
+    def "a single parse serves transformation and analysis"() {
+        def query = 'select c from sales_Customer c'
+        def parser = queryTransformerFactory.parser(query)
+
+        when:
+        def transformer = queryTransformerFactory.transformer(query)
+        transformer.addWhere('{E}.name = :name')
+        def analysisParser = queryTransformerFactory.parser(transformer)
+
+        then: "the transformer copies the tree of the cached parser"
+        transformer.sourceParser.is(parser)
+
+        and: "the analysis uses the transformed tree without parsing the intermediate query"
+        analysisParser.queryTree.is(transformer.queryTree)
+        analysisParser.paramNames == ['name'] as Set
+        parser.paramNames.isEmpty()
+    }
+
+    def "result of a transformer without own parser is parsed"() {
+        def transformer = Stub(QueryTransformer) {
+            getResult() >> 'select c from sales_Customer c where c.name = :name'
+        }
+
+        expect:
+        queryTransformerFactory.parser(transformer).paramNames == ['name'] as Set
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jpql_transform
+
+import io.jmix.core.DataManager
+import io.jmix.eclipselink.impl.TransformedQueryCache
+import org.springframework.beans.factory.annotation.Autowired
+import test_support.DataSpec
+import test_support.entity.sales.Customer
+
+class TransformedQueryCacheTest extends DataSpec {
+
+    @Autowired
+    DataManager dataManager
+
+    @Autowired
+    TransformedQueryCache transformedQueryCache
+
+    Customer customer
+
+    @Override
+    void setup() {
+        customer = dataManager.create(Customer)
+        customer.setName('Test1')
+        dataManager.save(customer)
+
+        transformedQueryCache.invalidateAll()
+    }
+
+    def "transformed query is reused for the same parameter shape"() {
+        def query = 'select c from sales_Customer c where c.name like :name and c.id in :ids'
+
+        when:
+        long misses = transformedQueryCache.missCount
+        long hits = transformedQueryCache.hitCount
+
+        def list1 = dataManager.load(Customer).query(query)
+                .parameter('name', '(?i)%TEST%')
+                .parameter('ids', [customer.id])
+                .list()
+        def list2 = dataManager.load(Customer).query(query)
+                .parameter('name', '(?i)%ES%')
+                .parameter('ids', [customer.id])
+                .list()
+
+        then:
+        list1 == [customer]
+        list2 == [customer]
+        transformedQueryCache.missCount == misses + 1
+        transformedQueryCache.hitCount == hits + 1
+
+        when: "the parameter shape changes"
+        def list3 = dataManager.load(Customer).query(query)
+                .parameter('name', '(?i)%TEST%')
+                .parameter('ids', [])
+                .list()
+        def list4 = dataManager.load(Customer).query(query)
+                .parameter('name', '(?i)%TEST%')
+                .parameter('ids', [])
+                .list()
+
+        then:
+        list3.isEmpty()
+        list4.isEmpty()
+        transformedQueryCache.missCount == misses + 2
+        transformedQueryCache.hitCount == hits + 2
+    }
+}
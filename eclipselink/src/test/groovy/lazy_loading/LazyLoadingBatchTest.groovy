@@ -0,0 +1,102 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package lazy_loading
+
+import io.jmix.core.DataManager
+import io.jmix.core.FetchPlan
+import io.jmix.eclipselink.impl.lazyloading.LazyLoadingDetector
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.test.context.TestPropertySource
+import test_support.DataSpec
+import test_support.entity.sales.Customer
+import test_support.entity.sales.Order
+import test_support.entity.sales.OrderLineA
+
+@TestPropertySource(properties = [
+        'jmix.eclipselink.lazyLoadingDetection=true',
+        'jmix.eclipselink.lazyLoadingDetectionThreshold=2',
+        'jmix.eclipselink.lazyLoadingDetectionThrowException=true',
+        'jmix.eclipselink.lazyLoadingBatch=true'
+])
+class LazyLoadingBatchTest extends DataSpec {
+
+    @Autowired
+    DataManager dataManager
+
+    @Autowired
+    LazyLoadingDetector lazyLoadingDetector
+
+    def "collections of all instances of the result are loaded by the first access"() {
+        def orders = (1..3).collect { new Order(number: "$it") }
+        def lines = orders.collectMany { order -> (1..order.number.toInteger()).collect { new OrderLineA(order: order, quantity: it) } }
+        dataManager.save(*orders, *lines)
+
+        def loaded = dataManager.load(Order).all().fetchPlan(FetchPlan.BASE).list()
+
+        when:
+        Map<String, Integer> sizes = [:]
+        lazyLoadingDetector.openScope('test').withCloseable {
+            loaded.each { sizes[it.number] = it.orderLines.size() }
+        }
+
+        then:
+        sizes == ['1': 1, '2': 2, '3': 3]
+        loaded.every { order -> order.orderLines.every { it.order.is(order) } }
+    }
+
+    def "references of all instances of the result are loaded by the first access"() {
+        def customers = (1..3).collect { new Customer(name: "c$it") }
+        def orders = customers.collect { new Order(number: it.name, customer: it) }
+        orders << new Order(number: 'no customer')
+        dataManager.save(*customers, *orders)
+
+        def loaded = dataManager.load(Order).all().fetchPlan(FetchPlan.BASE).list()
+
+        when:
+        Map<String, String> names = [:]
+        lazyLoadingDetector.openScope('test').withCloseable {
+            loaded.each { names[it.number] = it.customer?.name }
+        }
+
+        then:
+        names == ['c1': 'c1', 'c2': 'c2', 'c3': 'c3', 'no customer': null]
+    }
+
+    def "collection of a kept instance is loaded after the rest of the result is released"() {
+        def orders = (1..3).collect { new Order(number: "$it") }
+        def lines = orders.collect { new OrderLineA(order: it, quantity: 1) }
+        dataManager.save(*orders, *lines)
+
+        def loaded = dataManager.load(Order).all().fetchPlan(FetchPlan.BASE).list()
+        def kept = loaded.find { it.number == '2' }
+        def released = new java.lang.ref.WeakReference(loaded.find { it.number == '1' })
+        loaded = null
+
+        when:
+        for (int i = 0; i < 10 && released.get() != null; i++) {
+            System.gc()
+            Thread.sleep(10)
+        }
+
+        then: "the group of value holders does not keep other instances of the result"
+        released.get() == null
+
+        and:
+        kept.orderLines.size() == 1
+        kept.orderLines[0].order.is(kept)
+    }
+}
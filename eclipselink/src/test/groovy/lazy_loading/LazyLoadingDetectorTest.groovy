@@ -0,0 +1,75 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package lazy_loading
+
+import io.jmix.core.DataManager
+import io.jmix.core.DevelopmentException
+import io.jmix.core.FetchPlan
+import io.jmix.eclipselink.impl.lazyloading.LazyLoadingDetector
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.test.context.TestPropertySource
+import test_support.DataSpec
+import test_support.entity.sales.Order
+import test_support.entity.sales.OrderLineA
+
+@TestPropertySource(properties = [
+        'jmix.eclipselink.lazyLoadingDetection=true',
+        'jmix.eclipselink.lazyLoadingDetectionThreshold=2',
+        'jmix.eclipselink.lazyLoadingDetectionThrowException=true'
+])
+class LazyLoadingDetectorTest extends DataSpec {
+
+    @Autowired
+    DataManager dataManager
+
+    @Autowired
+    LazyLoadingDetector lazyLoadingDetector
+
+    def "excessive lazy loading of a collection is reported"() {
+        def orders = (1..3).collect { new Order(number: "$it") }
+        def lines = orders.collect { new OrderLineA(order: it, quantity: 1) }
+        dataManager.save(*orders, *lines)
+
+        def loaded = dataManager.load(Order).all().fetchPlan(FetchPlan.BASE).list()
+
+        when:
+        lazyLoadingDetector.openScope('test').withCloseable {
+            loaded.each { it.orderLines.size() }
+        }
+
+        then:
+        def e = thrown(DevelopmentException)
+        e.message.contains('sales_Order.orderLines')
+        e.message.contains("'_base'")
+    }
+
+    def "lazy loads are counted separately in each scope"() {
+        def order = new Order(number: '1')
+        dataManager.save(order, new OrderLineA(order: order, quantity: 1))
+
+        when:
+        2.times {
+            def loaded = dataManager.load(Order).id(order.id).fetchPlan(FetchPlan.BASE).one()
+            lazyLoadingDetector.openScope("test $it").withCloseable {
+                loaded.orderLines.size()
+            }
+        }
+
+        then:
+        noExceptionThrown()
+    }
+}
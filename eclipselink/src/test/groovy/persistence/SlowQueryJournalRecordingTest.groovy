@@ -0,0 +1,89 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package persistence
+
+import io.jmix.core.DataManager
+import io.jmix.core.FetchMode
+import io.jmix.core.FetchPlan
+import io.jmix.core.FetchPlans
+import io.jmix.eclipselink.impl.SlowQueryJournal
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.test.context.TestPropertySource
+import test_support.DataSpec
+import test_support.entity.sales.Customer
+import test_support.entity.sales.Order
+
+@TestPropertySource(properties = ['jmix.eclipselink.slowQueryThresholdMs=0'])
+class SlowQueryJournalRecordingTest extends DataSpec {
+
+    @Autowired
+    SlowQueryJournal journal
+
+    @Autowired
+    DataManager dataManager
+
+    @Autowired
+    FetchPlans fetchPlans
+
+    @Override
+    void cleanup() {
+        journal.clear()
+        super.cleanup()
+    }
+
+    def "executed query is recorded with SQL, fetch modes and masked parameters"() {
+        def customer = new Customer(name: 'c1')
+        dataManager.save(customer, new Order(number: '1', customer: customer), new Order(number: '2', customer: customer))
+
+        def fetchPlan = fetchPlans.builder(Order)
+                .addFetchPlan(FetchPlan.BASE)
+                .add('customer', FetchPlan.BASE, FetchMode.JOIN)
+                .add('orderLines', FetchPlan.BASE, FetchMode.BATCH)
+                .build()
+
+        journal.clear()
+
+        when:
+        def orders = dataManager.load(Order)
+                .query('select o from sales_Order o where o.number = :number and o.customer.name <> :customerToken')
+                .parameter('number', '1')
+                .parameter('customerToken', 'c2')
+                .fetchPlan(fetchPlan)
+                .list()
+
+        then:
+        orders.size() == 1
+
+        def record = journal.records.find { it.parameters.containsKey('customerToken') }
+        record != null
+        record.operation == 'getResultList'
+        record.rowCount == 1
+        record.queryString.contains('o.customer.name <> :customerToken')
+
+        and: "SQL is captured with bind markers instead of values"
+        record.sqlString.toUpperCase().contains('SALES_ORDER')
+        record.sqlString.contains('?')
+        !record.sqlString.contains('c2')
+
+        and: "fetch modes of references are recorded"
+        record.fetchModes == ['o.customer': 'JOIN', 'o.orderLines': 'BATCH']
+
+        and: "sensitive parameters are masked"
+        record.parameters == [number: '1', customerToken: '*****']
+        !record.toString().contains('c2')
+    }
+}
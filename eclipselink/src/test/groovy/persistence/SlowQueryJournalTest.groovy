@@ -0,0 +1,74 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package persistence
+
+import io.jmix.eclipselink.impl.SlowQueryJournal
+import io.jmix.eclipselink.impl.SlowQueryRecord
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.test.context.TestPropertySource
+import test_support.DataSpec
+
+@TestPropertySource(properties = [
+        'jmix.eclipselink.slowQueryThresholdMs=1000',
+        'jmix.eclipselink.slowQueryJournalSize=3'
+])
+class SlowQueryJournalTest extends DataSpec {
+
+    @Autowired
+    SlowQueryJournal journal
+
+    @Override
+    void cleanup() {
+        journal.clear()
+    }
+
+    def "journal keeps the most recent records"() {
+        journal.clear()
+
+        when:
+        (1..5).each { journal.add(createRecord("select e from test_TestAppEntity e where e.id = $it")) }
+
+        then:
+        journal.recordCount == 3
+        journal.records*.queryString == (3..5).collect { "select e from test_TestAppEntity e where e.id = $it".toString() }
+        journal.printRecords().startsWith(journal.records.last().toString())
+
+        when:
+        journal.clear()
+
+        then:
+        journal.records.isEmpty()
+    }
+
+    def "values of sensitive parameters are masked"() {
+        expect:
+        journal.formatParameter('userPassword', 'qwerty') == '*****'
+        journal.formatParameter('accessToken', 'abc') == '*****'
+        journal.formatParameter('name', 'abc') == 'abc'
+        journal.formatParameter('ids', (1..20).toList()) == '[20 values]'
+    }
+
+    def "fast queries are not slow"() {
+        expect:
+        journal.enabled
+        !journal.isSlow(journal.startTimer())
+    }
+
+    private static SlowQueryRecord createRecord(String query) {
+        new SlowQueryRecord(new Date(), 'getResultList', 1500, query, query, null, [:], '_base', [:], 1)
+    }
+}
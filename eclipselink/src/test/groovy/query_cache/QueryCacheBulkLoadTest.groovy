@@ -0,0 +1,79 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package query_cache
+
+import io.jmix.core.DataManager
+import io.jmix.core.EntityStates
+import io.jmix.core.FetchPlans
+import io.jmix.core.UuidProvider
+import io.jmix.eclipselink.impl.entitycache.QueryCache
+import io.jmix.eclipselink.impl.entitycache.QueryCacheManager
+import io.jmix.eclipselink.impl.entitycache.QueryKey
+import io.jmix.eclipselink.impl.entitycache.QueryResult
+import org.springframework.beans.factory.annotation.Autowired
+import test_support.DataSpec
+import test_support.entity.sales.Customer
+import test_support.entity.sales.Order
+
+class QueryCacheBulkLoadTest extends DataSpec {
+
+    @Autowired
+    QueryCacheManager queryCacheManager
+
+    @Autowired
+    QueryCache queryCache
+
+    @Autowired
+    DataManager dataManager
+
+    @Autowired
+    FetchPlans fetchPlans
+
+    @Autowired
+    EntityStates entityStates
+
+    @Override
+    void setup() {
+        queryCacheManager.invalidateAll()
+    }
+
+    def "cached IDs are loaded with fetch plans in the original order"() {
+        def customers = (1..3).collect { new Customer(name: "c$it") }
+        def orders = customers.collect { new Order(number: it.name, customer: it) }
+        dataManager.save(*customers, *orders)
+
+        def queryKey = new QueryKey('select o from sales_Order o', 0, Integer.MAX_VALUE, true, false, null, null, null)
+        def missingId = UuidProvider.createUuid()
+        def ids = [orders[2].id, missingId, orders[0].id, orders[1].id]
+        queryCache.put(queryKey, new QueryResult(ids, 'sales_Order', ['sales_Order'] as Set))
+
+        def fetchPlan = fetchPlans.builder(Order).add('number').add('customer.name').build()
+
+        when:
+        List<Order> loaded = transaction.execute { status ->
+            List<Order> result = queryCacheManager.getResultListFromCache(queryKey, [fetchPlan])
+            assert result.findAll { it != null }.every { entityStates.isLoadedWithFetchPlan(it, fetchPlan) }
+            result
+        }
+
+        then:
+        loaded.size() == 4
+        loaded[1] == null
+        loaded.findAll { it != null }*.number == ['c3', 'c1', 'c2']
+        loaded.findAll { it != null }*.customer*.name == ['c3', 'c1', 'c2']
+    }
+}
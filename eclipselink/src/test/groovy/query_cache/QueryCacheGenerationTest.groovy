@@ -0,0 +1,105 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package query_cache
+
+import io.jmix.eclipselink.impl.entitycache.CountQueryKey
+import io.jmix.eclipselink.impl.entitycache.QueryCache
+import io.jmix.eclipselink.impl.entitycache.QueryCacheManager
+import io.jmix.eclipselink.impl.entitycache.QueryKey
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.test.context.TestPropertySource
+import test_support.DataSpec
+
+@TestPropertySource(properties = [
+        'jmix.eclipselink.queryCacheGenerationInvalidation=true',
+        'jmix.eclipselink.countCacheEnabled=true'
+])
+class QueryCacheGenerationTest extends DataSpec {
+
+    @Autowired
+    QueryCacheManager queryCacheManager
+
+    @Autowired
+    QueryCache queryCache
+
+    @Override
+    void setup() {
+        queryCacheManager.invalidateAll()
+    }
+
+    def "results are stale after generations of related types advance"() {
+        def orderCountKey = createCountKey('select count(o) from sales_Order o')
+        def customerCountKey = createCountKey('select count(c) from sales_Customer c')
+
+        queryCacheManager.putCountToCache(orderCountKey, 10, 'sales_Order', ['sales_Order'] as Set)
+        queryCacheManager.putCountToCache(customerCountKey, 20, 'sales_Customer', ['sales_Customer'] as Set)
+
+        expect:
+        queryCacheManager.getCountFromCache(orderCountKey) == 10
+
+        when:
+        queryCacheManager.invalidate('sales_Order')
+
+        then: "the stale result is ignored and evicted"
+        queryCacheManager.getCountFromCache(orderCountKey) == null
+        queryCache.get(orderCountKey) == null
+        queryCacheManager.getCountFromCache(customerCountKey) == 20
+
+        when:
+        queryCacheManager.putCountToCache(orderCountKey, 11, 'sales_Order', ['sales_Order'] as Set)
+
+        then: "the result stored after invalidation is valid"
+        queryCacheManager.getCountFromCache(orderCountKey) == 11
+
+        when:
+        queryCacheManager.invalidateCounts(['sales_Customer'] as Set)
+
+        then:
+        queryCacheManager.getCountFromCache(customerCountKey) == null
+        queryCacheManager.getCountFromCache(orderCountKey) == 11
+    }
+
+    def "results of queries executed concurrently with a commit are stale"() {
+        def orderKey = new QueryKey('select o from sales_Order o', 0, Integer.MAX_VALUE, true, false, null, null, null)
+        def orderCountKey = createCountKey('select count(o) from sales_Order o')
+
+        when: "a transaction changing the related type commits between execution of the queries and storing results"
+        def generations = queryCacheManager.getCurrentGenerations(['sales_Order'] as Set, false)
+        def countGenerations = queryCacheManager.getCurrentGenerations(['sales_Order'] as Set, true)
+        queryCacheManager.invalidate('sales_Order')
+        queryCacheManager.putResultToCache(orderKey, [], 'sales_Order', ['sales_Order'] as Set, generations)
+        queryCacheManager.putCountToCache(orderCountKey, 10, 'sales_Order', ['sales_Order'] as Set, countGenerations)
+
+        then:
+        queryCacheManager.getValidResult(orderKey) == null
+        queryCacheManager.getCountFromCache(orderCountKey) == null
+
+        when: "no transaction commits meanwhile"
+        generations = queryCacheManager.getCurrentGenerations(['sales_Order'] as Set, false)
+        countGenerations = queryCacheManager.getCurrentGenerations(['sales_Order'] as Set, true)
+        queryCacheManager.putResultToCache(orderKey, [], 'sales_Order', ['sales_Order'] as Set, generations)
+        queryCacheManager.putCountToCache(orderCountKey, 10, 'sales_Order', ['sales_Order'] as Set, countGenerations)
+
+        then:
+        queryCacheManager.getValidResult(orderKey) != null
+        queryCacheManager.getCountFromCache(orderCountKey) == 10
+    }
+
+    private static CountQueryKey createCountKey(String queryString) {
+        new CountQueryKey(queryString, true, null, null, null)
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package query_cache
+
+import io.jmix.core.DataManager
+import io.jmix.eclipselink.impl.entitycache.QueryCache
+import io.jmix.eclipselink.impl.entitycache.QueryCacheManager
+import io.jmix.eclipselink.impl.entitycache.QueryKey
+import io.jmix.eclipselink.impl.entitycache.QueryPredicate
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.test.context.TestPropertySource
+import test_support.DataSpec
+import test_support.entity.sales.Customer
+
+@TestPropertySource(properties = ['jmix.eclipselink.queryCachePreciseInvalidation=true'])
+class QueryCachePreciseInvalidationTest extends DataSpec {
+
+    @Autowired
+    QueryCacheManager queryCacheManager
+
+    @Autowired
+    QueryCache queryCache
+
+    @Autowired
+    DataManager dataManager
+
+    @Override
+    void setup() {
+        queryCacheManager.invalidateAll()
+    }
+
+    def "only results which a changed instance can enter or leave are invalidated"() {
+        def customer = dataManager.create(Customer)
+        customer.name = 'c'
+        customer = dataManager.save(customer)
+
+        def keyA = createKey('select e from sales_Customer e where e.name = :name', [name: 'a'])
+        def keyB = createKey('select e from sales_Customer e where e.name = :name', [name: 'b'])
+        def keyOr = createKey('select e from sales_Customer e where e.name = :name1 or e.name = :name2', [name1: 'a', name2: 'b'])
+        [keyA, keyB, keyOr].each { put(it) }
+
+        when: "the instance enters the result of keyA"
+        customer.name = 'A'
+        customer = dataManager.save(customer)
+
+        then:
+        queryCache.get(keyA) == null
+        queryCache.get(keyB) != null
+        queryCache.get(keyOr) == null
+
+        when: "the instance leaves the result of keyA"
+        put(keyA)
+        customer.name = 'd'
+        customer = dataManager.save(customer)
+
+        then:
+        queryCache.get(keyA) == null
+        queryCache.get(keyB) != null
+
+        when: "another instance is created"
+        put(keyA)
+        def other = dataManager.create(Customer)
+        other.name = 'x'
+        dataManager.save(other)
+
+        then:
+        queryCache.get(keyA) != null
+        queryCache.get(keyB) != null
+
+        when: "the instance is removed"
+        def keyAll = createKey('select e from sales_Customer e', [:])
+        put(keyAll)
+        dataManager.remove(customer)
+
+        then: "results of queries without conditions are invalidated"
+        queryCache.get(keyAll) == null
+        queryCache.get(keyA) != null
+    }
+
+    def "conditions of the query are parsed"() {
+        expect:
+        QueryPredicate.parse('select e from sales_Customer e join e.orders o where o.number = :n') == null
+        QueryPredicate.parse('select e.name from sales_Customer e') == null
+        QueryPredicate.parse('select count(e) from sales_Customer e where e.name = :name').entityName == 'sales_Customer'
+        QueryPredicate.parse('select e from sales_Customer e where e.name = \'x and y\' and e.status is null').conditions.size() == 2
+        QueryPredicate.parse('select e from sales_Customer e where e.version between 1 and 2 and e.name = :n').conditions.size() == 1
+        QueryPredicate.parse('select e from sales_Customer e where e.name = :n or e.status is null').conditions.isEmpty()
+    }
+
+    private void put(QueryKey queryKey) {
+        queryCacheManager.putResultToCache(queryKey, [], 'sales_Customer', ['sales_Customer'] as Set)
+    }
+
+    private static QueryKey createKey(String queryString, Map<String, Object> parameters) {
+        new QueryKey(queryString, 0, Integer.MAX_VALUE, true, false, parameters ? new LinkedHashMap<>(parameters) : null, null, null)
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package query_cache
+
+import io.jmix.eclipselink.impl.entitycache.CompactIdList
+import io.jmix.eclipselink.impl.entitycache.EntityTypeSet
+import io.jmix.eclipselink.impl.entitycache.QueryResult
+import spock.lang.Specification
+
+class QueryResultTest extends Specification {
+
+    def "identifiers are stored compactly"() {
+        when:
+        def compact = CompactIdList.of(ids)
+
+        then:
+        compact == ids
+        compact.collect { it } == ids
+        compact.collect { it?.getClass() } == ids.collect { it?.getClass() }
+        compact.getClass().simpleName == listClass
+
+        where:
+        ids                                                       | listClass
+        (1000L..1100L).toList()                                   | 'VarintDeltaList'
+        [5L, Long.MAX_VALUE, -3L, Long.MIN_VALUE, 0L]             | 'LongList'
+        (1..50).toList()                                          | 'VarintDeltaList'
+        [UUID.randomUUID(), UUID.randomUUID()]                    | 'UuidList'
+        ['a', 'b']                                                | 'UnmodifiableRandomAccessList'
+        [1L, null]                                                | 'UnmodifiableRandomAccessList'
+    }
+
+    def "related types are interned and serialized by names"() {
+        def types = EntityTypeSet.of(['sales_Order', 'sales_Customer'])
+
+        expect:
+        types == ['sales_Customer', 'sales_Order'] as Set
+        types.hashCode() == (['sales_Customer', 'sales_Order'] as Set).hashCode()
+        types.contains('sales_Order')
+        !types.contains('sales_OrderLine')
+        EntityTypeSet.of(['sales_Customer', 'sales_Order'] as LinkedHashSet).is(types)
+
+        when:
+        def result = new QueryResult((1L..10L).toList(), 'sales_Order', ['sales_Order', 'sales_Customer'] as Set)
+        def copy = deserialize(serialize(result))
+
+        then:
+        copy.result == (1L..10L).toList()
+        copy.relatedTypes.is(types)
+    }
+
+    private static byte[] serialize(Object object) {
+        def bytes = new ByteArrayOutputStream()
+        new ObjectOutputStream(bytes).withCloseable { it.writeObject(object) }
+        bytes.toByteArray()
+    }
+
+    private static QueryResult deserialize(byte[] bytes) {
+        new ObjectInputStream(new ByteArrayInputStream(bytes)).withCloseable { it.readObject() as QueryResult }
+    }
+}
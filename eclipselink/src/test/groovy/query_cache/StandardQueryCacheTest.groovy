@@ -0,0 +1,105 @@
+/*
+ * Copyright 2022 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package query_cache
+
+import io.jmix.eclipselink.impl.entitycache.CountQueryKey
+import io.jmix.eclipselink.impl.entitycache.QueryKey
+import io.jmix.eclipselink.impl.entitycache.QueryResult
+import io.jmix.eclipselink.impl.entitycache.StandardQueryCache
+import org.springframework.beans.factory.annotation.Autowired
+import test_support.DataSpec
+
+class StandardQueryCacheTest extends DataSpec {
+
+    @Autowired
+    StandardQueryCache queryCache
+
+    @Override
+    void setup() {
+        queryCache.invalidateAll()
+    }
+
+    def "only results related to changed types are invalidated"() {
+        def orderKey = createKey('select o from sales_Order o')
+        def customerKey = createKey('select c from sales_Customer c')
+        def orderCountKey = createCountKey('select count(o) from sales_Order o')
+
+        queryCache.put(orderKey, new QueryResult([], 'sales_Order', ['sales_Order', 'sales_Customer'] as Set))
+        queryCache.put(customerKey, new QueryResult([], 'sales_Customer', ['sales_Customer'] as Set))
+        queryCache.put(orderCountKey, new QueryResult([1L], 'sales_Order', ['sales_Order'] as Set))
+
+        when:
+        queryCache.invalidateCounts(['sales_Order'] as Set)
+
+        then:
+        queryCache.get(orderCountKey) == null
+        queryCache.get(orderKey) != null
+
+        when:
+        queryCache.invalidate('sales_Order')
+
+        then:
+        queryCache.get(orderKey) == null
+        queryCache.get(customerKey) != null
+
+        when:
+        queryCache.invalidate(['sales_Customer', 'sales_Product'] as Set)
+
+        then:
+        queryCache.get(customerKey) == null
+    }
+
+    def "results stored again after invalidation are indexed"() {
+        def key = createKey('select o from sales_Order o')
+        def result = new QueryResult([], 'sales_Order', ['sales_Order'] as Set)
+
+        when:
+        queryCache.put(key, result)
+        queryCache.invalidate('sales_Order')
+        queryCache.put(key, result)
+        queryCache.invalidate('sales_Order')
+
+        then:
+        queryCache.get(key) == null
+    }
+
+    def "results put concurrently with invalidation remain indexed"() {
+        def keys = (1..2000).collect { createKey("select o from sales_Order o where o.number = '$it'") }
+        def result = new QueryResult([], 'sales_Order', ['sales_Order'] as Set)
+
+        when:
+        def putThread = Thread.start {
+            keys.each { queryCache.put(it, result) }
+        }
+        while (putThread.isAlive()) {
+            queryCache.invalidate('sales_Order')
+        }
+        putThread.join()
+        queryCache.invalidate('sales_Order')
+
+        then:
+        keys.every { queryCache.get(it) == null }
+    }
+
+    private static QueryKey createKey(String queryString) {
+        new QueryKey(queryString, 0, Integer.MAX_VALUE, true, false, null, null, null)
+    }
+
+    private static CountQueryKey createCountKey(String queryString) {
+        new CountQueryKey(queryString, true, null, null, null)
+    }
+}
@@ -17,6 +17,7 @@
 package test_support.listeners;
 
 import io.jmix.core.event.EntityChangedEvent;
+import io.jmix.core.event.EntityLoadingEvent;
 import io.jmix.core.event.EntitySavingEvent;
 import io.jmix.data.listener.BeforeDetachEntityListener;
 import org.springframework.context.event.EventListener;
@@ -37,6 +38,8 @@ public class TestCustomerListener implements BeforeDetachEntityListener<Customer
 
     public Consumer<Customer> beforeDetachConsumer;
 
+    public Consumer<Customer> loadingConsumer;
+
     public Consumer<EntityChangedEvent<Customer>> getChangedEventConsumer() {
         return changedEventConsumer;
     }
@@ -74,6 +77,13 @@ public class TestCustomerListener implements BeforeDetachEntityListener<Customer
         }
     }
 
+    @EventListener
+    public void onCustomerLoading(EntityLoadingEvent<Customer> event) {
+        if (loadingConsumer != null) {
+            loadingConsumer.accept(event.getEntity());
+        }
+    }
+
     @Override
     public void onBeforeDetach(Customer entity) {
         if (beforeDetachConsumer != null) {